@@ -7,8 +7,13 @@ ALTER DATABASE acquirer_db OWNER TO acquirer_user;
 -- Connect to acquirer_db and create tables
 \c acquirer_db;
 
+-- Ids come from pooled-lo sequences: each nextval reserves a block of 50 ids
+-- (INCREMENT BY must match allocationSize on the Transaction/TransactionEvent entities)
+CREATE SEQUENCE IF NOT EXISTS transactions_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS transaction_events_seq START WITH 1 INCREMENT BY 50;
+
 CREATE TABLE IF NOT EXISTS transactions (
-    id BIGSERIAL PRIMARY KEY,
+    id BIGINT PRIMARY KEY,
     source_number VARCHAR(20),
     target_number VARCHAR(20),
     status VARCHAR(10),
@@ -20,7 +25,7 @@ CREATE TABLE IF NOT EXISTS transactions (
 );
 
 CREATE TABLE IF NOT EXISTS transaction_events (
-    id BIGSERIAL PRIMARY KEY,
+    id BIGINT PRIMARY KEY,
     transaction_id BIGINT,
     event_type VARCHAR(20),
     iso_message TEXT,
@@ -32,5 +37,9 @@ CREATE INDEX idx_transactions_stan ON transactions(stan);
 CREATE INDEX idx_transactions_time ON transactions(transaction_time);
 CREATE INDEX idx_events_transaction_id ON transaction_events(transaction_id);
 
+-- Databases created with BIGSERIAL ids: start the sequences above the existing rows
+SELECT setval('transactions_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM transactions), false);
+SELECT setval('transaction_events_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM transaction_events), false);
+
 GRANT ALL PRIVILEGES ON ALL TABLES IN SCHEMA public TO acquirer_user;
 GRANT ALL PRIVILEGES ON ALL SEQUENCES IN SCHEMA public TO acquirer_user;
@@ -3,5 +3,7 @@
 # Create topics with multiple partitions for load balancing
 kafka-topics.sh --create --topic iso8583-requests --bootstrap-server localhost:9092 --partitions 3 --replication-factor 1
 kafka-topics.sh --create --topic iso8583-responses --bootstrap-server localhost:9092 --partitions 3 --replication-factor 1
+# Requests the authorize service could not parse or process
+kafka-topics.sh --create --topic iso8583-requests-dlt --bootstrap-server localhost:9092 --partitions 1 --replication-factor 1
 
 echo "Kafka topics created with 3 partitions each for load balancing"
\ No newline at end of file
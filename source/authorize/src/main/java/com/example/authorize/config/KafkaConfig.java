@@ -0,0 +1,43 @@
+package com.example.authorize.config;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.listener.RetryListener;
+import org.springframework.util.backoff.ExponentialBackOff;
+
+/**
+ * Error handling of the auto-configured listener container. A batch whose responses could not
+ * all be published is retried in place with exponential backoff and no limit, so its offsets
+ * are never committed and no response is dropped: the partitions stall until the broker takes
+ * the responses again. Spring Kafka's default would give up after ten attempts without a pause,
+ * log the batch and commit it.
+ */
+@Configuration
+public class KafkaConfig {
+
+    @Bean
+    public DefaultErrorHandler kafkaErrorHandler(@Value("${authorize.kafka.retry.initial-interval-ms:1000}") long initialIntervalMillis,
+                                                 @Value("${authorize.kafka.retry.max-interval-ms:30000}") long maxIntervalMillis) {
+        ExponentialBackOff backOff = new ExponentialBackOff(initialIntervalMillis, 2.0);
+        backOff.setMaxInterval(maxIntervalMillis);
+        // The default max elapsed time is unlimited: retry until the batch is published
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler(backOff);
+        errorHandler.setRetryListeners(new RetryListener() {
+            @Override
+            public void failedDelivery(ConsumerRecord<?, ?> record, Exception ex, int deliveryAttempt) {
+                // Only batch listeners here
+            }
+
+            @Override
+            public void failedDelivery(ConsumerRecords<?, ?> records, Exception ex, int deliveryAttempt) {
+                System.err.println("🔁 Authorization batch of " + records.count() + " records failed (attempt " + deliveryAttempt
+                        + "), retrying: " + ex.getMessage());
+            }
+        });
+        return errorHandler;
+    }
+}
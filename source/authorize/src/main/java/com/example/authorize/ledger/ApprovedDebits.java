@@ -0,0 +1,180 @@
+package com.example.authorize.ledger;
+
+import java.util.Arrays;
+
+/**
+ * Debits and holds the ledger approved, by the RRN, STAN and terminal id of the request that
+ * made them, so a reversal only undoes a transaction that really took money, at most once and
+ * for no more than it took.
+ * <p>
+ * Approvals are kept in two generations of fixed-size open-addressing tables: once the current
+ * one holds {@code capacity} approvals it replaces the previous one, so at least the last
+ * {@code capacity} approvals can be reversed and memory stays flat. The tables are not
+ * journaled; after a restart, reversals of approvals made before it find nothing and are not
+ * applied.
+ */
+public class ApprovedDebits {
+
+    private static final long EMPTY = 0;
+    private static final byte HOLD = 1;
+    private static final byte REVERSED = 2;
+
+    private final int capacity;
+    private Generation current;
+    private Generation previous;
+
+    /**
+     * @param capacity approvals per generation
+     */
+    public ApprovedDebits(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.current = new Generation(this.capacity);
+        this.previous = new Generation(this.capacity);
+    }
+
+    /**
+     * @return the key of the transaction, or 0 if there is no RRN or STAN to name it by
+     */
+    public static long key(String rrn, String stan, String terminal) {
+        if (rrn == null || stan == null) {
+            return EMPTY;
+        }
+        long hash = 0xcbf29ce484222325L;
+        hash = hash(hash, rrn);
+        hash = hash(hash, stan);
+        hash = hash(hash, terminal);
+        hash = mix(hash);
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    /**
+     * Records an approved debit or hold; a later approval with the same key replaces it.
+     */
+    public synchronized void remember(long key, long pan, long amount, boolean hold) {
+        if (key == EMPTY) {
+            return;
+        }
+        if (current.size >= capacity) {
+            Generation recycled = previous;
+            recycled.clear();
+            previous = current;
+            current = recycled;
+        }
+        current.put(key, pan, amount, hold ? HOLD : 0);
+    }
+
+    /**
+     * Marks the approval as reversed.
+     *
+     * @return the approval, or null if none is remembered for this key and card or it was
+     *         already reversed
+     */
+    public synchronized Debit reverse(long key, long pan) {
+        if (key == EMPTY) {
+            return null;
+        }
+        Generation generation = current;
+        int slot = current.find(key);
+        if (slot < 0) {
+            generation = previous;
+            slot = previous.find(key);
+        }
+        if (slot < 0 || generation.pans[slot] != pan || (generation.flags[slot] & REVERSED) != 0) {
+            return null;
+        }
+        generation.flags[slot] |= REVERSED;
+        return new Debit(generation.amounts[slot], (generation.flags[slot] & HOLD) != 0);
+    }
+
+    private static long hash(long hash, String value) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+            }
+        }
+        // Separator, so ("12", "3") and ("1", "23") differ
+        return (hash ^ 0xff) * 0x100000001b3L;
+    }
+
+    private static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+
+    /**
+     * An approved amount and whether it was held rather than debited.
+     */
+    public static final class Debit {
+        private final long amount;
+        private final boolean hold;
+
+        Debit(long amount, boolean hold) {
+            this.amount = amount;
+            this.hold = hold;
+        }
+
+        public long getAmount() {
+            return amount;
+        }
+
+        public boolean isHold() {
+            return hold;
+        }
+    }
+
+    /**
+     * One generation of approvals in a linear-probing table. Only touched while holding the
+     * monitor of its {@link ApprovedDebits}.
+     */
+    private static final class Generation {
+        final long[] keys;
+        final long[] pans;
+        final long[] amounts;
+        final byte[] flags;
+        int size;
+
+        Generation(int capacity) {
+            // At most 75% full when the generation rotates
+            int length = Integer.highestOneBit((int) Math.min(1 << 30, capacity * 4L / 3 + 1) * 2 - 1);
+            keys = new long[length];
+            pans = new long[length];
+            amounts = new long[length];
+            flags = new byte[length];
+        }
+
+        int find(long key) {
+            int mask = keys.length - 1;
+            for (int slot = (int) key & mask; ; slot = (slot + 1) & mask) {
+                long k = keys[slot];
+                if (k == key) {
+                    return slot;
+                }
+                if (k == EMPTY) {
+                    return -1;
+                }
+            }
+        }
+
+        void put(long key, long pan, long amount, byte flags) {
+            int slot = find(key);
+            if (slot < 0) {
+                int mask = keys.length - 1;
+                slot = (int) key & mask;
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                size++;
+            }
+            pans[slot] = pan;
+            amounts[slot] = amount;
+            this.flags[slot] = flags;
+        }
+
+        void clear() {
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+        }
+    }
+}
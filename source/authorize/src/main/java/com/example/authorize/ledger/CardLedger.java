@@ -0,0 +1,451 @@
+package com.example.authorize.ledger;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Available balance, held amount, expiry and status of every card, kept in primitive arrays
+ * keyed by the PAN as an unsigned long. About 40 bytes per card at the default load factor, so
+ * a few million cards fit in a couple of hundred MB without an object per card.
+ * <p>
+ * Cards are spread over a power-of-two number of segments by a hash of the PAN. Each segment
+ * is an open-addressing table guarded by its own lock, so authorizations for different cards
+ * rarely contend and a decision is a single probe plus a few array writes under that lock.
+ * Amounts are in minor units of the card currency.
+ * <p>
+ * Every change is appended to the segment's {@link LedgerJournal}, if one is attached, while
+ * the segment lock is held, so each card's records are in the order they were applied.
+ */
+public class CardLedger {
+
+    public static final String APPROVED = "00";
+    public static final String INVALID_AMOUNT = "13";
+    public static final String INVALID_CARD = "14";
+    public static final String INSUFFICIENT_FUNDS = "51";
+    public static final String EXPIRED_CARD = "54";
+
+    public static final byte ACTIVE = 0;
+    public static final byte CLOSED = 1;
+
+    /** Snapshot record: PAN, available, held, expiry, status. */
+    public static final int SNAPSHOT_RECORD = 8 + 8 + 8 + 2 + 1;
+
+    private static final long EMPTY = 0;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+
+    /**
+     * @param segments        lock stripes, rounded up to a power of two
+     * @param initialCapacity expected number of cards, spread over the segments
+     */
+    public CardLedger(int segments, int initialCapacity) {
+        int count = Integer.highestOneBit(Math.max(1, segments) * 2 - 1);
+        this.segments = new Segment[count];
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(count);
+        int perSegment = (int) Math.min(1 << 30, (long) (Math.max(1, initialCapacity) / count / LOAD_FACTOR) + 1);
+        for (int i = 0; i < count; i++) {
+            this.segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * PAN digits as a ledger key. 19 digits fit an unsigned long; leading zeros are not
+     * significant, which no issued card range relies on.
+     *
+     * @return the key, or {@code 0} if the PAN is not 1-19 digits or is all zeros
+     */
+    public static long key(String pan) {
+        if (pan == null || pan.isEmpty() || pan.length() > 19) {
+            return EMPTY;
+        }
+        long key = 0;
+        for (int i = 0; i < pan.length(); i++) {
+            char c = pan.charAt(i);
+            if (c < '0' || c > '9') {
+                return EMPTY;
+            }
+            key = key * 10 + (c - '0');
+        }
+        return key;
+    }
+
+    /**
+     * Adds a card, or resets an existing one to the given state.
+     *
+     * @param expiry card expiry as {@code YYMM}
+     */
+    public void provision(long pan, long balance, int expiry) {
+        requireKey(pan);
+        Segment segment = segment(pan);
+        synchronized (segment) {
+            int slot = segment.insert(pan);
+            segment.available[slot] = balance;
+            segment.held[slot] = 0;
+            segment.expiry[slot] = (short) expiry;
+            segment.status[slot] = ACTIVE;
+            segment.journal(LedgerJournal.PROVISION, pan, balance, expiry);
+        }
+    }
+
+    /**
+     * Adds a card unless it is already known.
+     *
+     * @param expiry card expiry as {@code YYMM}
+     * @return true if the card was added
+     */
+    public boolean provisionIfAbsent(long pan, long balance, int expiry) {
+        requireKey(pan);
+        Segment segment = segment(pan);
+        synchronized (segment) {
+            if (segment.find(pan) >= 0) {
+                return false;
+            }
+            int slot = segment.insert(pan);
+            segment.available[slot] = balance;
+            segment.expiry[slot] = (short) expiry;
+            segment.journal(LedgerJournal.PROVISION, pan, balance, expiry);
+            return true;
+        }
+    }
+
+    /**
+     * Decides a debit and applies it if approved: a hold moves the amount from available to
+     * held, otherwise it is taken from available.
+     *
+     * @param currentYymm today as {@code YYMM}, for the expiry check
+     * @return a field 39 response code
+     */
+    public String debit(long pan, long amount, int currentYymm, boolean hold) {
+        Segment segment = segment(pan);
+        synchronized (segment) {
+            int slot = segment.find(pan);
+            if (slot < 0 || segment.status[slot] != ACTIVE) {
+                return INVALID_CARD;
+            }
+            if (segment.expiry[slot] < currentYymm) {
+                return EXPIRED_CARD;
+            }
+            if (segment.available[slot] < amount) {
+                return INSUFFICIENT_FUNDS;
+            }
+            if (amount != 0) {
+                segment.debit(slot, amount, hold);
+                segment.journal(hold ? LedgerJournal.HOLD : LedgerJournal.DEBIT, pan, amount, 0);
+            }
+            return APPROVED;
+        }
+    }
+
+    /**
+     * Applies a debit already approved elsewhere (an advice), even past the available balance.
+     *
+     * @return false if the card is unknown
+     */
+    public boolean post(long pan, long amount, boolean hold) {
+        Segment segment = segment(pan);
+        synchronized (segment) {
+            int slot = segment.find(pan);
+            if (slot < 0) {
+                return false;
+            }
+            segment.debit(slot, amount, hold);
+            segment.journal(hold ? LedgerJournal.HOLD : LedgerJournal.DEBIT, pan, amount, 0);
+            return true;
+        }
+    }
+
+    /**
+     * Adds to the available balance, e.g. a refund or a reversed debit.
+     *
+     * @return false if the card is unknown
+     */
+    public boolean credit(long pan, long amount) {
+        Segment segment = segment(pan);
+        synchronized (segment) {
+            int slot = segment.find(pan);
+            if (slot < 0) {
+                return false;
+            }
+            segment.available[slot] += amount;
+            segment.journal(LedgerJournal.CREDIT, pan, amount, 0);
+            return true;
+        }
+    }
+
+    /**
+     * Returns a held amount to the available balance, e.g. a reversed authorization.
+     *
+     * @return false if the card is unknown
+     */
+    public boolean release(long pan, long amount) {
+        Segment segment = segment(pan);
+        synchronized (segment) {
+            int slot = segment.find(pan);
+            if (slot < 0) {
+                return false;
+            }
+            long released = Math.min(amount, segment.held[slot]);
+            segment.held[slot] -= released;
+            segment.available[slot] += released;
+            segment.journal(LedgerJournal.RELEASE, pan, released, 0);
+            return true;
+        }
+    }
+
+    /**
+     * @return false if the card is unknown
+     */
+    public boolean close(long pan) {
+        Segment segment = segment(pan);
+        synchronized (segment) {
+            int slot = segment.find(pan);
+            if (slot < 0) {
+                return false;
+            }
+            segment.status[slot] = CLOSED;
+            segment.journal(LedgerJournal.CLOSE, pan, 0, 0);
+            return true;
+        }
+    }
+
+    /**
+     * Re-applies a journal record.
+     *
+     * @throws IllegalArgumentException for an unknown operation
+     */
+    public void apply(byte op, long pan, long amount, int expiry) {
+        switch (op) {
+            case LedgerJournal.PROVISION -> provision(pan, amount, expiry);
+            case LedgerJournal.DEBIT -> post(pan, amount, false);
+            case LedgerJournal.HOLD -> post(pan, amount, true);
+            case LedgerJournal.CREDIT -> credit(pan, amount);
+            case LedgerJournal.RELEASE -> release(pan, amount);
+            case LedgerJournal.CLOSE -> close(pan);
+            default -> throw new IllegalArgumentException("Unknown ledger operation: " + op);
+        }
+    }
+
+    public boolean contains(long pan) {
+        Segment segment = segment(pan);
+        synchronized (segment) {
+            return segment.find(pan) >= 0;
+        }
+    }
+
+    /**
+     * @return the available balance, or {@link Long#MIN_VALUE} if the card is unknown
+     */
+    public long available(long pan) {
+        Segment segment = segment(pan);
+        synchronized (segment) {
+            int slot = segment.find(pan);
+            return slot < 0 ? Long.MIN_VALUE : segment.available[slot];
+        }
+    }
+
+    /**
+     * @return the held amount, or {@link Long#MIN_VALUE} if the card is unknown
+     */
+    public long held(long pan) {
+        Segment segment = segment(pan);
+        synchronized (segment) {
+            int slot = segment.find(pan);
+            return slot < 0 ? Long.MIN_VALUE : segment.held[slot];
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Journals every further change of every segment to {@code journal}.
+     */
+    public void attach(LedgerJournal journal) {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.journal = journal;
+            }
+        }
+    }
+
+    /**
+     * Copies the cards out one segment at a time and, in the same critical section, moves the
+     * segment to the {@code next} journal. A snapshot plus the journals that follow it therefore
+     * hold every change exactly once, without stopping the whole ledger.
+     * <p>
+     * Every segment is moved even if {@code sink} fails, so the previous journal is complete
+     * either way; the first failure is rethrown at the end.
+     *
+     * @param sink receives {@link #SNAPSHOT_RECORD}-byte records, one buffer per segment
+     */
+    public void snapshot(LedgerJournal next, Consumer<ByteBuffer> sink) {
+        RuntimeException failure = null;
+        for (Segment segment : segments) {
+            ByteBuffer records;
+            synchronized (segment) {
+                records = failure == null ? segment.copy() : null;
+                segment.journal = next;
+            }
+            if (records != null) {
+                try {
+                    sink.accept(records);
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Loads {@link #SNAPSHOT_RECORD}-byte records written by {@link #snapshot}, without
+     * journaling them.
+     */
+    public void restore(ByteBuffer records) {
+        while (records.remaining() >= SNAPSHOT_RECORD) {
+            long pan = records.getLong();
+            Segment segment = segment(pan);
+            synchronized (segment) {
+                int slot = segment.insert(pan);
+                segment.available[slot] = records.getLong();
+                segment.held[slot] = records.getLong();
+                segment.expiry[slot] = records.getShort();
+                segment.status[slot] = records.get();
+            }
+        }
+    }
+
+    private Segment segment(long pan) {
+        return segments.length == 1 ? segments[0] : segments[(int) (mix(pan) >>> segmentShift)];
+    }
+
+    private static void requireKey(long pan) {
+        if (pan == EMPTY) {
+            throw new IllegalArgumentException("Not a card number key: " + pan);
+        }
+    }
+
+    private static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+
+    /**
+     * Linear-probing table of one lock stripe. Only touched while holding its monitor.
+     */
+    private static final class Segment {
+        long[] keys;
+        long[] available;
+        long[] held;
+        short[] expiry;
+        byte[] status;
+        int size;
+        int threshold;
+        LedgerJournal journal;
+
+        Segment(int capacity) {
+            allocate(Integer.highestOneBit(Math.max(2, capacity) * 2 - 1));
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            available = new long[capacity];
+            held = new long[capacity];
+            expiry = new short[capacity];
+            status = new byte[capacity];
+            threshold = (int) (capacity * LOAD_FACTOR);
+        }
+
+        int find(long key) {
+            if (key == EMPTY) {
+                return -1;
+            }
+            int mask = keys.length - 1;
+            // Low bits pick the slot; the high bits already picked the segment
+            for (int slot = (int) mix(key) & mask; ; slot = (slot + 1) & mask) {
+                long k = keys[slot];
+                if (k == key) {
+                    return slot;
+                }
+                if (k == EMPTY) {
+                    return -1;
+                }
+            }
+        }
+
+        int insert(long key) {
+            int slot = find(key);
+            if (slot >= 0) {
+                return slot;
+            }
+            if (size >= threshold) {
+                grow();
+            }
+            size++;
+            return place(key);
+        }
+
+        void debit(int slot, long amount, boolean hold) {
+            available[slot] -= amount;
+            if (hold) {
+                held[slot] += amount;
+            }
+        }
+
+        void journal(byte op, long pan, long amount, int expiry) {
+            if (journal != null) {
+                journal.append(op, pan, amount, expiry);
+            }
+        }
+
+        ByteBuffer copy() {
+            ByteBuffer records = ByteBuffer.allocate(size * SNAPSHOT_RECORD);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    records.putLong(keys[i]).putLong(available[i]).putLong(held[i]).putShort(expiry[i]).put(status[i]);
+                }
+            }
+            return records.flip();
+        }
+
+        private int place(long key) {
+            int mask = keys.length - 1;
+            int slot = (int) mix(key) & mask;
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldAvailable = available;
+            long[] oldHeld = held;
+            short[] oldExpiry = expiry;
+            byte[] oldStatus = status;
+            allocate(oldKeys.length * 2);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = place(oldKeys[i]);
+                    available[slot] = oldAvailable[i];
+                    held[slot] = oldHeld[i];
+                    expiry[slot] = oldExpiry[i];
+                    status[slot] = oldStatus[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.authorize.ledger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Append-only journal of {@link CardLedger} changes in a memory-mapped file of fixed-size
+ * records. Appending reserves a slot with one atomic increment and writes it with absolute
+ * puts, so writers for different segments never wait for each other; the page cache keeps the
+ * records if the process dies.
+ * <p>
+ * A record is the operation byte, the expiry, the PAN and the amount. The operation byte is
+ * written last and free slots are zero, so a slot whose operation is zero was never completed
+ * and is skipped on replay.
+ */
+public class LedgerJournal implements Closeable {
+
+    public static final byte PROVISION = 1;
+    public static final byte DEBIT = 2;
+    public static final byte HOLD = 3;
+    public static final byte CREDIT = 4;
+    public static final byte RELEASE = 5;
+    public static final byte CLOSE = 6;
+
+    public static final int RECORD = 24;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer records;
+    private final int capacity;
+    private final AtomicInteger next;
+    private volatile boolean overflowed;
+
+    private LedgerJournal(Path path, FileChannel channel, MappedByteBuffer records, int tail) {
+        this.path = path;
+        this.channel = channel;
+        this.records = records;
+        this.capacity = records.capacity() / RECORD;
+        this.next = new AtomicInteger(tail);
+    }
+
+    /**
+     * Maps a journal, creating it if needed, and positions appends after its last record.
+     *
+     * @param capacity records to map for a new journal; an existing one keeps its own size
+     */
+    public static LedgerJournal open(Path path, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = Math.max(channel.size() / RECORD, capacity) * (long) RECORD;
+            MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            int tail = 0;
+            for (int i = (int) (size / RECORD) - 1; i >= 0; i--) {
+                if (records.get(i * RECORD) != 0) {
+                    tail = i + 1;
+                    break;
+                }
+            }
+            return new LedgerJournal(path, channel, records, tail);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public void append(byte op, long pan, long amount, int expiry) {
+        int index = next.getAndIncrement();
+        if (index >= capacity) {
+            if (!overflowed) {
+                overflowed = true;
+                System.err.println("❌ Ledger journal " + path.getFileName() + " is full; changes are not durable until the next snapshot");
+            }
+            return;
+        }
+        int position = index * RECORD;
+        records.putShort(position + 2, (short) expiry);
+        records.putLong(position + 8, pan);
+        records.putLong(position + 16, amount);
+        records.put(position, op);
+    }
+
+    /**
+     * Applies every completed record to {@code ledger}.
+     *
+     * @return the number of records applied
+     */
+    public int replay(CardLedger ledger) {
+        int end = Math.min(next.get(), capacity);
+        int applied = 0;
+        for (int i = 0; i < end; i++) {
+            int position = i * RECORD;
+            byte op = records.get(position);
+            if (op != 0) {
+                ledger.apply(op, records.getLong(position + 8), records.getLong(position + 16), records.getShort(position + 2));
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * @return the used fraction of the journal, 1 or more once it is full
+     */
+    public double usage() {
+        return (double) next.get() / capacity;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        records.force();
+        channel.close();
+    }
+}
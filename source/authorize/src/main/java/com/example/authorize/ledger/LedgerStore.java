@@ -0,0 +1,208 @@
+package com.example.authorize.ledger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Keeps a {@link CardLedger} in a directory of numbered snapshots and journals so a restart
+ * maps one file and replays a short tail instead of rebuilding every card.
+ * <p>
+ * {@code snapshot-N.dat} holds the cards as they were when the ledger moved to
+ * {@code journal-N.dat}. Because the move happens one segment at a time, a card's changes are
+ * in journal N-1 up to the moment its segment was copied and in journal N after it, so the
+ * latest snapshot plus every journal numbered from it rebuilds the ledger exactly. A snapshot
+ * is written to a temporary file and renamed when complete; older files are only deleted after
+ * that, so a crash at any point leaves a recoverable set.
+ */
+public class LedgerStore implements Closeable {
+
+    private static final int MAGIC = 0x4c454447; // "LEDG"
+    private static final int HEADER = 4 + 4 + 8;
+    private static final String SNAPSHOT = "snapshot-";
+    private static final String JOURNAL = "journal-";
+    private static final String SUFFIX = ".dat";
+
+    private final Path directory;
+    private final CardLedger ledger;
+    private final int journalCapacity;
+    private LedgerJournal journal;
+    private long sequence;
+
+    private LedgerStore(Path directory, CardLedger ledger, int journalCapacity) {
+        this.directory = directory;
+        this.ledger = ledger;
+        this.journalCapacity = journalCapacity;
+    }
+
+    /**
+     * Loads the latest snapshot and its journals into {@code ledger}, which should be empty, and
+     * attaches the newest journal so further changes are appended to it.
+     *
+     * @param journalCapacity records per journal file
+     */
+    public static LedgerStore open(Path directory, CardLedger ledger, int journalCapacity) throws IOException {
+        Files.createDirectories(directory);
+        LedgerStore store = new LedgerStore(directory, ledger, journalCapacity);
+        store.recover();
+        return store;
+    }
+
+    private void recover() throws IOException {
+        // Snapshots that were still being written when the process stopped
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files.filter(path -> path.toString().endsWith(".tmp"))::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        long snapshot = latest(SNAPSHOT);
+        long start = System.nanoTime();
+        if (snapshot >= 0) {
+            restore(file(SNAPSHOT, snapshot));
+        }
+        int cards = ledger.size();
+        long replayed = 0;
+        long last = Math.max(snapshot, 0);
+        for (long n : sequences(JOURNAL)) {
+            if (n < last) {
+                continue;
+            }
+            // Closed right away, except the newest, which keeps taking appends
+            LedgerJournal replaying = LedgerJournal.open(file(JOURNAL, n), journalCapacity);
+            replayed += replaying.replay(ledger);
+            if (journal != null) {
+                journal.close();
+            }
+            journal = replaying;
+            last = n;
+        }
+        if (journal == null) {
+            journal = LedgerJournal.open(file(JOURNAL, last), journalCapacity);
+        }
+        sequence = last;
+        ledger.attach(journal);
+        System.out.println("💾 Ledger recovered from " + directory + ": " + cards + " cards from snapshot "
+                + (snapshot >= 0 ? snapshot : "none") + ", " + replayed + " journal records, "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    private void restore(Path snapshot) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.remaining() < HEADER || mapped.getInt() != MAGIC || mapped.getInt() != CardLedger.SNAPSHOT_RECORD) {
+                throw new IOException("Not a ledger snapshot: " + snapshot);
+            }
+            long records = mapped.getLong();
+            if (mapped.remaining() != records * CardLedger.SNAPSHOT_RECORD) {
+                throw new IOException("Truncated ledger snapshot: " + snapshot);
+            }
+            ledger.restore(mapped);
+        }
+    }
+
+    /**
+     * Writes a compacted snapshot, moves the ledger to a fresh journal and deletes the files the
+     * snapshot replaces. Not thread-safe; callers take snapshots from one thread.
+     */
+    public void snapshot() throws IOException {
+        long next = sequence + 1;
+        Path target = file(SNAPSHOT, next);
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        LedgerJournal nextJournal = LedgerJournal.open(file(JOURNAL, next), journalCapacity);
+        LedgerJournal previous = journal;
+        long records = 0;
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.position(HEADER);
+            long[] written = new long[1];
+            try {
+                ledger.snapshot(nextJournal, buffer -> {
+                    written[0] += buffer.remaining() / CardLedger.SNAPSHOT_RECORD;
+                    try {
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                // The ledger appends to the next journal from now on, snapshot or not
+                journal = nextJournal;
+                sequence = next;
+                previous.close();
+            }
+            records = written[0];
+            ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(CardLedger.SNAPSHOT_RECORD).putLong(records).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        for (long n : sequences(SNAPSHOT)) {
+            if (n < next) {
+                Files.deleteIfExists(file(SNAPSHOT, n));
+            }
+        }
+        for (long n : sequences(JOURNAL)) {
+            if (n < next) {
+                Files.deleteIfExists(file(JOURNAL, n));
+            }
+        }
+        System.out.println("💾 Ledger snapshot " + next + " written (" + records + " cards)");
+    }
+
+    /**
+     * @return the used fraction of the current journal
+     */
+    public double journalUsage() {
+        return journal.usage();
+    }
+
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    private Path file(String prefix, long n) {
+        return directory.resolve(prefix + n + SUFFIX);
+    }
+
+    private long latest(String prefix) throws IOException {
+        List<Long> sequences = sequences(prefix);
+        return sequences.isEmpty() ? -1 : sequences.get(sequences.size() - 1);
+    }
+
+    /**
+     * @return the numbers of the files named {@code prefix<N>.dat}, ascending
+     */
+    private List<Long> sequences(String prefix) throws IOException {
+        List<Long> sequences = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(SUFFIX))
+                    .forEach(name -> {
+                        try {
+                            sequences.add(Long.parseLong(name.substring(prefix.length(), name.length() - SUFFIX.length())));
+                        } catch (NumberFormatException ignored) {
+                            // not one of ours
+                        }
+                    });
+        }
+        sequences.sort(null);
+        return sequences;
+    }
+}
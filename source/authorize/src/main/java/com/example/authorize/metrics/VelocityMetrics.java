@@ -0,0 +1,21 @@
+package com.example.authorize.metrics;
+
+import com.example.authorize.service.LedgerAuthorizer;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes how often velocity checks met a key their counter tables were too full to track, so
+ * an undersized {@code authorize.velocity.card-capacity} shows up before it lets traffic
+ * through unchecked (or declines it).
+ */
+@Component
+public class VelocityMetrics {
+
+    public VelocityMetrics(MeterRegistry meterRegistry, LedgerAuthorizer authorizer) {
+        FunctionCounter.builder("authorize.velocity.overflow", authorizer, LedgerAuthorizer::getVelocityOverflowCount)
+                .description("Keys a full velocity counter table could not track")
+                .register(meterRegistry);
+    }
+}
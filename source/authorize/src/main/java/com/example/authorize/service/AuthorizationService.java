@@ -1,75 +1,173 @@
 package com.example.authorize.service;
 
+import com.example.common.dedup.DuplicateDetector;
+import com.example.common.dispatch.AdviceHandler;
+import com.example.common.dispatch.AuthorizationHandler;
+import com.example.common.dispatch.MtiHandler;
+import com.example.common.dispatch.MtiHandlerRegistry;
+import com.example.common.dispatch.ReversalHandler;
 import com.example.common.model.Iso8583Message;
 import com.example.common.parser.Iso8583Parser;
+import com.example.common.rules.Iso8583Rules;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Random;
+import jakarta.annotation.PreDestroy;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Consumes authorization requests a poll at a time. Each batch is split into lanes by PAN (RRN,
+ * then the record key, when there is none), the lanes run in parallel and each runs its
+ * requests in offset order, so one card's transactions are never reordered while different
+ * cards go beyond partition-count concurrency. The listener returns, and the container commits
+ * the batch's offsets, only after every lane has finished and every response, keyed by RRN, has
+ * been acknowledged by the broker. If any send fails the listener throws, and the error handler
+ * from {@link com.example.authorize.config.KafkaConfig} calls it again with the same batch after
+ * a backoff, for as long as it takes, without committing.
+ * <p>
+ * Records that cannot be parsed, and requests whose processing throws, are logged and sent
+ * as they were to {@code authorize.kafka.dead-letter-topic}, keyed like the request.
+ * <p>
+ * Retransmitted requests, and batches retried by this process after a failed send, are
+ * answered with the original response by a {@link DuplicateDetector}, so they are not
+ * authorized against the ledger twice. The detector lives in memory only: a batch redelivered
+ * after a crash, or to another instance after a rebalance, meets a detector that has not seen
+ * it, while the ledger recovered from its journal already holds its debits, so those are
+ * applied again.
+ */
 @Service
 public class AuthorizationService {
 
+    // Link-level messages stay with the socket server; only transactions come through Kafka
+    private final MtiHandlerRegistry handlers;
+
     private final KafkaTemplate<String, String> kafkaTemplate;
-    private final Random random = new Random();
+    private final String deadLetterTopic;
+    private final DuplicateDetector duplicates;
+    private final ExecutorService lanes;
+    private final int laneCount;
 
-    public AuthorizationService(KafkaTemplate<String, String> kafkaTemplate) {
+    public AuthorizationService(KafkaTemplate<String, String> kafkaTemplate, LedgerAuthorizer authorizer,
+                                @Value("${authorize.kafka.lanes:8}") int lanes,
+                                @Value("${authorize.kafka.dead-letter-topic:iso8583-requests-dlt}") String deadLetterTopic,
+                                @Value("${authorize.duplicates.capacity:100000}") int duplicateCapacity,
+                                @Value("${authorize.duplicates.window-ms:60000}") long duplicateWindowMillis) {
         this.kafkaTemplate = kafkaTemplate;
+        this.deadLetterTopic = deadLetterTopic;
+        this.handlers = new MtiHandlerRegistry(Iso8583Rules.getDefault(), 11, 37)
+                .register(new AuthorizationHandler(authorizer))
+                .register(new ReversalHandler(authorizer::reverse))
+                .register(new AdviceHandler(authorizer::post));
+        this.duplicates = duplicateCapacity > 0 ? new DuplicateDetector(duplicateCapacity, duplicateWindowMillis) : null;
+        this.laneCount = Math.max(1, lanes);
+        AtomicInteger threads = new AtomicInteger();
+        this.lanes = Executors.newFixedThreadPool(laneCount, r -> {
+            Thread thread = new Thread(r, "authorize-lane-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        System.out.println("🛣️ Authorization batches split over " + laneCount + " lanes");
     }
 
-    @KafkaListener(topics = "iso8583-requests", groupId = "authorize-service")
-    public void processAuthorizationRequest(String message) {
+    @KafkaListener(topics = "iso8583-requests", groupId = "authorize-service", batch = "true")
+    public void processAuthorizationRequests(List<ConsumerRecord<String, String>> records) {
+        List<List<ConsumerRecord<String, String>>> byLane = new ArrayList<>(laneCount);
+        List<List<Iso8583Message>> requestsByLane = new ArrayList<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            byLane.add(new ArrayList<>());
+            requestsByLane.add(new ArrayList<>());
+        }
+        List<CompletableFuture<SendResult<String, String>>> sends = new ArrayList<>();
+        for (ConsumerRecord<String, String> record : records) {
+            System.out.println("📥 Received authorization request: " + record.value());
+            Iso8583Message request;
+            try {
+                request = Iso8583Parser.parseMessage(record.value());
+            } catch (Exception e) {
+                System.err.println("❌ Unparseable authorization request at " + record.topic() + "-" + record.partition()
+                        + "@" + record.offset() + ", sent to " + deadLetterTopic + ": " + e.getMessage());
+                sends.add(kafkaTemplate.send(deadLetterTopic, record.key(), record.value()));
+                continue;
+            }
+            int lane = Math.floorMod(laneKey(request, record).hashCode(), laneCount);
+            byLane.get(lane).add(record);
+            requestsByLane.get(lane).add(request);
+        }
+
+        List<CompletableFuture<List<CompletableFuture<SendResult<String, String>>>>> running = new ArrayList<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            List<ConsumerRecord<String, String>> laneRecords = byLane.get(i);
+            List<Iso8583Message> laneRequests = requestsByLane.get(i);
+            if (!laneRequests.isEmpty()) {
+                running.add(CompletableFuture.supplyAsync(() -> {
+                    List<CompletableFuture<SendResult<String, String>>> laneSends = new ArrayList<>(laneRequests.size());
+                    for (int r = 0; r < laneRequests.size(); r++) {
+                        processAuthorizationRequest(laneRecords.get(r), laneRequests.get(r), laneSends);
+                    }
+                    return laneSends;
+                }, lanes));
+            }
+        }
+        for (CompletableFuture<List<CompletableFuture<SendResult<String, String>>>> lane : running) {
+            sends.addAll(lane.join());
+        }
+        // One flush per batch; the offsets are only committed once every send is acknowledged
+        kafkaTemplate.flush();
         try {
-            System.out.println("📥 Received authorization request: " + message);
-            
-            Iso8583Message request = Iso8583Parser.parseMessage(message);
-            String mti = request.getMti();
-            
-            if ("0200".equals(mti)) {
-                Iso8583Message response = createAuthorizationResponse(request);
+            CompletableFuture.allOf(sends.toArray(new CompletableFuture[0])).join();
+        } catch (RuntimeException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            System.err.println("❌ Failed to publish authorization responses, batch will be retried: " + cause.getMessage());
+            throw new IllegalStateException("Authorization batch of " + records.size() + " records not fully published", cause);
+        }
+    }
+
+    private void processAuthorizationRequest(ConsumerRecord<String, String> record, Iso8583Message request,
+                                             List<CompletableFuture<SendResult<String, String>>> sends) {
+        try {
+            MtiHandler handler = handlers.handler(request.getMti());
+            if (handler == null) {
+                return;
+            }
+
+            Iso8583Message response = duplicates != null ? duplicates.process(request, handler::handle) : handler.handle(request);
+            if (response != null) {
                 String responseMessage = response.toString();
-                
+
                 System.out.println("📤 Sending authorization response: " + responseMessage);
-                kafkaTemplate.send("iso8583-responses", responseMessage);
+                sends.add(kafkaTemplate.send("iso8583-responses", response.getField(37), responseMessage));
             }
-            
+
         } catch (Exception e) {
-            System.err.println("❌ Error processing authorization: " + e.getMessage());
+            System.err.println("❌ Error processing authorization at " + record.topic() + "-" + record.partition()
+                    + "@" + record.offset() + ", sent to " + deadLetterTopic + ": " + e.getMessage());
+            sends.add(kafkaTemplate.send(deadLetterTopic, record.key(), record.value()));
         }
     }
 
-    private Iso8583Message createAuthorizationResponse(Iso8583Message request) {
-        Iso8583Message response = new Iso8583Message();
-        response.setMti("0210");
-        
-        // Copy key fields from request
-        String field2 = request.getField(2);
-        if (field2 != null) response.addField(2, field2);
-        
-        String field3 = request.getField(3);
-        if (field3 != null) response.addField(3, field3);
-        
-        String field4 = request.getField(4);
-        if (field4 != null) response.addField(4, field4);
-        
-        String field11 = request.getField(11);
-        if (field11 != null) response.addField(11, field11);
-        
-        String field37 = request.getField(37);
-        if (field37 != null) response.addField(37, field37);
-        
-        // Add response fields
-        response.addField(7, LocalDateTime.now().format(DateTimeFormatter.ofPattern("MMddHHmmss")));
-        response.addField(38, generateApprovalCode());
-        response.addField(39, "00"); // Approved
-        
-        return response;
+    @PreDestroy
+    public void stop() {
+        lanes.shutdown();
     }
 
-    private String generateApprovalCode() {
-        return String.format("%06d", random.nextInt(999999));
+    private static String laneKey(Iso8583Message request, ConsumerRecord<String, String> record) {
+        String key = request.getField(2);
+        if (key == null) {
+            key = request.getField(37);
+        }
+        if (key == null) {
+            key = record.key();
+        }
+        return key != null ? key : "";
     }
-}
\ No newline at end of file
+}
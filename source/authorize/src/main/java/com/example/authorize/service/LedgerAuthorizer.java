@@ -0,0 +1,341 @@
+package com.example.authorize.service;
+
+import com.example.authorize.ledger.ApprovedDebits;
+import com.example.authorize.ledger.CardLedger;
+import com.example.authorize.ledger.LedgerStore;
+import com.example.authorize.velocity.VelocityEngine;
+import com.example.common.dispatch.AuthorizationHandler;
+import com.example.common.model.Iso8583Message;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.YearMonth;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides authorizations against the {@link CardLedger}: 0100 holds the amount, 0200 debits it,
+ * refunds (processing code 20) credit it and balance inquiries (31) only check the card. A
+ * missing or malformed amount is declined with 13. Advices are applied to the ledger without a
+ * decision; reversals only undo a debit or hold remembered in {@link ApprovedDebits}.
+ * <p>
+ * Cards listed in {@code authorize.ledger.cards-file} are provisioned on startup unless the
+ * recovered ledger already has them. Other unknown cards are declined with 14, or provisioned
+ * with the opening balance when {@code authorize.ledger.auto-provision} is on, so simulator
+ * traffic with random PANs still exercises the full decision path.
+ * <p>
+ * With {@code authorize.ledger.data-dir} set, the ledger is recovered from its
+ * {@link LedgerStore} on startup, journaled as it changes, and snapshotted every
+ * {@code authorize.ledger.snapshot-interval-ms}, when the journal is half full, and on shutdown.
+ * <p>
+ * Debits are checked against the {@link VelocityEngine} rules before the ledger, and counted
+ * there once the ledger approves them. Cards or merchants the counter tables have no room for
+ * are allowed or declined as {@code authorize.velocity.on-overflow} says.
+ */
+@Component
+public class LedgerAuthorizer implements AuthorizationHandler.Authorizer {
+
+    private static final String REFUND = "20";
+    private static final String BALANCE_INQUIRY = "31";
+
+    private final CardLedger ledger;
+    private final ApprovedDebits approvals;
+    private final boolean autoProvision;
+    private final long openingBalance;
+    private final Clock clock;
+    private final LedgerStore store;
+    private final long snapshotIntervalMillis;
+    private final VelocityEngine velocity;
+    private ScheduledExecutorService snapshotter;
+    private long lastSnapshot;
+
+    // Current YYMM for expiry checks, recomputed once a minute
+    private volatile int currentYymm;
+    private volatile long yymmValidUntil;
+
+    public LedgerAuthorizer(@Value("${authorize.ledger.segments:64}") int segments,
+                            @Value("${authorize.ledger.initial-capacity:1048576}") int initialCapacity,
+                            @Value("${authorize.ledger.auto-provision:true}") boolean autoProvision,
+                            @Value("${authorize.ledger.opening-balance:100000}") long openingBalance,
+                            @Value("${authorize.ledger.cards-file:}") String cardsFile,
+                            @Value("${authorize.ledger.reversible-capacity:262144}") int reversibleCapacity,
+                            @Value("${authorize.ledger.data-dir:}") String dataDir,
+                            @Value("${authorize.ledger.journal-capacity:1048576}") int journalCapacity,
+                            @Value("${authorize.ledger.snapshot-interval-ms:300000}") long snapshotIntervalMillis,
+                            @Value("${authorize.velocity.enabled:true}") boolean velocityEnabled,
+                            @Value("${authorize.velocity.card-capacity:262144}") int velocityCardCapacity,
+                            @Value("${authorize.velocity.merchant-capacity:16384}") int velocityMerchantCapacity,
+                            @Value("${authorize.velocity.on-overflow:ALLOW}") VelocityEngine.Overflow velocityOnOverflow) throws IOException {
+        this.ledger = new CardLedger(segments, initialCapacity);
+        this.approvals = new ApprovedDebits(reversibleCapacity);
+        this.autoProvision = autoProvision;
+        this.openingBalance = openingBalance;
+        this.clock = Clock.systemUTC();
+        this.store = dataDir.isBlank() ? null : LedgerStore.open(Paths.get(dataDir), ledger, journalCapacity);
+        if (!cardsFile.isBlank()) {
+            int added = provisionCards(Paths.get(cardsFile));
+            System.out.println("💳 Provisioned " + added + " new cards from " + cardsFile);
+        }
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+        this.velocity = velocityEnabled
+                ? VelocityEngine.load(VelocityEngine.DEFAULT_RESOURCE, velocityCardCapacity, velocityMerchantCapacity, velocityOnOverflow)
+                : null;
+        if (velocity != null) {
+            System.out.println("🚦 Velocity rules loaded: " + velocity.getRuleCount() + " rules over " + velocity.getTrackCount()
+                    + " counter tables (" + velocityCardCapacity + " cards, " + velocityMerchantCapacity + " merchants, overflow "
+                    + velocityOnOverflow + ")");
+        }
+        System.out.println("💳 Card ledger ready (" + ledger.size() + " cards, auto-provision " + autoProvision
+                + ", opening balance " + openingBalance + ", persistence " + (store != null ? dataDir : "disabled") + ")");
+    }
+
+    @PostConstruct
+    public void start() {
+        if (store == null) {
+            return;
+        }
+        lastSnapshot = clock.millis();
+        snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ledger-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotter.scheduleWithFixedDelay(this::snapshotIfDue, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (store == null) {
+            return;
+        }
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // A final snapshot leaves nothing to replay on the next start
+        try {
+            store.snapshot();
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("❌ Final ledger snapshot failed, the journal will be replayed: " + e.getMessage());
+        }
+        try {
+            store.close();
+        } catch (IOException e) {
+            System.err.println("❌ Failed to close ledger journal: " + e.getMessage());
+        }
+    }
+
+    private void snapshotIfDue() {
+        long now = clock.millis();
+        if (now - lastSnapshot < snapshotIntervalMillis && store.journalUsage() < 0.5) {
+            return;
+        }
+        lastSnapshot = now;
+        try {
+            store.snapshot();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("❌ Ledger snapshot failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String authorize(Iso8583Message request) {
+        long pan = CardLedger.key(request.getField(2));
+        if (pan == 0) {
+            return CardLedger.INVALID_CARD;
+        }
+        int today = currentYymm();
+        if (autoProvision) {
+            ledger.provisionIfAbsent(pan, openingBalance, provisionedExpiry(request.getField(14), today));
+        }
+        String processingCode = request.getField(3);
+        long amount = processingCode != null && processingCode.startsWith(BALANCE_INQUIRY) ? 0 : amount(request);
+        if (amount < 0) {
+            return CardLedger.INVALID_AMOUNT;
+        }
+        if (processingCode != null && processingCode.startsWith(REFUND)) {
+            return ledger.credit(pan, amount) ? CardLedger.APPROVED : CardLedger.INVALID_CARD;
+        }
+        boolean counted = velocity != null && amount > 0;
+        if (counted) {
+            String declined = velocity.check(request, amount);
+            if (declined != null) {
+                return declined;
+            }
+        }
+        boolean hold = "0100".equals(request.getMti());
+        String responseCode = ledger.debit(pan, amount, today, hold);
+        if (amount > 0 && CardLedger.APPROVED.equals(responseCode)) {
+            approvals.remember(approvalKey(request), pan, amount, hold);
+            if (counted) {
+                velocity.record(request, amount);
+            }
+        }
+        return responseCode;
+    }
+
+    /**
+     * Undoes the approved original named by the reversal's RRN, terminal id and original STAN
+     * (field 90, or field 11 without one): releases a hold, credits back a debit. The amount is
+     * field 4, capped at what the original took, or all of it if field 4 is missing or
+     * malformed. Originals that were declined, never arrived, were already reversed or are too
+     * old to be remembered are left alone.
+     */
+    public void reverse(Iso8583Message reversal) {
+        long pan = CardLedger.key(reversal.getField(2));
+        long key = ApprovedDebits.key(reversal.getField(37), originalStan(reversal), reversal.getField(41));
+        ApprovedDebits.Debit original = approvals.reverse(key, pan);
+        if (original == null) {
+            System.out.println("⚠️ Reversal without an approved original, not applied: STAN " + reversal.getField(11)
+                    + ", RRN " + reversal.getField(37));
+            return;
+        }
+        long requested = amount(reversal);
+        long amount = requested < 0 ? original.getAmount() : Math.min(requested, original.getAmount());
+        boolean applied = original.isHold() ? ledger.release(pan, amount) : ledger.credit(pan, amount);
+        if (!applied) {
+            System.out.println("⚠️ Reversal for unknown card, STAN " + reversal.getField(11));
+        }
+    }
+
+    /**
+     * Posts an approved advice: 0120 as a hold, 0220 as a debit.
+     */
+    public void post(Iso8583Message advice) {
+        String responseCode = advice.getField(39);
+        if (responseCode != null && !CardLedger.APPROVED.equals(responseCode)) {
+            return;
+        }
+        long amount = amount(advice);
+        if (amount < 0) {
+            System.out.println("⚠️ Advice with a missing or malformed amount, not posted: STAN " + advice.getField(11));
+            return;
+        }
+        long pan = CardLedger.key(advice.getField(2));
+        if (autoProvision && pan != 0) {
+            ledger.provisionIfAbsent(pan, openingBalance, provisionedExpiry(advice.getField(14), currentYymm()));
+        }
+        boolean hold = "0120".equals(advice.getMti());
+        if (!ledger.post(pan, amount, hold)) {
+            System.out.println("⚠️ Advice for unknown card, STAN " + advice.getField(11));
+        } else if (amount > 0) {
+            approvals.remember(approvalKey(advice), pan, amount, hold);
+        }
+    }
+
+    /**
+     * @return requests whose card, merchant or MCC a full velocity table could not track
+     */
+    public long getVelocityOverflowCount() {
+        return velocity != null ? velocity.getOverflowCount() : 0;
+    }
+
+    /**
+     * Adds the cards of a {@code pan,balance,expiry} file (balance in minor units, expiry YYMM;
+     * blank lines and {@code #} comments skipped) that the ledger does not have yet, so balances
+     * recovered from the store are kept.
+     *
+     * @return the number of cards added
+     */
+    private int provisionCards(Path file) throws IOException {
+        int added = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] columns = line.split(",");
+                long pan = columns.length == 3 ? CardLedger.key(columns[0].strip()) : 0;
+                if (pan == 0) {
+                    throw new IllegalArgumentException(file + ":" + lineNumber + ": expected pan,balance,expiry");
+                }
+                try {
+                    if (ledger.provisionIfAbsent(pan, Long.parseLong(columns[1].strip()), Integer.parseInt(columns[2].strip()))) {
+                        added++;
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(file + ":" + lineNumber + ": balance and expiry must be numbers", e);
+                }
+            }
+        }
+        return added;
+    }
+
+    private int currentYymm() {
+        long now = clock.millis();
+        if (now >= yymmValidUntil) {
+            YearMonth month = YearMonth.now(clock);
+            currentYymm = month.getYear() % 100 * 100 + month.getMonthValue();
+            yymmValidUntil = now + 60_000;
+        }
+        return currentYymm;
+    }
+
+    /**
+     * The request's field 14 if it is a valid YYMM, otherwise three years from now.
+     */
+    private static int provisionedExpiry(String expiry, int today) {
+        if (expiry != null && expiry.length() == 4) {
+            try {
+                int yymm = Integer.parseInt(expiry);
+                int month = yymm % 100;
+                if (month >= 1 && month <= 12) {
+                    return yymm;
+                }
+            } catch (NumberFormatException ignored) {
+                // fall through to the default
+            }
+        }
+        return today + 300;
+    }
+
+    private static long approvalKey(Iso8583Message request) {
+        return ApprovedDebits.key(request.getField(37), request.getField(11), request.getField(41));
+    }
+
+    /**
+     * The STAN the original was sent with: positions 5-10 of field 90 (original MTI, STAN,
+     * transmission time...), or the reversal's own STAN when field 90 is missing.
+     */
+    private static String originalStan(Iso8583Message reversal) {
+        String original = reversal.getField(90);
+        return original != null && original.length() >= 10 ? original.substring(4, 10) : reversal.getField(11);
+    }
+
+    /**
+     * @return field 4 in minor units, or -1 if it is missing or not 1-12 digits
+     */
+    private static long amount(Iso8583Message message) {
+        String amount = message.getField(4);
+        if (amount == null || amount.isEmpty() || amount.length() > 12) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < amount.length(); i++) {
+            char c = amount.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.authorize.velocity;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transaction count and amount per {@code long} key over a sliding window, without locks.
+ * <p>
+ * Keys live in a fixed-size linear-probing table of {@link AtomicLongArray}s and are claimed
+ * with a CAS. Each key has a ring of {@link #BUCKETS} count cells and amount cells; a cell
+ * packs the bucket's epoch (24 bits) with its value (40 bits), so a writer that finds a cell
+ * from an older lap of the ring restarts it in the same CAS, and readers ignore cells that fell
+ * out of the window without anyone clearing them. A key whose cells have all fallen out of the
+ * window gives its slot to the next new key on its probe path, so the table holds the keys seen
+ * in the last window rather than every key ever seen. When no slot is free the key is not
+ * tracked, {@link #getOverflowCount()} goes up and the first time it happens it is logged.
+ */
+final class SlidingWindowCounters {
+
+    static final int BUCKETS = 12;
+
+    private static final long EMPTY = 0;
+    private static final int MAX_PROBE = 32;
+    private static final int VALUE_BITS = 40;
+    private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+    private static final long EPOCH_MASK = (1L << (64 - VALUE_BITS)) - 1;
+
+    private final String name;
+    private final long bucketMillis;
+    private final int mask;
+    private final AtomicLongArray keys;
+    private final AtomicLongArray touched;
+    private final AtomicLongArray counts;
+    private final AtomicLongArray amounts;
+    private final LongAdder overflow = new LongAdder();
+    private volatile boolean overflowed;
+
+    /**
+     * @param capacity keys tracked at once; the table is sized to stay at most 75% full
+     */
+    SlidingWindowCounters(String name, long windowMillis, int capacity) {
+        this.name = name;
+        this.bucketMillis = Math.max(1, windowMillis / BUCKETS);
+        int length = Integer.highestOneBit((int) Math.min(1 << 30, Math.max(2, capacity) * 4L / 3 + 1) * 2 - 1);
+        this.mask = length - 1;
+        this.keys = new AtomicLongArray(length);
+        this.touched = new AtomicLongArray(length);
+        this.counts = new AtomicLongArray(length * BUCKETS);
+        this.amounts = new AtomicLongArray(length * BUCKETS);
+    }
+
+    /**
+     * @return the bucket epoch for a wall-clock time, to pass to the other methods
+     */
+    long epoch(long nowMillis) {
+        return nowMillis / bucketMillis;
+    }
+
+    /**
+     * @return the slot of {@code key}, or -1 if it is not tracked
+     */
+    int find(long key) {
+        int slot = home(key);
+        for (int probe = 0; probe < MAX_PROBE; probe++, slot = (slot + 1) & mask) {
+            long k = keys.get(slot);
+            if (k == key) {
+                return slot;
+            }
+            if (k == EMPTY) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds {@code key}, or claims an empty or expired slot for it.
+     *
+     * @return the slot, or -1 if the probe path is full of live keys
+     */
+    int claim(long key, long epoch) {
+        while (true) {
+            int slot = home(key);
+            int expired = -1;
+            long expiredKey = EMPTY;
+            int probe = 0;
+            for (; probe < MAX_PROBE; probe++, slot = (slot + 1) & mask) {
+                long k = keys.get(slot);
+                if (k == key) {
+                    return slot;
+                }
+                if (k == EMPTY) {
+                    break;
+                }
+                if (expired < 0 && !live(touched.get(slot), epoch)) {
+                    expired = slot;
+                    expiredKey = k;
+                }
+            }
+            // Reuse the first expired slot so the key stays as close to home as it can
+            if (expired >= 0) {
+                if (keys.compareAndSet(expired, expiredKey, key)) {
+                    touched.set(expired, epoch & EPOCH_MASK);
+                    return expired;
+                }
+            } else if (probe < MAX_PROBE) {
+                if (keys.compareAndSet(slot, EMPTY, key)) {
+                    touched.set(slot, epoch & EPOCH_MASK);
+                    return slot;
+                }
+            } else {
+                overflow.increment();
+                if (!overflowed) {
+                    overflowed = true;
+                    System.err.println("❌ Velocity counter table " + name + " is full; new keys are not tracked until older ones expire");
+                }
+                return -1;
+            }
+            // Lost the race for the slot; look again, the winner may have been this key
+        }
+    }
+
+    void add(int slot, long epoch, long amount) {
+        long stamp = epoch & EPOCH_MASK;
+        int cell = slot * BUCKETS + (int) (epoch % BUCKETS);
+        add(counts, cell, stamp, 1);
+        add(amounts, cell, stamp, amount);
+        touched.set(slot, stamp);
+    }
+
+    long count(int slot, long epoch) {
+        return sum(counts, slot, epoch & EPOCH_MASK);
+    }
+
+    long amount(int slot, long epoch) {
+        return sum(amounts, slot, epoch & EPOCH_MASK);
+    }
+
+    /**
+     * @return new keys that could not be tracked because their probe path was full
+     */
+    long getOverflowCount() {
+        return overflow.sum();
+    }
+
+    private int home(long key) {
+        return (int) mix(key) & mask;
+    }
+
+    private static boolean live(long cellEpoch, long epoch) {
+        return ((epoch - cellEpoch) & EPOCH_MASK) < BUCKETS;
+    }
+
+    private static void add(AtomicLongArray cells, int cell, long stamp, long delta) {
+        while (true) {
+            long current = cells.get(cell);
+            long value = (current >>> VALUE_BITS) == stamp ? current & VALUE_MASK : 0;
+            long next = stamp << VALUE_BITS | Math.min(VALUE_MASK, value + delta);
+            if (cells.compareAndSet(cell, current, next)) {
+                return;
+            }
+        }
+    }
+
+    private static long sum(AtomicLongArray cells, int slot, long stamp) {
+        long sum = 0;
+        int base = slot * BUCKETS;
+        for (int i = 0; i < BUCKETS; i++) {
+            long cell = cells.get(base + i);
+            if (live(cell >>> VALUE_BITS, stamp)) {
+                sum += cell & VALUE_MASK;
+            }
+        }
+        return sum;
+    }
+
+    private static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+}
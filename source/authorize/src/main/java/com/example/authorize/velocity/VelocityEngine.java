@@ -0,0 +1,321 @@
+package com.example.authorize.velocity;
+
+import com.example.authorize.ledger.CardLedger;
+import com.example.common.model.Iso8583Message;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.LongSupplier;
+
+/**
+ * Velocity checks from {@code velocity-rules.json}, compiled once into an evaluation plan.
+ * <p>
+ * Rules that share a key, window and MCC filter share one {@link SlidingWindowCounters}
+ * table (a track), so a card with a per-minute count rule and a per-minute amount rule costs
+ * one probe. The plan is an array of checks in file order, each pointing at its track; a
+ * request reads each track it needs once, and an approved one is added to every track whose
+ * filter it passes. A check allocates one small array and takes no lock.
+ * <p>
+ * A key that does not fit its table (see {@link SlidingWindowCounters}) cannot be limited.
+ * {@link Overflow} decides what happens to its requests: ALLOW passes them as if the key had
+ * no history, DECLINE declines them with {@link #OVERFLOW_DECLINED}. Either way they are
+ * counted in {@link #getOverflowCount()}.
+ */
+public class VelocityEngine {
+
+    public static final String DEFAULT_RESOURCE = "velocity-rules.json";
+
+    /** System malfunction: the request could not be checked against every rule. */
+    public static final String OVERFLOW_DECLINED = "96";
+
+    /**
+     * What to do with a request whose key a full counter table cannot track.
+     */
+    public enum Overflow {
+        /** Fail open: check it as if the key had no history. */
+        ALLOW,
+        /** Fail closed: decline it with {@link #OVERFLOW_DECLINED}. */
+        DECLINE
+    }
+
+    enum Key {
+        PAN(2),
+        MERCHANT(42),
+        MCC(18);
+
+        final int field;
+
+        Key(int field) {
+            this.field = field;
+        }
+    }
+
+    enum Window {
+        MINUTE(60_000),
+        HOUR(3_600_000);
+
+        final long millis;
+
+        Window(long millis) {
+            this.millis = millis;
+        }
+    }
+
+    private static final int MCC_CODES = 10_000;
+
+    // Per-track state in check(), besides a slot: not looked up yet, and not applicable
+    private static final int UNREAD = -3;
+    private static final int SKIP = -2;
+
+    private final Track[] tracks;
+    private final Check[] checks;
+    private final Overflow onOverflow;
+    private final LongSupplier clock;
+
+    /**
+     * @param capacities keys each track of a key type holds at once
+     */
+    VelocityEngine(List<VelocityRule> rules, Map<Key, Integer> capacities, Overflow onOverflow, LongSupplier clock) {
+        Map<String, Track> byIdentity = new LinkedHashMap<>();
+        List<Check> compiled = new ArrayList<>();
+        for (VelocityRule rule : rules) {
+            Key key = parse(Key.class, rule.getKey(), rule);
+            Window window = parse(Window.class, rule.getWindow(), rule);
+            boolean amount = "AMOUNT".equalsIgnoreCase(rule.getMeasure());
+            if (!amount && !"COUNT".equalsIgnoreCase(rule.getMeasure())) {
+                throw new IllegalArgumentException("Velocity rule " + rule.getName() + ": unknown measure " + rule.getMeasure());
+            }
+            if (rule.getResponseCode() == null || rule.getResponseCode().length() != 2) {
+                throw new IllegalArgumentException("Velocity rule " + rule.getName() + ": response code must be 2 characters");
+            }
+            TreeSet<Integer> mccs = new TreeSet<>();
+            if (rule.getMccs() != null) {
+                for (String mcc : rule.getMccs()) {
+                    int code = mcc(mcc);
+                    if (code < 0) {
+                        throw new IllegalArgumentException("Velocity rule " + rule.getName() + ": invalid MCC " + mcc);
+                    }
+                    mccs.add(code);
+                }
+            }
+            Track track = byIdentity.computeIfAbsent(key + "/" + window + "/" + mccs,
+                    identity -> new Track(byIdentity.size(), key, mccs,
+                            new SlidingWindowCounters(identity, window.millis, capacities.getOrDefault(key, 32_768))));
+            compiled.add(new Check(track.index, amount, rule.getLimit(), rule.getResponseCode()));
+        }
+        this.tracks = byIdentity.values().toArray(new Track[0]);
+        this.checks = compiled.toArray(new Check[0]);
+        this.onOverflow = onOverflow;
+        this.clock = clock;
+    }
+
+    public static VelocityEngine load(String resource, int cardCapacity, int merchantCapacity, Overflow onOverflow) {
+        List<VelocityRule> rules = new ArrayList<>();
+        try (InputStream is = VelocityEngine.class.getClassLoader().getResourceAsStream(resource)) {
+            if (is == null) {
+                throw new IllegalStateException("Velocity rules resource not found: " + resource);
+            }
+            ObjectMapper mapper = new ObjectMapper();
+            JsonNode root = mapper.readTree(is);
+            for (JsonNode rule : root.get("rules")) {
+                rules.add(mapper.convertValue(rule, VelocityRule.class));
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load velocity rules", e);
+        }
+        // Every MCC fits in one table
+        return new VelocityEngine(rules, Map.of(Key.PAN, cardCapacity, Key.MERCHANT, merchantCapacity, Key.MCC, MCC_CODES),
+                onOverflow, System::currentTimeMillis);
+    }
+
+    /**
+     * @return the response code of the first rule, in file order, that {@code amount} more
+     *         would break, {@link #OVERFLOW_DECLINED} if a key cannot be tracked and overflow is
+     *         declined, or null if it passes them all
+     */
+    public String check(Iso8583Message request, long amount) {
+        long now = clock.getAsLong();
+        int mcc = mcc(request.getField(18));
+        int[] slots = new int[tracks.length];
+        Arrays.fill(slots, UNREAD);
+        for (Check check : checks) {
+            Track track = tracks[check.track];
+            int slot = slots[check.track];
+            if (slot == UNREAD) {
+                long key = track.applies(mcc) ? key(track.key, request, mcc) : 0;
+                if (key == 0) {
+                    slot = SKIP;
+                } else if (onOverflow == Overflow.DECLINE) {
+                    // Claimed now so a full table is noticed before the ledger is touched
+                    slot = track.counters.claim(key, track.counters.epoch(now));
+                    if (slot < 0) {
+                        return OVERFLOW_DECLINED;
+                    }
+                } else {
+                    slot = track.counters.find(key);
+                }
+                slots[check.track] = slot;
+            }
+            if (slot == SKIP) {
+                continue;
+            }
+            long used = 0;
+            // Not found: a new key, or with ALLOW one its table had no room for
+            if (slot >= 0) {
+                long epoch = track.counters.epoch(now);
+                used = check.amount ? track.counters.amount(slot, epoch) : track.counters.count(slot, epoch);
+            }
+            if (used + (check.amount ? amount : 1) > check.limit) {
+                return check.responseCode;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Counts an approved transaction in every track it belongs to.
+     */
+    public void record(Iso8583Message request, long amount) {
+        long now = clock.getAsLong();
+        int mcc = mcc(request.getField(18));
+        for (Track track : tracks) {
+            if (!track.applies(mcc)) {
+                continue;
+            }
+            long key = key(track.key, request, mcc);
+            if (key == 0) {
+                continue;
+            }
+            long epoch = track.counters.epoch(now);
+            int slot = track.counters.claim(key, epoch);
+            if (slot >= 0) {
+                track.counters.add(slot, epoch, amount);
+            }
+        }
+    }
+
+    /**
+     * @return keys that could not be tracked because a table was full, over all tracks
+     */
+    public long getOverflowCount() {
+        long overflow = 0;
+        for (Track track : tracks) {
+            overflow += track.counters.getOverflowCount();
+        }
+        return overflow;
+    }
+
+    public int getRuleCount() {
+        return checks.length;
+    }
+
+    public int getTrackCount() {
+        return tracks.length;
+    }
+
+    /**
+     * @return a non-zero key, or 0 if the request does not carry the field
+     */
+    private static long key(Key key, Iso8583Message request, int mcc) {
+        return switch (key) {
+            case PAN -> CardLedger.key(request.getField(key.field));
+            case MERCHANT -> merchant(request.getField(key.field));
+            // Parsed once per request by the caller
+            case MCC -> mcc + 1L;
+        };
+    }
+
+    private static long merchant(String merchant) {
+        if (merchant == null) {
+            return 0;
+        }
+        int end = merchant.length();
+        while (end > 0 && merchant.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (end == 0) {
+            return 0;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < end; i++) {
+            hash = (hash ^ merchant.charAt(i)) * 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * @return the four-digit MCC as a number, or -1 if it is missing or malformed
+     */
+    private static int mcc(String mcc) {
+        if (mcc == null || mcc.length() != 4) {
+            return -1;
+        }
+        int code = 0;
+        for (int i = 0; i < 4; i++) {
+            char c = mcc.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            code = code * 10 + (c - '0');
+        }
+        return code;
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String value, VelocityRule rule) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Velocity rule " + rule.getName() + ": unknown "
+                    + type.getSimpleName().toLowerCase(Locale.ROOT) + " " + value);
+        }
+    }
+
+    /**
+     * One counter table and the MCCs it is limited to.
+     */
+    private static final class Track {
+        final int index;
+        final Key key;
+        final SlidingWindowCounters counters;
+        // Indexed by MCC; null when the track sees every transaction
+        final boolean[] mccs;
+
+        Track(int index, Key key, TreeSet<Integer> mccs, SlidingWindowCounters counters) {
+            this.index = index;
+            this.key = key;
+            this.counters = counters;
+            if (mccs.isEmpty()) {
+                this.mccs = null;
+            } else {
+                this.mccs = new boolean[MCC_CODES];
+                mccs.forEach(code -> this.mccs[code] = true);
+            }
+        }
+
+        boolean applies(int mcc) {
+            return mccs == null || (mcc >= 0 && mccs[mcc]);
+        }
+    }
+
+    private static final class Check {
+        final int track;
+        final boolean amount;
+        final long limit;
+        final String responseCode;
+
+        Check(int track, boolean amount, long limit, String responseCode) {
+            this.track = track;
+            this.amount = amount;
+            this.limit = limit;
+            this.responseCode = responseCode;
+        }
+    }
+}
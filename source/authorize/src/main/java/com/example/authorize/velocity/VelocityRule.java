@@ -0,0 +1,41 @@
+package com.example.authorize.velocity;
+
+import java.util.List;
+
+/**
+ * One entry of {@code velocity-rules.json}: decline with {@code responseCode} when a
+ * transaction would take the {@code measure} ({@code COUNT} or {@code AMOUNT}) of its
+ * {@code key} ({@code PAN}, {@code MERCHANT} or {@code MCC}) over the last {@code window}
+ * ({@code MINUTE} or {@code HOUR}) past {@code limit}. With {@code mccs} set, the rule only
+ * sees and counts transactions with one of those merchant category codes.
+ */
+public class VelocityRule {
+    private String name;
+    private String key;
+    private String window;
+    private String measure;
+    private long limit;
+    private String responseCode;
+    private List<String> mccs;
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public String getKey() { return key; }
+    public void setKey(String key) { this.key = key; }
+
+    public String getWindow() { return window; }
+    public void setWindow(String window) { this.window = window; }
+
+    public String getMeasure() { return measure; }
+    public void setMeasure(String measure) { this.measure = measure; }
+
+    public long getLimit() { return limit; }
+    public void setLimit(long limit) { this.limit = limit; }
+
+    public String getResponseCode() { return responseCode; }
+    public void setResponseCode(String responseCode) { this.responseCode = responseCode; }
+
+    public List<String> getMccs() { return mccs; }
+    public void setMccs(List<String> mccs) { this.mccs = mccs; }
+}
@@ -0,0 +1,87 @@
+package com.example.authorize.ledger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardLedgerTest {
+
+    private static final long PAN = CardLedger.key("4111111111111111");
+    private static final int TODAY = 2610;
+
+    @Test
+    @DisplayName("Should parse PANs of 1-19 digits and reject anything else")
+    void shouldParseCardKeys() {
+        assertEquals(4111111111111111L, PAN);
+        assertEquals(Long.parseUnsignedLong("9999999999999999999"), CardLedger.key("9999999999999999999"));
+        assertEquals(0, CardLedger.key(null));
+        assertEquals(0, CardLedger.key(""));
+        assertEquals(0, CardLedger.key("0000"));
+        assertEquals(0, CardLedger.key("41111111111111111111"));
+        assertEquals(0, CardLedger.key("4111-1111"));
+    }
+
+    @Test
+    @DisplayName("Should decline unknown, closed, expired and underfunded cards")
+    void shouldDeclineWithReasonCodes() {
+        CardLedger ledger = new CardLedger(4, 16);
+        ledger.provision(PAN, 1_000, 2612);
+
+        assertEquals(CardLedger.INVALID_CARD, ledger.debit(CardLedger.key("5500000000000004"), 100, TODAY, false));
+        assertEquals(CardLedger.INSUFFICIENT_FUNDS, ledger.debit(PAN, 1_001, TODAY, false));
+        assertEquals(CardLedger.EXPIRED_CARD, ledger.debit(PAN, 100, 2701, false));
+        assertEquals(CardLedger.APPROVED, ledger.debit(PAN, 1_000, TODAY, false));
+
+        ledger.close(PAN);
+        assertEquals(CardLedger.INVALID_CARD, ledger.debit(PAN, 0, TODAY, false));
+        assertEquals(0, ledger.available(PAN), "Declines should not change the balance");
+    }
+
+    @Test
+    @DisplayName("Should move a hold to the held amount and take a debit from available")
+    void shouldHoldOrDebit() {
+        CardLedger ledger = new CardLedger(4, 16);
+        ledger.provision(PAN, 1_000, 2612);
+
+        assertEquals(CardLedger.APPROVED, ledger.debit(PAN, 300, TODAY, true));
+        assertEquals(700, ledger.available(PAN));
+        assertEquals(300, ledger.held(PAN));
+
+        assertEquals(CardLedger.APPROVED, ledger.debit(PAN, 200, TODAY, false));
+        assertEquals(500, ledger.available(PAN));
+        assertEquals(300, ledger.held(PAN));
+    }
+
+    @Test
+    @DisplayName("Should release no more than is held")
+    void shouldCapReleaseAtHeldAmount() {
+        CardLedger ledger = new CardLedger(4, 16);
+        ledger.provision(PAN, 1_000, 2612);
+        ledger.debit(PAN, 300, TODAY, true);
+
+        assertTrue(ledger.release(PAN, 500));
+        assertEquals(1_000, ledger.available(PAN));
+        assertEquals(0, ledger.held(PAN));
+
+        assertTrue(ledger.release(PAN, 100));
+        assertEquals(1_000, ledger.available(PAN));
+        assertFalse(ledger.release(CardLedger.key("5500000000000004"), 100));
+    }
+
+    @Test
+    @DisplayName("Should keep every card when segments grow past their initial capacity")
+    void shouldGrowSegments() {
+        CardLedger ledger = new CardLedger(2, 4);
+        for (long i = 1; i <= 10_000; i++) {
+            assertTrue(ledger.provisionIfAbsent(4_000_000_000_000_000L + i, i, 2612));
+        }
+
+        assertEquals(10_000, ledger.size());
+        for (long i = 1; i <= 10_000; i++) {
+            assertEquals(i, ledger.available(4_000_000_000_000_000L + i));
+        }
+        assertFalse(ledger.provisionIfAbsent(4_000_000_000_000_001L, 0, 2612));
+        assertEquals(Long.MIN_VALUE, ledger.available(4_000_000_000_000_000L));
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.authorize.ledger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LedgerStoreTest {
+
+    private static final long PAN = CardLedger.key("4111111111111111");
+    private static final long OTHER_PAN = CardLedger.key("5500000000000004");
+    private static final int TODAY = 2610;
+
+    @TempDir
+    Path directory;
+
+    private CardLedger reopen() throws Exception {
+        CardLedger ledger = new CardLedger(4, 16);
+        LedgerStore.open(directory, ledger, 64).close();
+        return ledger;
+    }
+
+    @Test
+    @DisplayName("Should recover the latest snapshot plus the journal written after it")
+    void shouldRecoverSnapshotAndJournal() throws Exception {
+        CardLedger ledger = new CardLedger(4, 16);
+        LedgerStore store = LedgerStore.open(directory, ledger, 64);
+        ledger.provision(PAN, 1_000, 2612);
+        ledger.debit(PAN, 100, TODAY, true);
+        store.snapshot();
+        ledger.provision(OTHER_PAN, 500, 2612);
+        ledger.debit(PAN, 200, TODAY, false);
+        ledger.release(PAN, 100);
+        store.close();
+
+        CardLedger recovered = reopen();
+
+        assertEquals(2, recovered.size());
+        assertEquals(800, recovered.available(PAN));
+        assertEquals(0, recovered.held(PAN));
+        assertEquals(500, recovered.available(OTHER_PAN));
+        assertTrue(Files.exists(directory.resolve("snapshot-1.dat")));
+        assertFalse(Files.exists(directory.resolve("journal-0.dat")), "The snapshot should have replaced journal 0");
+    }
+
+    @Test
+    @DisplayName("Should ignore journals a snapshot replaced when a crash left them behind")
+    void shouldIgnoreReplacedFilesAfterCrash() throws Exception {
+        CardLedger ledger = new CardLedger(4, 16);
+        LedgerStore store = LedgerStore.open(directory, ledger, 64);
+        ledger.provision(PAN, 1_000, 2612);
+        ledger.debit(PAN, 300, TODAY, false);
+        // Crash after the rename, before the old journal was deleted: put it back afterwards
+        byte[] replaced = Files.readAllBytes(directory.resolve("journal-0.dat"));
+        store.snapshot();
+        ledger.debit(PAN, 100, TODAY, false);
+        store.close();
+        Files.write(directory.resolve("journal-0.dat"), replaced);
+        // and a snapshot that was still being written
+        Files.write(directory.resolve("snapshot-2.dat.tmp"), new byte[]{1, 2, 3});
+
+        CardLedger recovered = reopen();
+
+        assertEquals(600, recovered.available(PAN), "Journal 0 is already in snapshot 1 and must not be replayed");
+        assertFalse(Files.exists(directory.resolve("snapshot-2.dat.tmp")));
+    }
+
+    @Test
+    @DisplayName("Should skip a record whose operation was never written")
+    void shouldSkipUnfinishedRecord() throws Exception {
+        CardLedger ledger = new CardLedger(4, 16);
+        LedgerStore store = LedgerStore.open(directory, ledger, 64);
+        ledger.provision(PAN, 1_000, 2612);
+        ledger.debit(PAN, 300, TODAY, false);
+        store.close();
+
+        // Record 2 lost its op byte in a crash while record 3, appended concurrently, completed
+        try (FileChannel channel = FileChannel.open(directory.resolve("journal-0.dat"), StandardOpenOption.WRITE)) {
+            channel.write(record((byte) 0, PAN, 999), 2L * LedgerJournal.RECORD);
+            channel.write(record(LedgerJournal.CREDIT, PAN, 5), 3L * LedgerJournal.RECORD);
+        }
+
+        CardLedger recovered = reopen();
+
+        assertEquals(705, recovered.available(PAN));
+    }
+
+    private static ByteBuffer record(byte op, long pan, long amount) {
+        ByteBuffer record = ByteBuffer.allocate(LedgerJournal.RECORD);
+        record.put(0, op).putLong(8, pan).putLong(16, amount);
+        return record;
+    }
+}
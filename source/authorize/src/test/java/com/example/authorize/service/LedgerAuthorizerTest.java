@@ -0,0 +1,134 @@
+package com.example.authorize.service;
+
+import com.example.authorize.ledger.CardLedger;
+import com.example.authorize.velocity.VelocityEngine;
+import com.example.common.model.Iso8583Message;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LedgerAuthorizerTest {
+
+    private static final String PAN = "4111111111111111";
+
+    private LedgerAuthorizer authorizer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Every card starts with 1000; no persistence, no velocity rules
+        authorizer = new LedgerAuthorizer(4, 16, true, 1_000, "", 16, "", 1024, 300_000, false, 0, 0, VelocityEngine.Overflow.ALLOW);
+    }
+
+    private static Iso8583Message request(String mti, String stan, String amount) {
+        Iso8583Message message = new Iso8583Message();
+        message.setMti(mti);
+        message.addField(2, PAN);
+        message.addField(3, "000000");
+        if (amount != null) {
+            message.addField(4, amount);
+        }
+        message.addField(11, stan);
+        message.addField(37, "0000000" + stan.substring(1));
+        message.addField(41, "TERM0001");
+        return message;
+    }
+
+    private static Iso8583Message reversal(String originalMti, String originalStan, String amount) {
+        Iso8583Message reversal = request("0400", "900001", amount);
+        reversal.addField(37, "0000000" + originalStan.substring(1));
+        reversal.addField(90, originalMti + originalStan + "1016120000" + "0".repeat(22));
+        return reversal;
+    }
+
+    @Test
+    @DisplayName("Should decline missing, signed and malformed amounts with 13")
+    void shouldDeclineMalformedAmounts() {
+        assertEquals(CardLedger.INVALID_AMOUNT, authorizer.authorize(request("0200", "000001", null)));
+        assertEquals(CardLedger.INVALID_AMOUNT, authorizer.authorize(request("0200", "000002", "-00000000500")));
+        assertEquals(CardLedger.INVALID_AMOUNT, authorizer.authorize(request("0200", "000003", "+00000000500")));
+        assertEquals(CardLedger.INVALID_AMOUNT, authorizer.authorize(request("0200", "000004", "0000000005OO")));
+        assertEquals(CardLedger.INVALID_AMOUNT, authorizer.authorize(request("0200", "000005", "0000000000500")));
+
+        assertEquals(CardLedger.APPROVED, authorizer.authorize(request("0200", "000006", "000000001000")));
+        assertEquals(CardLedger.INSUFFICIENT_FUNDS, authorizer.authorize(request("0200", "000007", "000000000001")),
+                "Declined amounts should not have been taken or credited");
+    }
+
+    @Test
+    @DisplayName("Should credit back an approved debit once")
+    void shouldReverseApprovedDebitOnce() {
+        assertEquals(CardLedger.APPROVED, authorizer.authorize(request("0200", "000001", "000000001000")));
+
+        authorizer.reverse(reversal("0200", "000001", "000000001000"));
+        authorizer.reverse(reversal("0200", "000001", "000000001000"));
+
+        assertEquals(CardLedger.APPROVED, authorizer.authorize(request("0200", "000002", "000000001000")));
+        assertEquals(CardLedger.INSUFFICIENT_FUNDS, authorizer.authorize(request("0200", "000003", "000000000001")));
+    }
+
+    @Test
+    @DisplayName("Should not credit reversals of declined or unknown originals")
+    void shouldIgnoreReversalsWithoutApprovedOriginal() {
+        assertEquals(CardLedger.INSUFFICIENT_FUNDS, authorizer.authorize(request("0200", "000001", "000000001500")));
+
+        authorizer.reverse(reversal("0200", "000001", "000000001500"));
+        authorizer.reverse(reversal("0200", "000099", "000000001500"));
+
+        assertEquals(CardLedger.INSUFFICIENT_FUNDS, authorizer.authorize(request("0200", "000002", "000000001001")));
+    }
+
+    @Test
+    @DisplayName("Should cap a reversal at the original amount")
+    void shouldCapReversalAtOriginalAmount() {
+        assertEquals(CardLedger.APPROVED, authorizer.authorize(request("0200", "000001", "000000000300")));
+
+        authorizer.reverse(reversal("0200", "000001", "000000000900"));
+
+        assertEquals(CardLedger.INSUFFICIENT_FUNDS, authorizer.authorize(request("0200", "000002", "000000001001")));
+        assertEquals(CardLedger.APPROVED, authorizer.authorize(request("0200", "000003", "000000001000")));
+    }
+
+    @Test
+    @DisplayName("Should release the hold of a reversed 0100")
+    void shouldReleaseReversedHold() {
+        assertEquals(CardLedger.APPROVED, authorizer.authorize(request("0100", "000001", "000000001000")));
+        assertEquals(CardLedger.INSUFFICIENT_FUNDS, authorizer.authorize(request("0200", "000002", "000000000001")));
+
+        authorizer.reverse(reversal("0100", "000001", null));
+
+        assertEquals(CardLedger.APPROVED, authorizer.authorize(request("0200", "000003", "000000001000")));
+    }
+
+    @Test
+    @DisplayName("Should provision the cards file and decline other cards without auto-provisioning")
+    void shouldProvisionCardsFile(@TempDir Path directory) throws Exception {
+        Path cards = directory.resolve("cards.csv");
+        Files.write(cards, List.of("# pan,balance,expiry", PAN + ",500,9912", "", "5500000000000004, 700, 9912"));
+        LedgerAuthorizer seeded = new LedgerAuthorizer(4, 16, false, 1_000, cards.toString(), 16, "", 1024, 300_000,
+                false, 0, 0, VelocityEngine.Overflow.ALLOW);
+
+        assertEquals(CardLedger.APPROVED, seeded.authorize(request("0200", "000001", "000000000500")));
+        assertEquals(CardLedger.INSUFFICIENT_FUNDS, seeded.authorize(request("0200", "000002", "000000000001")));
+
+        Iso8583Message unknown = request("0200", "000003", "000000000001");
+        unknown.addField(2, "4000000000000002");
+        assertEquals(CardLedger.INVALID_CARD, seeded.authorize(unknown));
+    }
+
+    @Test
+    @DisplayName("Should reject a malformed cards file")
+    void shouldRejectMalformedCardsFile(@TempDir Path directory) throws Exception {
+        Path cards = directory.resolve("cards.csv");
+        Files.write(cards, List.of(PAN + ",500"));
+
+        assertThrows(IllegalArgumentException.class, () -> new LedgerAuthorizer(4, 16, false, 1_000, cards.toString(), 16, "",
+                1024, 300_000, false, 0, 0, VelocityEngine.Overflow.ALLOW));
+    }
+}
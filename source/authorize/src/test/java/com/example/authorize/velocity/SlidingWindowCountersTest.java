@@ -0,0 +1,68 @@
+package com.example.authorize.velocity;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlidingWindowCountersTest {
+
+    // 12 buckets of one second
+    private static final long WINDOW = 12_000;
+
+    @Test
+    @DisplayName("Should count within the window and drop buckets that slide out of it")
+    void shouldSlideWindow() {
+        SlidingWindowCounters counters = new SlidingWindowCounters("test", WINDOW, 16);
+        long epoch = counters.epoch(100_000);
+        int slot = counters.claim(42, epoch);
+
+        counters.add(slot, epoch, 500);
+        counters.add(slot, epoch + 5, 250);
+
+        assertEquals(2, counters.count(slot, epoch + 5));
+        assertEquals(750, counters.amount(slot, epoch + 5));
+        assertEquals(2, counters.count(slot, epoch + 11));
+        assertEquals(1, counters.count(slot, epoch + 12), "The first bucket is now out of the window");
+        assertEquals(250, counters.amount(slot, epoch + 12));
+        assertEquals(0, counters.count(slot, epoch + 17));
+    }
+
+    @Test
+    @DisplayName("Should restart a bucket left over from an earlier lap of the ring")
+    void shouldRestartStaleBucket() {
+        SlidingWindowCounters counters = new SlidingWindowCounters("test", WINDOW, 16);
+        long epoch = counters.epoch(100_000);
+        int slot = counters.claim(42, epoch);
+        counters.add(slot, epoch, 500);
+
+        // Same cell of the ring, one lap later
+        long lap = epoch + SlidingWindowCounters.BUCKETS;
+        counters.add(slot, lap, 100);
+
+        assertEquals(1, counters.count(slot, lap));
+        assertEquals(100, counters.amount(slot, lap));
+    }
+
+    @Test
+    @DisplayName("Should overflow when every slot holds a live key and reuse expired slots")
+    void shouldReuseExpiredSlots() {
+        // Capacity 2 gives a table of 4 slots
+        SlidingWindowCounters counters = new SlidingWindowCounters("test", WINDOW, 2);
+        long epoch = counters.epoch(100_000);
+        for (long key = 1; key <= 4; key++) {
+            counters.add(counters.claim(key, epoch), epoch, 10);
+        }
+
+        assertEquals(-1, counters.claim(5, epoch));
+        assertEquals(1, counters.getOverflowCount());
+        assertEquals(-1, counters.find(5));
+
+        long later = epoch + SlidingWindowCounters.BUCKETS;
+        int reused = counters.claim(5, later);
+        assertTrue(reused >= 0, "Keys idle for a whole window should give up their slots");
+        assertEquals(reused, counters.find(5));
+        assertEquals(0, counters.count(reused, later), "A reused slot should not inherit the old key's counts");
+        assertEquals(1, counters.getOverflowCount());
+    }
+}
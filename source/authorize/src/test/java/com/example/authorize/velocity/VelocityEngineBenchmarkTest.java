@@ -0,0 +1,63 @@
+package com.example.authorize.velocity;
+
+import com.example.common.model.Iso8583Message;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.example.authorize.velocity.VelocityEngineTest.request;
+import static com.example.authorize.velocity.VelocityEngineTest.rule;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Check plus record over the default rule set (7 rules, 6 tables) for 50,000 cards, against the
+ * 50 µs per-authorization budget for velocity checks. Prints the measured cost; a typical run is
+ * around 1 µs, so the bound only catches gross regressions.
+ */
+class VelocityEngineBenchmarkTest {
+
+    private static final int CARDS = 50_000;
+    private static final int REQUESTS = 100_000;
+    private static final int ROUNDS = 5;
+    private static final long BUDGET_NANOS = 50_000;
+
+    @Test
+    @DisplayName("Should check and record an authorization well within 50 µs")
+    void shouldStayWithinLatencyBudget() {
+        VelocityEngine engine = new VelocityEngine(List.of(
+                rule("card-count-per-minute", "PAN", "MINUTE", "COUNT", 10, "65", null),
+                rule("card-count-per-hour", "PAN", "HOUR", "COUNT", 60, "65", null),
+                rule("card-amount-per-hour", "PAN", "HOUR", "AMOUNT", 1_000_000, "61", null),
+                rule("card-gambling-amount-per-hour", "PAN", "HOUR", "AMOUNT", 200_000, "61", List.of("7995")),
+                rule("merchant-count-per-minute", "MERCHANT", "MINUTE", "COUNT", 600_000, "05", null),
+                rule("merchant-amount-per-hour", "MERCHANT", "HOUR", "AMOUNT", 100_000_000_000L, "05", null),
+                rule("mcc-count-per-minute", "MCC", "MINUTE", "COUNT", 1_200_000, "05", null)),
+                Map.of(VelocityEngine.Key.PAN, CARDS, VelocityEngine.Key.MERCHANT, 16_384, VelocityEngine.Key.MCC, 10_000),
+                VelocityEngine.Overflow.ALLOW, System::currentTimeMillis);
+        Random random = new Random(1);
+        Iso8583Message[] requests = new Iso8583Message[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            requests[i] = request(String.valueOf(4_000_000_000_000_000L + random.nextInt(CARDS)),
+                    i % 20 == 0 ? "7995" : "5999", "MERCHANT" + random.nextInt(1_000));
+        }
+
+        long best = Long.MAX_VALUE;
+        // The first rounds warm up the JIT; the best round is the steady-state cost
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (Iso8583Message request : requests) {
+                if (engine.check(request, 5_000) == null) {
+                    engine.record(request, 5_000);
+                }
+            }
+            best = Math.min(best, (System.nanoTime() - start) / REQUESTS);
+        }
+        System.out.println("🚦 Velocity check + record: " + best + " ns per authorization");
+
+        assertEquals(0, engine.getOverflowCount());
+        assertTrue(best < BUDGET_NANOS, "Velocity check + record took " + best + " ns");
+    }
+}
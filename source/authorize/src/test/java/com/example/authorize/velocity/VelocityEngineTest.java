@@ -0,0 +1,136 @@
+package com.example.authorize.velocity;
+
+import com.example.common.model.Iso8583Message;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VelocityEngineTest {
+
+    private long now = 10_000_000;
+
+    static VelocityRule rule(String name, String key, String window, String measure, long limit, String responseCode,
+                             List<String> mccs) {
+        VelocityRule rule = new VelocityRule();
+        rule.setName(name);
+        rule.setKey(key);
+        rule.setWindow(window);
+        rule.setMeasure(measure);
+        rule.setLimit(limit);
+        rule.setResponseCode(responseCode);
+        rule.setMccs(mccs);
+        return rule;
+    }
+
+    static Iso8583Message request(String pan, String mcc, String merchant) {
+        Iso8583Message request = new Iso8583Message();
+        request.setMti("0200");
+        request.addField(2, pan);
+        request.addField(18, mcc);
+        request.addField(42, merchant);
+        return request;
+    }
+
+    private VelocityEngine engine(List<VelocityRule> rules, int cardCapacity, VelocityEngine.Overflow onOverflow) {
+        return new VelocityEngine(rules, Map.of(VelocityEngine.Key.PAN, cardCapacity, VelocityEngine.Key.MERCHANT, 64,
+                VelocityEngine.Key.MCC, 10_000), onOverflow, () -> now);
+    }
+
+    private static String authorize(VelocityEngine engine, Iso8583Message request, long amount) {
+        String declined = engine.check(request, amount);
+        if (declined == null) {
+            engine.record(request, amount);
+        }
+        return declined;
+    }
+
+    @Test
+    @DisplayName("Should share one table between rules with the same key, window and MCC filter")
+    void shouldCompileRulesIntoTracks() {
+        VelocityEngine engine = engine(List.of(
+                rule("card-count-per-minute", "PAN", "MINUTE", "COUNT", 10, "65", null),
+                rule("card-count-per-hour", "pan", "hour", "count", 60, "65", null),
+                rule("card-amount-per-hour", "PAN", "HOUR", "AMOUNT", 1_000_000, "61", null),
+                rule("card-gambling-amount-per-hour", "PAN", "HOUR", "AMOUNT", 200_000, "61", List.of("7995")),
+                rule("merchant-count-per-minute", "MERCHANT", "MINUTE", "COUNT", 600_000, "05", null),
+                rule("mcc-count-per-minute", "MCC", "MINUTE", "COUNT", 1_200_000, "05", null)),
+                1024, VelocityEngine.Overflow.ALLOW);
+
+        assertEquals(6, engine.getRuleCount());
+        assertEquals(5, engine.getTrackCount());
+    }
+
+    @Test
+    @DisplayName("Should reject rules with an unknown key, window or measure, a bad code or MCC")
+    void shouldRejectInvalidRules() {
+        assertThrows(IllegalArgumentException.class, () -> engine(List.of(rule("r", "TERMINAL", "MINUTE", "COUNT", 1, "65", null)),
+                1024, VelocityEngine.Overflow.ALLOW));
+        assertThrows(IllegalArgumentException.class, () -> engine(List.of(rule("r", "PAN", "DAY", "COUNT", 1, "65", null)),
+                1024, VelocityEngine.Overflow.ALLOW));
+        assertThrows(IllegalArgumentException.class, () -> engine(List.of(rule("r", "PAN", "MINUTE", "SUM", 1, "65", null)),
+                1024, VelocityEngine.Overflow.ALLOW));
+        assertThrows(IllegalArgumentException.class, () -> engine(List.of(rule("r", "PAN", "MINUTE", "COUNT", 1, "6", null)),
+                1024, VelocityEngine.Overflow.ALLOW));
+        assertThrows(IllegalArgumentException.class, () -> engine(List.of(rule("r", "PAN", "MINUTE", "COUNT", 1, "65", List.of("79"))),
+                1024, VelocityEngine.Overflow.ALLOW));
+    }
+
+    @Test
+    @DisplayName("Should decline with the first broken rule's code until the window slides")
+    void shouldLimitCountPerWindow() {
+        VelocityEngine engine = engine(List.of(
+                rule("card-count-per-minute", "PAN", "MINUTE", "COUNT", 3, "65", null),
+                rule("card-amount-per-hour", "PAN", "HOUR", "AMOUNT", 1_000, "61", null)),
+                1024, VelocityEngine.Overflow.ALLOW);
+        Iso8583Message request = request("4000000000000001", "5999", "MERCHANT1");
+
+        for (int i = 0; i < 3; i++) {
+            assertNull(authorize(engine, request, 10));
+        }
+        assertEquals("65", authorize(engine, request, 10));
+        assertEquals("61", authorize(engine, request("4000000000000002", "5999", "MERCHANT1"), 1_001));
+
+        now += 61_000;
+        assertNull(authorize(engine, request, 10));
+    }
+
+    @Test
+    @DisplayName("Should apply MCC-filtered rules only to the listed MCCs")
+    void shouldFilterByMcc() {
+        VelocityEngine engine = engine(List.of(
+                rule("card-gambling-amount-per-hour", "PAN", "HOUR", "AMOUNT", 100, "61", List.of("7995"))),
+                1024, VelocityEngine.Overflow.ALLOW);
+        String pan = "4000000000000001";
+
+        assertNull(authorize(engine, request(pan, "5999", "MERCHANT1"), 500));
+        assertEquals("61", authorize(engine, request(pan, "7995", "CASINO1"), 101));
+        assertNull(authorize(engine, request(pan, "7995", "CASINO1"), 90));
+        assertEquals("61", authorize(engine, request(pan, "7995", "CASINO1"), 11), "Only the gambling amount should count");
+        assertNull(authorize(engine, request(pan, null, "MERCHANT1"), 500));
+    }
+
+    @Test
+    @DisplayName("Should allow or decline cards a full table cannot track, as configured")
+    void shouldApplyOverflowPolicy() {
+        List<VelocityRule> rules = List.of(rule("card-count-per-minute", "PAN", "MINUTE", "COUNT", 1, "65", null));
+        // Capacity 2 gives a table of 4 slots
+        VelocityEngine allow = engine(rules, 2, VelocityEngine.Overflow.ALLOW);
+        VelocityEngine decline = engine(rules, 2, VelocityEngine.Overflow.DECLINE);
+        for (int i = 1; i <= 4; i++) {
+            assertNull(authorize(allow, request("400000000000000" + i, "5999", "MERCHANT1"), 10));
+            assertNull(authorize(decline, request("400000000000000" + i, "5999", "MERCHANT1"), 10));
+        }
+
+        Iso8583Message untracked = request("4000000000000009", "5999", "MERCHANT1");
+        assertNull(authorize(allow, untracked, 10));
+        assertNull(authorize(allow, untracked, 10), "Fail open: an untracked card is never limited");
+        assertEquals(2, allow.getOverflowCount());
+
+        assertEquals(VelocityEngine.OVERFLOW_DECLINED, authorize(decline, untracked, 10));
+        assertEquals(1, decline.getOverflowCount());
+    }
+}
@@ -3,17 +3,13 @@ package com.example.client.controller;
 import com.example.client.model.ApiResponse;
 import com.example.client.model.ConnectionInfo;
 import com.example.client.service.ConnectionService;
-import com.example.common.model.Iso8583Message;
-import com.example.common.parser.Iso8583Parser;
-import io.opentelemetry.api.trace.Tracer;
-import io.opentelemetry.api.trace.Span;
-import io.opentelemetry.api.trace.StatusCode;
-import io.opentelemetry.context.Scope;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/iso8583")
@@ -22,9 +18,6 @@ public class Iso8583Controller {
 
     @Autowired
     private ConnectionService connectionService;
-    
-    @Autowired
-    private Tracer tracer;
 
     @GetMapping("/connections")
     public List<ConnectionInfo> getConnections() {
@@ -84,34 +77,27 @@ public class Iso8583Controller {
     @PostMapping("/connections/{connectionId}/send")
     public ApiResponse sendMessage(@PathVariable String connectionId, @RequestBody Map<String, String> payload) {
         String message = payload.get("message");
-        String stan = "unknown";
-        
-        // Extract STAN for correlation
+        // Traced once per transaction by ConnectionService
         try {
-            Iso8583Message parsedMsg = Iso8583Parser.parseMessage(message);
-            stan = parsedMsg.getField(11) != null ? parsedMsg.getField(11) : "unknown";
-        } catch (Exception e) {
-            // Continue with unknown STAN if parsing fails
-        }
-        
-        Span span = tracer.spanBuilder("http.request.send_message")
-                .setAttribute("http.method", "POST")
-                .setAttribute("connection.id", connectionId)
-                .setAttribute("iso8583.stan", stan)
-                .setAttribute("iso8583.correlation_id", stan)
-                .startSpan();
-        
-        try (Scope scope = span.makeCurrent()) {
-            span.setAttribute("message.content", message != null ? message.substring(0, Math.min(message.length(), 100)) : "null");
-            
             String[] result = connectionService.sendMessage(connectionId, message);
-            span.setStatus(StatusCode.OK);
             return new ApiResponse(true, "Message sent successfully", result[0], result[1]);
         } catch (Exception e) {
-            span.setStatus(StatusCode.ERROR, e.getMessage());
             return new ApiResponse(false, e.getMessage());
-        } finally {
-            span.end();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Same as {@link #sendMessage} but releases the request thread while waiting for the
+     * response, so a caller can keep many requests outstanding on one connection.
+     */
+    @PostMapping("/connections/{connectionId}/send-async")
+    public CompletableFuture<ApiResponse> sendMessageAsync(@PathVariable String connectionId, @RequestBody Map<String, String> payload) {
+        String message = payload.get("message");
+        return connectionService.sendMessageAsync(connectionId, message)
+                .thenApply(result -> new ApiResponse(true, "Message sent successfully", result[0], result[1]))
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    return new ApiResponse(false, cause.getMessage());
+                });
+    }
+}
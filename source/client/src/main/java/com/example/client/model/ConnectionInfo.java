@@ -1,10 +1,13 @@
 package com.example.client.model;
 
+import com.example.common.codec.WireFormat;
+
 public class ConnectionInfo {
     private String connectionId;
     private String host;
     private int port;
     private boolean connected;
+    private WireFormat wireFormat = WireFormat.TEXT;
 
     public ConnectionInfo() {}
 
@@ -26,4 +29,7 @@ public class ConnectionInfo {
 
     public boolean isConnected() { return connected; }
     public void setConnected(boolean connected) { this.connected = connected; }
+
+    public WireFormat getWireFormat() { return wireFormat; }
+    public void setWireFormat(WireFormat wireFormat) { this.wireFormat = wireFormat != null ? wireFormat : WireFormat.TEXT; }
 }
\ No newline at end of file
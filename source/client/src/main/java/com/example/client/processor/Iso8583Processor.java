@@ -83,13 +83,10 @@ public class Iso8583Processor {
         System.out.println("📋 Message Type: " + message.getMti() + " (" + getMessageTypeDescription(message.getMti()) + ")");
         System.out.println("───────────────────────────────────────");
         
-        Map<Integer, String> fields = message.getFields();
-        if (fields != null && !fields.isEmpty()) {
-            fields.forEach((fieldNum, value) -> {
-                String fieldName = getFieldName(fieldNum);
-                System.out.printf("   Field %3d: %-30s = %s%n", fieldNum, fieldName, value);
-            });
-        }
+        message.forEachField((fieldNum, value) -> {
+            String fieldName = getFieldName(fieldNum);
+            System.out.printf("   Field %3d: %-30s = %s%n", fieldNum, fieldName, value);
+        });
         
         System.out.println("═══════════════════════════════════════\n");
     }
@@ -111,16 +108,12 @@ public class Iso8583Processor {
         
         // Parsed fields with descriptive names
         Map<String, Object> parsedFields = new HashMap<>();
-        Map<Integer, String> fields = message.getFields();
-        
-        if (fields != null) {
-            fields.forEach((fieldNum, value) -> {
-                Map<String, Object> fieldData = new HashMap<>();
-                fieldData.put("value", value);
-                fieldData.put("description", getFieldName(fieldNum));
-                parsedFields.put(String.valueOf(fieldNum), fieldData);
-            });
-        }
+        message.forEachField((fieldNum, value) -> {
+            Map<String, Object> fieldData = new HashMap<>();
+            fieldData.put("value", value);
+            fieldData.put("description", getFieldName(fieldNum));
+            parsedFields.put(String.valueOf(fieldNum), fieldData);
+        });
         
         enrichedMessage.put("fields", parsedFields);
         
@@ -136,21 +129,18 @@ public class Iso8583Processor {
      */
     private static Map<String, String> extractBusinessData(Iso8583Message message) {
         Map<String, String> businessData = new HashMap<>();
-        Map<Integer, String> fields = message.getFields();
-        
-        if (fields == null) return businessData;
         
         // Common business fields
-        if (fields.containsKey(2)) businessData.put("pan", maskPan(fields.get(2)));
-        if (fields.containsKey(3)) businessData.put("processingCode", fields.get(3));
-        if (fields.containsKey(4)) businessData.put("transactionAmount", fields.get(4));
-        if (fields.containsKey(11)) businessData.put("stan", fields.get(11));
-        if (fields.containsKey(37)) businessData.put("retrievalReferenceNumber", fields.get(37));
-        if (fields.containsKey(38)) businessData.put("approvalCode", fields.get(38));
-        if (fields.containsKey(39)) businessData.put("responseCode", fields.get(39));
-        if (fields.containsKey(41)) businessData.put("terminalId", fields.get(41));
-        if (fields.containsKey(42)) businessData.put("merchantId", fields.get(42));
-        if (fields.containsKey(49)) businessData.put("currencyCode", fields.get(49));
+        if (message.hasField(2)) businessData.put("pan", maskPan(message.getField(2)));
+        if (message.hasField(3)) businessData.put("processingCode", message.getField(3));
+        if (message.hasField(4)) businessData.put("transactionAmount", message.getField(4));
+        if (message.hasField(11)) businessData.put("stan", message.getField(11));
+        if (message.hasField(37)) businessData.put("retrievalReferenceNumber", message.getField(37));
+        if (message.hasField(38)) businessData.put("approvalCode", message.getField(38));
+        if (message.hasField(39)) businessData.put("responseCode", message.getField(39));
+        if (message.hasField(41)) businessData.put("terminalId", message.getField(41));
+        if (message.hasField(42)) businessData.put("merchantId", message.getField(42));
+        if (message.hasField(49)) businessData.put("currencyCode", message.getField(49));
         
         return businessData;
     }
@@ -218,9 +208,8 @@ public class Iso8583Processor {
      * Extract message key for Kafka partitioning (use STAN if available)
      */
     private static String extractMessageKey(Iso8583Message message) {
-        Map<Integer, String> fields = message.getFields();
-        if (fields != null && fields.containsKey(11)) {
-            return fields.get(11); // STAN
+        if (message.hasField(11)) {
+            return message.getField(11); // STAN
         }
         return message.getMti() + "-" + System.currentTimeMillis();
     }
@@ -1,18 +1,29 @@
 package com.example.client.service;
 
 import com.example.client.model.ConnectionInfo;
+import com.example.common.codec.FrameCorruptionHandler;
+import com.example.common.codec.Iso8583Frames;
+import com.example.common.codec.Iso8583MessageDecoder;
+import com.example.common.codec.Iso8583MessageEncoder;
+import com.example.common.codec.WireFormat;
 import com.example.common.model.Iso8583Message;
 import com.example.common.model.ValidationResult;
+import com.example.common.netty.FlushStats;
+import com.example.common.netty.NettyTransport;
 import com.example.common.parser.Iso8583Parser;
+import com.example.common.routing.RoutingTable;
+import com.example.common.tracing.TransactionTrace;
+import com.example.common.tracing.TransactionTracer;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.*;
 import io.netty.util.AttributeKey;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.DecoderException;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.util.HashedWheelTimer;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.StatusCode;
@@ -26,13 +37,15 @@ import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.nio.channels.ClosedChannelException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -41,11 +54,50 @@ public class ConnectionService {
 
     private final Map<String, ConnectionInfo> connections = new ConcurrentHashMap<>();
     private final Map<String, Channel> activeChannels = new ConcurrentHashMap<>();
-    private final Map<String, EventLoopGroup> eventLoopGroups = new ConcurrentHashMap<>();
     private final AtomicInteger stanCounter = new AtomicInteger(1);
+
+    // Routes by connection id, so a server keeps its routes across a reconnect
+    private final RoutingTable<String> routes = new RoutingTable<>(connectionId -> {
+        Channel channel = activeChannels.get(connectionId);
+        return channel != null && channel.isActive();
+    });
+
+    private static final AttributeKey<InFlightRequests> IN_FLIGHT = AttributeKey.valueOf("inFlightRequests");
+
+    // One wheel for every connection; 100 ms ticks are plenty for multi-second response timeouts
+    private final HashedWheelTimer responseTimer = new HashedWheelTimer(100, TimeUnit.MILLISECONDS);
+
+    @Value("${iso8583.client.response-timeout-ms:10000}")
+    private long responseTimeoutMillis;
+
+    @Value("${iso8583.client.max-in-flight:512}")
+    private int maxInFlight;
+
+    @Value("${iso8583.client.io-threads:0}")
+    private int ioThreads;
+
+    @Value("${iso8583.netty.native-transport:true}")
+    private boolean nativeTransport;
+
+    // Sends from many threads to one connection share a flush instead of one syscall each
+    @Value("${iso8583.netty.flush-consolidation:true}")
+    private boolean flushConsolidation;
+
+    @Value("${iso8583.netty.max-writes-per-flush:256}")
+    private int maxWritesPerFlush;
+
+    private final FlushStats flushStats = new FlushStats();
+
+    // All outbound connections share one event loop group instead of a group per connection
+    private NettyTransport transport;
+    private EventLoopGroup ioGroup;
     
     @Autowired
     private Tracer tracer;
+
+    // Per-message spans; the tracer above is only for connection lifecycle spans
+    @Autowired
+    private TransactionTracer transactionTracer;
     
     @Autowired
     private Meter meter;
@@ -61,6 +113,28 @@ public class ConnectionService {
         messageCounter = meter.counterBuilder("iso8583_messages_total")
                 .setDescription("Total number of ISO 8583 messages sent")
                 .build();
+        meter.counterBuilder("iso8583_socket_flushes_total")
+                .setDescription("Flushes that reached server sockets")
+                .buildWithCallback(m -> m.record(flushStats.getFlushCount()));
+        meter.counterBuilder("iso8583_socket_bytes_total")
+                .setDescription("Bytes written to server sockets")
+                .setUnit("By")
+                .buildWithCallback(m -> m.record(flushStats.getByteCount()));
+        meter.gaugeBuilder("iso8583_socket_bytes_per_flush")
+                .setDescription("Average bytes per socket flush since startup")
+                .setUnit("By")
+                .buildWithCallback(m -> m.record(flushStats.getBytesPerFlush()));
+
+        transport = NettyTransport.select(nativeTransport);
+        int threads = ioThreads > 0 ? ioThreads : Runtime.getRuntime().availableProcessors();
+        ioGroup = transport.newEventLoopGroup(threads, "iso8583-client-io");
+        System.out.println("🔧 Client I/O: " + threads + " " + transport + " event loop(s) shared by all connections");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        responseTimer.stop();
+        ioGroup.shutdownGracefully();
     }
 
     public List<ConnectionInfo> getAllConnections() {
@@ -89,21 +163,27 @@ public class ConnectionService {
             }
             
             span.setAttribute("connection.host", conn.getHost())
-                .setAttribute("connection.port", conn.getPort());
-
-            EventLoopGroup group = new NioEventLoopGroup();
-            eventLoopGroups.put(connectionId, group);
+                .setAttribute("connection.port", conn.getPort())
+                .setAttribute("connection.wire_format", conn.getWireFormat().name());
 
             Bootstrap bootstrap = new Bootstrap();
-            bootstrap.group(group)
-                    .channel(NioSocketChannel.class)
+            bootstrap.group(ioGroup)
+                    .channel(transport.socketChannelClass())
                     .option(ChannelOption.SO_KEEPALIVE, true)
                     .handler(new ChannelInitializer<SocketChannel>() {
                         @Override
                         protected void initChannel(SocketChannel ch) {
+                            ch.attr(IN_FLIGHT).set(new InFlightRequests(responseTimer, responseTimeoutMillis, maxInFlight));
                             ChannelPipeline pipeline = ch.pipeline();
+                            pipeline.addLast(flushStats);
+                            if (flushConsolidation) {
+                                pipeline.addLast(new FlushConsolidationHandler(maxWritesPerFlush, true));
+                            }
                             pipeline.addLast(new LengthFieldBasedFrameDecoder(65535, 0, 2, 0, 2));
-                            pipeline.addLast(new LengthFieldPrepender(2));
+                            pipeline.addLast(FrameCorruptionHandler.INSTANCE);
+                            pipeline.addLast(new Iso8583MessageDecoder(conn.getWireFormat().codec()));
+                            pipeline.addLast(Iso8583Frames.FRAMER, new LengthFieldPrepender(Iso8583Frames.LENGTH_FIELD_LENGTH));
+                            pipeline.addLast(new Iso8583MessageEncoder(conn.getWireFormat().codec()));
                             pipeline.addLast(new ClientHandler(connectionId));
                         }
                     });
@@ -138,11 +218,6 @@ public class ConnectionService {
             channel.close().sync();
         }
 
-        EventLoopGroup group = eventLoopGroups.remove(connectionId);
-        if (group != null) {
-            group.shutdownGracefully();
-        }
-
         conn.setConnected(false);
     }
 
@@ -150,42 +225,37 @@ public class ConnectionService {
         if (connections.containsKey(connectionId)) {
             disconnect(connectionId);
             connections.remove(connectionId);
+            routes.remove(connectionId);
         }
     }
 
     public String[] sendEcho(String connectionId) throws Exception {
-        Span span = tracer.spanBuilder("iso8583.message.echo")
-                .setAttribute("connection.id", connectionId)
-                .setAttribute("message.type", "0800")
-                .startSpan();
+        Iso8583Message echoMsg = new Iso8583Message();
+        echoMsg.setMti("0800");
+        echoMsg.addField(7, LocalDateTime.now().format(DateTimeFormatter.ofPattern("MMddHHmmss")));
+        echoMsg.addField(11, String.format("%06d", stanCounter.getAndIncrement()));
+        echoMsg.addField(70, "001");
+
+        TransactionTrace trace = transactionTracer.start("iso8583.message.echo", echoMsg)
+                .attribute("connection.id", connectionId);
         
-        try (Scope scope = span.makeCurrent()) {
+        try (Scope scope = trace.makeCurrent()) {
             Channel channel = getActiveChannel(connectionId);
             
-            Iso8583Message echoMsg = new Iso8583Message();
-            echoMsg.setMti("0800");
-            echoMsg.addField(7, LocalDateTime.now().format(DateTimeFormatter.ofPattern("MMddHHmmss")));
-            String stan = String.format("%06d", stanCounter.getAndIncrement());
-            echoMsg.addField(11, stan);
-            echoMsg.addField(70, "001");
-            
-            span.setAttribute("message.stan", stan);
-            
             String request = echoMsg.toString();
-            String response = sendAndWaitForResponse(channel, request);
+            String response = sendAndWaitForResponse(channel, echoMsg);
             
             messageCounter.add(1, io.opentelemetry.api.common.Attributes.of(
                 io.opentelemetry.api.common.AttributeKey.stringKey("connection.id"), connectionId,
                 io.opentelemetry.api.common.AttributeKey.stringKey("message.type"), "echo"
             ));
             
-            span.setStatus(StatusCode.OK);
             return new String[]{request, response};
         } catch (Exception e) {
-            span.setStatus(StatusCode.ERROR, e.getMessage());
+            trace.fail(e);
             throw e;
         } finally {
-            span.end();
+            trace.end();
         }
     }
 
@@ -199,34 +269,33 @@ public class ConnectionService {
     private String requestTopic;
 
     public String[] sendMessage(String connectionId, String message) throws Exception {
+        return await(sendMessageAsync(connectionId, message));
+    }
+
+    /**
+     * Non-blocking {@link #sendMessage}: the future completes with {request, response} when the
+     * matching response arrives, so many requests can be outstanding on one connection.
+     */
+    public CompletableFuture<String[]> sendMessageAsync(String connectionId, String message) {
         // Parse message to get STAN for correlation
         Iso8583Message parsedMsg = Iso8583Parser.parseMessage(message);
-        String stan = parsedMsg.getField(11) != null ? parsedMsg.getField(11) : "unknown";
         
-        Span span = tracer.spanBuilder("iso8583.message.send")
-                .setAttribute("connection.id", connectionId)
-                .setAttribute("iso8583.stan", stan)
-                .setAttribute("iso8583.correlation_id", stan)
-                .startSpan();
+        TransactionTrace trace = transactionTracer.start("iso8583.message.send", parsedMsg)
+                .attribute("connection.id", connectionId);
         
-        try (Scope scope = span.makeCurrent()) {
+        CompletableFuture<String[]> result;
+        try (Scope scope = trace.makeCurrent()) {
             // Validate message
             ValidationResult validation = Iso8583Parser.validateMessage(parsedMsg);
             
-            span.setAttribute("message.mti", parsedMsg.getMti())
-                .setAttribute("message.stan", stan);
-            
             if (!validation.isValid()) {
-                span.setStatus(StatusCode.ERROR, "Invalid message");
                 throw new RuntimeException("Invalid message: " + String.join(", ", validation.getErrors()));
             }
             
             if (authorizationEnabled && kafkaTemplate != null) {
-                // Send to Kafka for authorization with field 37 as partition key for load balancing
-                String partitionKey = parsedMsg.getField(37);
-                if (partitionKey == null) partitionKey = connectionId;
-                span.setAttribute("kafka.partition.key", partitionKey)
-                    .setAttribute("kafka.topic", requestTopic);
+                // Send to Kafka for authorization keyed by card, so one card's requests stay in order
+                String partitionKey = partitionKey(parsedMsg, connectionId);
+                trace.attribute("kafka.topic", requestTopic);
                 System.out.println("📤 Sending to Kafka for authorization with key: " + partitionKey);
                 kafkaTemplate.send(requestTopic, partitionKey, message);
                 
@@ -235,30 +304,25 @@ public class ConnectionService {
                     io.opentelemetry.api.common.AttributeKey.stringKey("message.type"), "kafka"
                 ));
                 
-                span.setStatus(StatusCode.OK);
-                return new String[]{message, "Sent to authorization service"};
+                result = CompletableFuture.completedFuture(new String[]{message, "Sent to authorization service"});
             } else {
                 // Direct send to server
                 Channel channel = getActiveChannel(connectionId);
-                String response = sendAndWaitForResponse(channel, message);
-                
-                messageCounter.add(1, io.opentelemetry.api.common.Attributes.of(
-                    io.opentelemetry.api.common.AttributeKey.stringKey("connection.id"), connectionId,
-                    io.opentelemetry.api.common.AttributeKey.stringKey("message.type"), "direct"
-                ));
-                
-                span.setStatus(StatusCode.OK);
-                return new String[]{message, response};
+                result = sendAsync(channel, parsedMsg).thenApply(response -> {
+                    messageCounter.add(1, io.opentelemetry.api.common.Attributes.of(
+                        io.opentelemetry.api.common.AttributeKey.stringKey("connection.id"), connectionId,
+                        io.opentelemetry.api.common.AttributeKey.stringKey("message.type"), "direct"
+                    ));
+                    return new String[]{message, response};
+                });
             }
         } catch (Exception e) {
-            span.setStatus(StatusCode.ERROR, e.getMessage());
-            throw e;
-        } finally {
-            span.end();
+            result = CompletableFuture.failedFuture(e);
         }
+        return result.whenComplete((r, e) -> trace.end(e));
     }
 
-    private Channel getActiveChannel(String connectionId) throws Exception {
+    private Channel getActiveChannel(String connectionId) {
         Channel channel = activeChannels.get(connectionId);
         if (channel == null || !channel.isActive()) {
             throw new RuntimeException("Connection not active: " + connectionId);
@@ -266,48 +330,97 @@ public class ConnectionService {
         return channel;
     }
 
+    /**
+     * Sends a message back to the server that serves its terminal, acquirer or BIN. Only
+     * messages without a known route go to every connected server. The message is encoded
+     * once per wire format and the same frame is written to every connection using it.
+     */
     public void broadcastToConnectedServers(String message) {
-        activeChannels.forEach((connectionId, channel) -> {
-            if (channel != null && channel.isActive()) {
-                try {
-                    ByteBuf buf = channel.alloc().buffer();
-                    buf.writeBytes(message.getBytes(StandardCharsets.UTF_8));
-                    channel.writeAndFlush(buf);
-                    System.out.println("📤 Sent to " + connectionId + ": " + message);
-                } catch (Exception e) {
-                    System.err.println("❌ Failed to send to " + connectionId + ": " + e.getMessage());
-                }
+        Iso8583Message parsedMsg = Iso8583Parser.parseMessage(message);
+        String route = routes.route(parsedMsg);
+        Map<WireFormat, ByteBuf> frames = new EnumMap<>(WireFormat.class);
+        try {
+            if (route != null) {
+                send(route, activeChannels.get(route), parsedMsg, message, frames);
+                return;
             }
-        });
+            activeChannels.forEach((connectionId, channel) -> {
+                if (channel != null && channel.isActive()) {
+                    send(connectionId, channel, parsedMsg, message, frames);
+                }
+            });
+        } finally {
+            frames.values().forEach(ByteBuf::release);
+        }
     }
 
-    private String sendAndWaitForResponse(Channel channel, String message) throws Exception {
-        Span span = tracer.spanBuilder("iso8583.client.socket_send")
-                .setAttribute("channel.id", channel.id().asShortText())
-                .startSpan();
-        
-        try (Scope scope = span.makeCurrent()) {
-            CompletableFuture<String> responseFuture = new CompletableFuture<>();
-            
-            // Store the future in channel attributes for the handler to complete
-            channel.attr(AttributeKey.valueOf("responseFuture")).set(responseFuture);
-            
-            ByteBuf buf = channel.alloc().buffer();
-            buf.writeBytes(message.getBytes(StandardCharsets.UTF_8));
-            channel.writeAndFlush(buf);
-            
-            String response = responseFuture.get(10, TimeUnit.SECONDS);
-            span.setStatus(StatusCode.OK);
-            return response;
+    private void send(String connectionId, Channel channel, Iso8583Message parsedMsg, String message,
+                      Map<WireFormat, ByteBuf> frames) {
+        ConnectionInfo conn = connections.get(connectionId);
+        if (channel == null || conn == null) {
+            return;
+        }
+        try {
+            ByteBuf frame = frames.computeIfAbsent(conn.getWireFormat(),
+                    format -> Iso8583Frames.encode(channel.alloc(), format.codec(), parsedMsg));
+            Iso8583Frames.writeFramed(channel, frame.retainedDuplicate());
+            System.out.println("📤 Sent to " + connectionId + ": " + message);
         } catch (Exception e) {
-            span.setStatus(StatusCode.ERROR, e.getMessage());
+            System.err.println("❌ Failed to send to " + connectionId + ": " + e.getMessage());
+        }
+    }
+
+    public RoutingTable<String> getRoutes() {
+        return routes;
+    }
+
+    private String sendAndWaitForResponse(Channel channel, Iso8583Message message) throws Exception {
+        return await(sendAsync(channel, message));
+    }
+
+    private CompletableFuture<String> sendAsync(Channel channel, Iso8583Message message) {
+        CompletableFuture<String> responseFuture;
+        try {
+            // Register before writing so a fast response always finds its entry
+            InFlightRequests inFlight = channel.attr(IN_FLIGHT).get();
+            responseFuture = inFlight.register(message);
+            channel.writeAndFlush(message).addListener(f -> {
+                if (!f.isSuccess()) {
+                    inFlight.fail(message, f.cause());
+                }
+            });
+        } catch (Exception e) {
+            responseFuture = CompletableFuture.failedFuture(e);
+        }
+        return responseFuture;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            // The in-flight table fails the future on timeout, so no deadline is needed here
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
             throw e;
-        } finally {
-            span.end();
         }
     }
 
-    private class ClientHandler extends SimpleChannelInboundHandler<ByteBuf> {
+    /**
+     * PAN (field 2), so every request for a card lands on the same partition and the authorize
+     * service sees them in order; RRN, then the connection, for messages without one.
+     */
+    private static String partitionKey(Iso8583Message message, String connectionId) {
+        String key = message.getField(2);
+        if (key == null) {
+            key = message.getField(37);
+        }
+        return key != null ? key : connectionId;
+    }
+
+    private class ClientHandler extends SimpleChannelInboundHandler<Iso8583Message> {
         private final String connectionId;
 
         public ClientHandler(String connectionId) {
@@ -315,58 +428,42 @@ public class ConnectionService {
         }
 
         @Override
-        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
-            String message = msg.toString(StandardCharsets.UTF_8);
-            
-            // Create span for received message
-            Span span = tracer.spanBuilder("iso8583.client.socket_receive")
-                    .setAttribute("channel.id", ctx.channel().id().asShortText())
-                    .startSpan();
-            
-            try (Scope scope = span.makeCurrent()) {
-                // Extract STAN for correlation
-                try {
-                    Iso8583Message parsedMsg = Iso8583Parser.parseMessage(message);
-                    String stan = parsedMsg.getField(11);
-                    if (stan != null) {
-                        span.setAttribute("iso8583.stan", stan)
-                            .setAttribute("iso8583.correlation_id", stan);
-                    }
-                    span.setAttribute("message.mti", parsedMsg.getMti());
-                } catch (Exception e) {
-                    // Continue if parsing fails
-                }
-                
-                System.out.println("📨 Received from server: " + message);
-            
-            // Check if this is a response to a pending request
-            CompletableFuture<String> future = ctx.channel().attr(AttributeKey.<CompletableFuture<String>>valueOf("responseFuture")).get();
-            if (future != null) {
-                // This is a response to our request
-                future.complete(message);
-                ctx.channel().attr(AttributeKey.valueOf("responseFuture")).set(null);
-            } else if (authorizationEnabled && kafkaTemplate != null) {
-                // This is an unsolicited message from server - send to Kafka for authorization
-                Iso8583Message parsedMsg = Iso8583Parser.parseMessage(message);
-                String partitionKey = parsedMsg.getField(37);
-                if (partitionKey == null) partitionKey = connectionId;
-                System.out.println("📤 Sending unsolicited message to Kafka with key: " + partitionKey);
-                kafkaTemplate.send(requestTopic, partitionKey, message);
+        protected void channelRead0(ChannelHandlerContext ctx, Iso8583Message parsedMsg) {
+            String message = parsedMsg.toString();
+            System.out.println("📨 Received from server: " + message);
+            routes.learn(parsedMsg, connectionId);
+
+            // A response belongs to the transaction traced when its request was sent
+            InFlightRequests inFlight = ctx.channel().attr(IN_FLIGHT).get();
+            if (inFlight != null && inFlight.complete(parsedMsg)) {
+                return;
+            }
+
+            TransactionTrace trace = transactionTracer.start("iso8583.client.receive_unsolicited", parsedMsg)
+                    .attribute("connection.id", connectionId);
+            try (Scope scope = trace.makeCurrent()) {
+                if (authorizationEnabled && kafkaTemplate != null) {
+                    // This is an unsolicited message from server - send to Kafka for authorization
+                    String partitionKey = partitionKey(parsedMsg, connectionId);
+                    System.out.println("📤 Sending unsolicited message to Kafka with key: " + partitionKey);
+                    kafkaTemplate.send(requestTopic, partitionKey, message);
                 } else {
                     // No authorization - just log the message
                     System.out.println("📝 Unsolicited message (no authorization): " + message);
                 }
-                
-                span.setStatus(StatusCode.OK);
             } catch (Exception e) {
-                span.setStatus(StatusCode.ERROR, e.getMessage());
+                trace.fail(e);
             } finally {
-                span.end();
+                trace.end();
             }
         }
 
         @Override
         public void channelInactive(ChannelHandlerContext ctx) {
+            InFlightRequests inFlight = ctx.channel().attr(IN_FLIGHT).get();
+            if (inFlight != null) {
+                inFlight.failAll(new ClosedChannelException());
+            }
             ConnectionInfo conn = connections.get(connectionId);
             if (conn != null) {
                 conn.setConnected(false);
@@ -376,6 +473,11 @@ public class ConnectionService {
 
         @Override
         public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            // FrameCorruptionHandler has already closed the channel if the framing was lost
+            if (cause instanceof DecoderException && ctx.channel().isActive()) {
+                System.err.println("⚠️ [" + connectionId + "] Dropped undecodable frame: " + cause.getMessage());
+                return;
+            }
             ConnectionInfo conn = connections.get(connectionId);
             if (conn != null) {
                 conn.setConnected(false);
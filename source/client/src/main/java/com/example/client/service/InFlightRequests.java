@@ -0,0 +1,136 @@
+package com.example.client.service;
+
+import com.example.common.model.Iso8583Message;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Outstanding requests on one connection, so many requests can share a socket.
+ * <p>
+ * A request is keyed by its RRN (field 37), or by its STAN (field 11) when it has no RRN.
+ * A response completes the request with the same RRN, falling back to the STAN. Requests
+ * that get no response are failed by the shared timer wheel.
+ */
+class InFlightRequests {
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final Timer timer;
+    private final long timeoutMillis;
+    private final int maxInFlight;
+
+    InFlightRequests(Timer timer, long timeoutMillis, int maxInFlight) {
+        this.timer = timer;
+        this.timeoutMillis = timeoutMillis;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Registers a request before it is written.
+     *
+     * @throws RuntimeException if the request has no STAN/RRN, the same key is already in
+     *                          flight, or the connection is at its in-flight limit
+     */
+    CompletableFuture<String> register(Iso8583Message request) {
+        String key = requestKey(request);
+        if (key == null) {
+            throw new RuntimeException("Request needs field 11 or 37 for response correlation");
+        }
+        if (pending.size() >= maxInFlight) {
+            throw new RuntimeException("Too many requests in flight (" + maxInFlight + ")");
+        }
+
+        Pending entry = new Pending();
+        if (pending.putIfAbsent(key, entry) != null) {
+            throw new RuntimeException("Request already in flight: " + key);
+        }
+        entry.timeout = timer.newTimeout(t -> {
+            if (pending.remove(key, entry)) {
+                entry.future.completeExceptionally(
+                        new TimeoutException("No response for " + key + " within " + timeoutMillis + " ms"));
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        return entry.future;
+    }
+
+    /**
+     * Completes the request this response belongs to.
+     *
+     * @return false if no request was waiting for it (an unsolicited message)
+     */
+    boolean complete(Iso8583Message response) {
+        Pending entry = null;
+        String rrn = response.getField(37);
+        if (rrn != null) {
+            entry = pending.remove(rrnKey(rrn));
+        }
+        if (entry == null) {
+            String stan = response.getField(11);
+            if (stan != null) {
+                entry = pending.remove(stanKey(stan));
+            }
+        }
+        if (entry == null) {
+            return false;
+        }
+        entry.timeout.cancel();
+        entry.future.complete(response.toString());
+        return true;
+    }
+
+    /**
+     * Fails a request whose write did not go out.
+     */
+    void fail(Iso8583Message request, Throwable cause) {
+        String key = requestKey(request);
+        Pending entry = key != null ? pending.remove(key) : null;
+        if (entry != null) {
+            entry.timeout.cancel();
+            entry.future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * Fails everything still waiting, used when the connection closes.
+     */
+    void failAll(Throwable cause) {
+        pending.keySet().forEach(key -> {
+            Pending entry = pending.remove(key);
+            if (entry != null) {
+                entry.timeout.cancel();
+                entry.future.completeExceptionally(cause);
+            }
+        });
+    }
+
+    int size() {
+        return pending.size();
+    }
+
+    private static String requestKey(Iso8583Message message) {
+        String rrn = message.getField(37);
+        if (rrn != null) {
+            return rrnKey(rrn);
+        }
+        String stan = message.getField(11);
+        return stan != null ? stanKey(stan) : null;
+    }
+
+    private static String rrnKey(String rrn) {
+        return "RRN:" + rrn;
+    }
+
+    private static String stanKey(String stan) {
+        return "STAN:" + stan;
+    }
+
+    private static final class Pending {
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        volatile Timeout timeout;
+    }
+}
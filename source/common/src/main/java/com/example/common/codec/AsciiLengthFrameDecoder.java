@@ -0,0 +1,36 @@
+package com.example.common.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+
+import java.nio.ByteOrder;
+
+/**
+ * Splits frames that start with a fixed number of ASCII decimal digits giving the body length,
+ * and strips that header.
+ */
+public class AsciiLengthFrameDecoder extends LengthFieldBasedFrameDecoder {
+
+    private final int digits;
+
+    public AsciiLengthFrameDecoder(int digits) {
+        super(AsciiLengthPrepender.maxLength(digits), 0, digits, 0, digits);
+        this.digits = digits;
+    }
+
+    @Override
+    protected long getUnadjustedFrameLength(ByteBuf buf, int offset, int length, ByteOrder order) {
+        long value = 0;
+        for (int i = 0; i < digits; i++) {
+            byte b = buf.getByte(offset + i);
+            if (b < '0' || b > '9') {
+                // No way to find the next frame boundary; drop what was received so far
+                buf.skipBytes(buf.readableBytes());
+                throw new CorruptedFrameException("Length header is not " + digits + " decimal digits");
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+}
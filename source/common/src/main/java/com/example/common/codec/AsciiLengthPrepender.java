@@ -0,0 +1,52 @@
+package com.example.common.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+import java.util.List;
+
+/**
+ * Prepends the body length as a fixed number of ASCII decimal digits. The body is passed on
+ * as is, behind a separate header buffer.
+ */
+@Sharable
+public class AsciiLengthPrepender extends MessageToMessageEncoder<ByteBuf> {
+
+    private final int digits;
+    private final int maxLength;
+
+    public AsciiLengthPrepender(int digits) {
+        this.digits = digits;
+        this.maxLength = maxLength(digits);
+    }
+
+    static int maxLength(int digits) {
+        if (digits < 1 || digits > 9) {
+            throw new IllegalArgumentException("Length header must be 1-9 digits: " + digits);
+        }
+        int max = 1;
+        for (int i = 0; i < digits; i++) {
+            max *= 10;
+        }
+        return max - 1;
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf body, List<Object> out) {
+        int length = body.readableBytes();
+        if (length > maxLength) {
+            throw new EncoderException("Frame too long for " + digits + "-digit header: " + length + " bytes");
+        }
+        ByteBuf header = ctx.alloc().buffer(digits);
+        for (int i = digits - 1; i >= 0; i--) {
+            header.setByte(i, '0' + length % 10);
+            length /= 10;
+        }
+        header.writerIndex(digits);
+        out.add(header);
+        out.add(body.retain());
+    }
+}
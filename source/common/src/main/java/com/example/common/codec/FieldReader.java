@@ -0,0 +1,13 @@
+package com.example.common.codec;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Materializes values recorded by a codec's index pass, used by {@link LazyIso8583Message}.
+ */
+interface FieldReader {
+
+    String readMti(ByteBuf frame, int offset, int length);
+
+    String readField(ByteBuf frame, int fieldNumber, int offset, int length);
+}
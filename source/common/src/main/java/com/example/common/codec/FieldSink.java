@@ -0,0 +1,10 @@
+package com.example.common.codec;
+
+/**
+ * Receives field boundaries while a codec walks a frame; field 0 is the MTI.
+ */
+@FunctionalInterface
+interface FieldSink {
+
+    void accept(int fieldNumber, int offset, int length);
+}
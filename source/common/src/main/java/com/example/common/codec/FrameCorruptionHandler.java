@@ -0,0 +1,28 @@
+package com.example.common.codec;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+
+/**
+ * Closes the channel when the frame decoder in front of it loses the frame boundaries: after a
+ * bad length header the rest of the stream cannot be split reliably, so keeping the connection
+ * would only misparse later frames. Sits directly behind the frame decoder, so errors raised
+ * while decoding a body that was framed correctly never reach it. The exception is passed on
+ * for the handlers behind to log.
+ */
+@ChannelHandler.Sharable
+public class FrameCorruptionHandler extends ChannelInboundHandlerAdapter {
+
+    public static final FrameCorruptionHandler INSTANCE = new FrameCorruptionHandler();
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        if (cause instanceof CorruptedFrameException || cause instanceof TooLongFrameException) {
+            ctx.close();
+        }
+        ctx.fireExceptionCaught(cause);
+    }
+}
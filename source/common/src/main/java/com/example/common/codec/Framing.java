@@ -0,0 +1,50 @@
+package com.example.common.codec;
+
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+
+/**
+ * How message bodies are delimited on a socket. Independent of the {@link WireFormat} of the
+ * body itself, so any framing can carry any wire format.
+ */
+public enum Framing {
+    /** 2-byte binary big-endian length header. */
+    BINARY_2,
+    /** 4 ASCII decimal digits of length, e.g. {@code "0123"}. */
+    ASCII_4,
+    /**
+     * 2-byte binary length header, then a 5-byte TPDU (ID and destination/source NII) before the
+     * body. Replies carry the NIIs of the last request swapped; see {@link TpduHandler}.
+     */
+    TPDU;
+
+    /**
+     * Adds this framing's inbound frame decoder and outbound header handlers. Call before adding
+     * the message decoder and encoder: inbound handlers then receive bare bodies, and message
+     * bodies written to the channel get this framing's headers. A corrupted length header closes
+     * the channel; see {@link FrameCorruptionHandler}.
+     *
+     * @param localNii this side's NII (3 digits), used only by {@link #TPDU}
+     */
+    public void configure(ChannelPipeline pipeline, String localNii) {
+        switch (this) {
+            case BINARY_2 -> {
+                pipeline.addLast(new LengthFieldBasedFrameDecoder(Iso8583Frames.MAX_FRAME_LENGTH, 0, 2, 0, 2));
+                pipeline.addLast(FrameCorruptionHandler.INSTANCE);
+                pipeline.addLast(Iso8583Frames.FRAMER, new LengthFieldPrepender(Iso8583Frames.LENGTH_FIELD_LENGTH));
+            }
+            case ASCII_4 -> {
+                pipeline.addLast(new AsciiLengthFrameDecoder(4));
+                pipeline.addLast(FrameCorruptionHandler.INSTANCE);
+                pipeline.addLast(Iso8583Frames.FRAMER, new AsciiLengthPrepender(4));
+            }
+            case TPDU -> {
+                pipeline.addLast(new LengthFieldBasedFrameDecoder(Iso8583Frames.MAX_FRAME_LENGTH, 0, 2, 0, 2));
+                pipeline.addLast(FrameCorruptionHandler.INSTANCE);
+                pipeline.addLast(Iso8583Frames.FRAMER, new LengthFieldPrepender(Iso8583Frames.LENGTH_FIELD_LENGTH));
+                pipeline.addLast(new TpduHandler(localNii));
+            }
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package com.example.common.codec;
+
+import com.example.common.model.FieldRule;
+import com.example.common.model.Iso8583Message;
+import com.example.common.rules.Iso8583Rules;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+
+/**
+ * Binary ISO 8583 codec: MTI, primary/secondary bitmap and fields laid out
+ * according to the {@code type}/{@code format} metadata in {@code iso8583-rules.json}.
+ * <p>
+ * Bitmaps are always 8 raw bytes each. BINARY fields are carried as raw bytes on the
+ * wire and as upper-case hex strings in {@link Iso8583Message}; their rule length is
+ * in bytes. ALPHANUMERIC fields are always ASCII. With BCD enabled the MTI, NUMERIC
+ * fields and LLVAR/LLLVAR length prefixes are packed BCD, otherwise ASCII digits.
+ */
+public class Iso8583BinaryCodec implements Iso8583Codec, FieldReader {
+
+    public static final int MAX_FIELD = Iso8583Message.MAX_FIELD;
+
+    private static final long SECONDARY_BITMAP_BIT = 1L << 63;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private static final int TYPE_NUMERIC = 0;
+    private static final int TYPE_ALPHA = 1;
+    private static final int TYPE_BINARY = 2;
+
+    private final FieldSpec[] specs = new FieldSpec[MAX_FIELD + 1];
+    private final boolean bcd;
+
+    public Iso8583BinaryCodec(Iso8583Rules rules, boolean bcd) {
+        this.bcd = bcd;
+        rules.getFieldRules().forEach((fieldNumber, rule) -> {
+            if (fieldNumber >= 2 && fieldNumber <= MAX_FIELD) {
+                specs[fieldNumber] = FieldSpec.of(fieldNumber, rule);
+            }
+        });
+    }
+
+    public boolean isBcd() {
+        return bcd;
+    }
+
+    @Override
+    public void encode(Iso8583Message message, ByteBuf out) {
+        long primary = 0;
+        long secondary = 0;
+        for (int n = message.nextField(0); n != -1; n = message.nextField(n)) {
+            if (n < 2 || n > MAX_FIELD || specs[n] == null) {
+                throw new IllegalArgumentException("No binary encoding rule for field " + n);
+            }
+            if (n <= 64) {
+                primary |= bit(n);
+            } else {
+                secondary |= bit(n - 64);
+            }
+        }
+        if (secondary != 0) {
+            primary |= SECONDARY_BITMAP_BIT;
+        }
+
+        writeMti(message.getMti(), out);
+        out.writeLong(primary);
+        if (secondary != 0) {
+            out.writeLong(secondary);
+        }
+        encodeFields(primary & ~SECONDARY_BITMAP_BIT, 0, message, out);
+        encodeFields(secondary, 64, message, out);
+    }
+
+    @Override
+    public Iso8583Message decode(ByteBuf frame) {
+        Iso8583Message message = new Iso8583Message();
+        int end = walk(frame, (fieldNumber, offset, length) -> {
+            if (fieldNumber == 0) {
+                message.setMti(readMti(frame, offset));
+            } else {
+                message.addField(fieldNumber, readField(frame, fieldNumber, offset, length));
+            }
+        });
+        frame.readerIndex(end);
+        return message;
+    }
+
+    @Override
+    public Iso8583Message decodeView(ByteBuf frame) {
+        LazyIso8583Message view = new LazyIso8583Message(frame.retain(), this);
+        try {
+            walk(frame, view::index);
+        } catch (RuntimeException e) {
+            view.release();
+            throw e;
+        }
+        return view;
+    }
+
+    @Override
+    public String readMti(ByteBuf frame, int offset, int length) {
+        return readMti(frame, offset);
+    }
+
+    @Override
+    public String readField(ByteBuf frame, int fieldNumber, int offset, int length) {
+        return switch (specs[fieldNumber].type) {
+            case TYPE_NUMERIC -> bcd ? readBcd(frame, offset, length) : readAscii(frame, offset, length);
+            case TYPE_ALPHA -> readAscii(frame, offset, length);
+            default -> readHex(frame, offset, length);
+        };
+    }
+
+    /**
+     * Walks the MTI, bitmaps and field boundaries without materializing any value.
+     * The MTI is reported as field 0. Lengths are in digits, characters or bytes
+     * depending on the field type. Returns the index just past the last field.
+     */
+    private int walk(ByteBuf frame, FieldSink sink) {
+        int pos = frame.readerIndex();
+        int end = frame.writerIndex();
+
+        int mtiBytes = bcd ? 2 : 4;
+        ensureReadable(pos, mtiBytes, end, "MTI");
+        sink.accept(0, pos, 4);
+        pos += mtiBytes;
+
+        ensureReadable(pos, 8, end, "bitmap");
+        long primary = frame.getLong(pos);
+        pos += 8;
+        long secondary = 0;
+        if ((primary & SECONDARY_BITMAP_BIT) != 0) {
+            ensureReadable(pos, 8, end, "secondary bitmap");
+            secondary = frame.getLong(pos);
+            pos += 8;
+        }
+        pos = walkFields(primary & ~SECONDARY_BITMAP_BIT, 0, frame, pos, end, sink);
+        pos = walkFields(secondary, 64, frame, pos, end, sink);
+
+        if (pos != end) {
+            throw new CorruptedFrameException((end - pos) + " trailing bytes after last field");
+        }
+        return pos;
+    }
+
+    private int walkFields(long bitmap, int base, ByteBuf frame, int pos, int end, FieldSink sink) {
+        while (bitmap != 0) {
+            int offset = Long.numberOfLeadingZeros(bitmap);
+            bitmap &= ~(1L << (63 - offset));
+            int n = base + offset + 1;
+            FieldSpec spec = specs[n];
+            if (spec == null) {
+                throw new CorruptedFrameException("Bitmap references field " + n + " which has no rule");
+            }
+
+            int units = spec.length;
+            if (spec.prefixDigits > 0) {
+                int prefixBytes = bcd ? (spec.prefixDigits == 3 ? 2 : 1) : spec.prefixDigits;
+                ensureReadable(pos, prefixBytes, end, "length of field " + n);
+                units = readLength(spec, frame, pos);
+                pos += prefixBytes;
+            }
+
+            int bytes = spec.type == TYPE_NUMERIC && bcd ? (units + 1) / 2 : units;
+            ensureReadable(pos, bytes, end, "field " + n);
+            sink.accept(n, pos, units);
+            pos += bytes;
+        }
+        return pos;
+    }
+
+    private void encodeFields(long bitmap, int base, Iso8583Message message, ByteBuf out) {
+        while (bitmap != 0) {
+            int offset = Long.numberOfLeadingZeros(bitmap);
+            bitmap &= ~(1L << (63 - offset));
+            int n = base + offset + 1;
+            encodeField(specs[n], message.getField(n), out);
+        }
+    }
+
+    private void encodeField(FieldSpec spec, String value, ByteBuf out) {
+        int units = spec.type == TYPE_BINARY ? hexLength(spec, value) : value.length();
+        if (spec.prefixDigits == 0) {
+            if (units > spec.length) {
+                throw new IllegalArgumentException("Field " + spec.number + " exceeds fixed length " + spec.length);
+            }
+            if (spec.type == TYPE_BINARY && units != spec.length) {
+                throw new IllegalArgumentException("Field " + spec.number + " must be exactly " + spec.length + " bytes");
+            }
+        } else {
+            if (units > spec.length) {
+                throw new IllegalArgumentException("Field " + spec.number + " exceeds maximum length " + spec.length);
+            }
+            writeLength(units, spec.prefixDigits, out);
+        }
+
+        int padding = spec.prefixDigits == 0 ? spec.length - units : 0;
+        switch (spec.type) {
+            case TYPE_NUMERIC -> {
+                if (bcd) {
+                    writeBcd(value, padding, spec.number, out);
+                } else {
+                    writeRepeated('0', padding, out);
+                    writeDigits(value, spec.number, out);
+                }
+            }
+            case TYPE_ALPHA -> {
+                writeAscii(value, out);
+                writeRepeated(' ', padding, out);
+            }
+            default -> writeHex(value, spec.number, out);
+        }
+    }
+
+    private void writeMti(String mti, ByteBuf out) {
+        if (mti == null || mti.length() != 4) {
+            throw new IllegalArgumentException("Invalid MTI: " + mti);
+        }
+        if (bcd) {
+            writeBcd(mti, 0, 0, out);
+        } else {
+            writeDigits(mti, 0, out);
+        }
+    }
+
+    private void writeLength(int length, int digits, ByteBuf out) {
+        if (bcd) {
+            if (digits == 3) {
+                out.writeByte(length / 100);
+            }
+            int lastTwo = length % 100;
+            out.writeByte(((lastTwo / 10) << 4) | (lastTwo % 10));
+        } else {
+            if (digits == 3) {
+                out.writeByte('0' + length / 100);
+            }
+            out.writeByte('0' + (length / 10) % 10);
+            out.writeByte('0' + length % 10);
+        }
+    }
+
+    private String readMti(ByteBuf frame, int offset) {
+        return bcd ? readBcd(frame, offset, 4) : readAscii(frame, offset, 4);
+    }
+
+    private int readLength(FieldSpec spec, ByteBuf frame, int pos) {
+        int length = 0;
+        if (bcd) {
+            int bytes = spec.prefixDigits == 3 ? 2 : 1;
+            for (int i = 0; i < bytes; i++) {
+                int b = frame.getUnsignedByte(pos + i);
+                length = length * 100 + bcdDigit(b >> 4, spec.number) * 10 + bcdDigit(b & 0x0F, spec.number);
+            }
+        } else {
+            for (int i = 0; i < spec.prefixDigits; i++) {
+                int c = frame.getUnsignedByte(pos + i) - '0';
+                if (c < 0 || c > 9) {
+                    throw new CorruptedFrameException("Non-numeric length prefix for field " + spec.number);
+                }
+                length = length * 10 + c;
+            }
+        }
+        if (length > spec.length) {
+            throw new CorruptedFrameException("Field " + spec.number + " length " + length + " exceeds maximum " + spec.length);
+        }
+        return length;
+    }
+
+    private static void writeBcd(String digits, int leadingZeros, int fieldNumber, ByteBuf out) {
+        int total = leadingZeros + digits.length();
+        int pad = leadingZeros + (total & 1);
+        int nibbles = total + (total & 1);
+        for (int i = 0; i < nibbles; i += 2) {
+            int high = digitAt(digits, i - pad, fieldNumber);
+            int low = digitAt(digits, i + 1 - pad, fieldNumber);
+            out.writeByte((high << 4) | low);
+        }
+    }
+
+    private static int digitAt(String digits, int index, int fieldNumber) {
+        if (index < 0) {
+            return 0;
+        }
+        int d = digits.charAt(index) - '0';
+        if (d < 0 || d > 9) {
+            throw new IllegalArgumentException("Field " + fieldNumber + " must be numeric");
+        }
+        return d;
+    }
+
+    private static String readBcd(ByteBuf frame, int index, int digits) {
+        char[] chars = new char[digits];
+        int skip = digits & 1;
+        for (int i = 0; i < digits; i++) {
+            int nibble = i + skip;
+            int b = frame.getUnsignedByte(index + (nibble >> 1));
+            int d = (nibble & 1) == 0 ? b >> 4 : b & 0x0F;
+            chars[i] = (char) ('0' + bcdDigit(d, 0));
+        }
+        return new String(chars);
+    }
+
+    private static int bcdDigit(int nibble, int fieldNumber) {
+        if (nibble > 9) {
+            throw new CorruptedFrameException("Invalid BCD digit" + (fieldNumber > 0 ? " in field " + fieldNumber : ""));
+        }
+        return nibble;
+    }
+
+    private static void writeDigits(String value, int fieldNumber, ByteBuf out) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Field " + fieldNumber + " must be numeric");
+            }
+            out.writeByte(c);
+        }
+    }
+
+    private static void writeAscii(String value, ByteBuf out) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            out.writeByte(c < 0x100 ? c : '?');
+        }
+    }
+
+    private static void writeRepeated(char c, int count, ByteBuf out) {
+        for (int i = 0; i < count; i++) {
+            out.writeByte(c);
+        }
+    }
+
+    private static String readAscii(ByteBuf frame, int index, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) frame.getUnsignedByte(index + i);
+        }
+        return new String(chars);
+    }
+
+    private static int hexLength(FieldSpec spec, String value) {
+        if ((value.length() & 1) != 0) {
+            throw new IllegalArgumentException("Field " + spec.number + " must be an even number of hex digits");
+        }
+        return value.length() / 2;
+    }
+
+    private static void writeHex(String value, int fieldNumber, ByteBuf out) {
+        for (int i = 0; i < value.length(); i += 2) {
+            out.writeByte((hexDigit(value.charAt(i), fieldNumber) << 4) | hexDigit(value.charAt(i + 1), fieldNumber));
+        }
+    }
+
+    private static int hexDigit(char c, int fieldNumber) {
+        int d = Character.digit(c, 16);
+        if (d < 0) {
+            throw new IllegalArgumentException("Field " + fieldNumber + " must be hex encoded");
+        }
+        return d;
+    }
+
+    private static String readHex(ByteBuf frame, int index, int length) {
+        char[] chars = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            int b = frame.getUnsignedByte(index + i);
+            chars[2 * i] = HEX[b >> 4];
+            chars[2 * i + 1] = HEX[b & 0x0F];
+        }
+        return new String(chars);
+    }
+
+    private static void ensureReadable(int pos, int length, int end, String what) {
+        if (end - pos < length) {
+            throw new CorruptedFrameException("Frame truncated while reading " + what);
+        }
+    }
+
+    private static long bit(int position) {
+        return 1L << (64 - position);
+    }
+
+    private static final class FieldSpec {
+        final int number;
+        final int type;
+        final int prefixDigits;
+        final int length;
+
+        private FieldSpec(int number, int type, int prefixDigits, int length) {
+            this.number = number;
+            this.type = type;
+            this.prefixDigits = prefixDigits;
+            this.length = length;
+        }
+
+        static FieldSpec of(int number, FieldRule rule) {
+            int type = switch (rule.getType()) {
+                case "NUMERIC" -> TYPE_NUMERIC;
+                case "BINARY" -> TYPE_BINARY;
+                default -> TYPE_ALPHA;
+            };
+            return switch (rule.getFormat()) {
+                case "LLVAR" -> new FieldSpec(number, type, 2, rule.getMaxLength());
+                case "LLLVAR" -> new FieldSpec(number, type, 3, rule.getMaxLength());
+                default -> new FieldSpec(number, type, 0, rule.getLength());
+            };
+        }
+    }
+}
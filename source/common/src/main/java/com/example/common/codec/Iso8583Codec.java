@@ -0,0 +1,23 @@
+package com.example.common.codec;
+
+import com.example.common.model.Iso8583Message;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Converts between an {@link Iso8583Message} and the body of one frame
+ * (the length header is handled by the framing handlers, not the codec).
+ */
+public interface Iso8583Codec {
+
+    void encode(Iso8583Message message, ByteBuf out);
+
+    Iso8583Message decode(ByteBuf frame);
+
+    /**
+     * Decodes without copying field values out of the frame. Codecs that support it return a
+     * {@link LazyIso8583Message} which retains the frame and must be released by the consumer.
+     */
+    default Iso8583Message decodeView(ByteBuf frame) {
+        return decode(frame);
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.common.codec;
+
+import com.example.common.model.Iso8583Message;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * Pre-encoded messages for writing one message to many channels. The message is encoded once
+ * and each channel gets a {@link ByteBuf#retainedDuplicate()}.
+ * <ul>
+ *   <li>{@link #encodeBody}/{@link #writeBody}: the body only. Each channel adds the headers of
+ *       its own {@link Framing}, so channels with different framings can share the body.</li>
+ *   <li>{@link #encode}/{@link #writeFramed}: the complete {@link Framing#BINARY_2} frame, written
+ *       from the {@link #FRAMER} context so it skips that channel's encoder and length prepender.
+ *       Pipelines that take pre-framed writes must name their length prepender {@link #FRAMER}.</li>
+ * </ul>
+ */
+public final class Iso8583Frames {
+
+    /** Pipeline name of the {@code LengthFieldPrepender}. */
+    public static final String FRAMER = "framer";
+
+    public static final int LENGTH_FIELD_LENGTH = 2;
+    public static final int MAX_FRAME_LENGTH = 65535;
+
+    private Iso8583Frames() {
+    }
+
+    /**
+     * Encodes a message body, without any framing, into one pooled buffer owned by the caller.
+     */
+    public static ByteBuf encodeBody(ByteBufAllocator allocator, Iso8583Codec codec, Iso8583Message message) {
+        ByteBuf body = allocator.ioBuffer();
+        try {
+            codec.encode(message, body);
+            return body;
+        } catch (RuntimeException e) {
+            body.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes and flushes a message body, taking ownership of it. The message encoder passes
+     * buffers through, so the body only gets the channel's framing headers.
+     */
+    public static ChannelFuture writeBody(Channel channel, ByteBuf body) {
+        return channel.writeAndFlush(body);
+    }
+
+    /**
+     * Encodes a message with its length header into one pooled buffer owned by the caller.
+     *
+     * @throws RuntimeException if the body does not fit the length header
+     */
+    public static ByteBuf encode(ByteBufAllocator allocator, Iso8583Codec codec, Iso8583Message message) {
+        ByteBuf frame = allocator.ioBuffer();
+        try {
+            frame.writeShort(0);
+            codec.encode(message, frame);
+            int length = frame.readableBytes() - LENGTH_FIELD_LENGTH;
+            if (length > MAX_FRAME_LENGTH) {
+                throw new RuntimeException("Frame too long: " + length + " bytes");
+            }
+            frame.setShort(0, length);
+            return frame;
+        } catch (RuntimeException e) {
+            frame.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes and flushes a complete frame, taking ownership of it. Pass a
+     * {@code retainedDuplicate()} to keep the original for further channels.
+     */
+    public static ChannelFuture writeFramed(Channel channel, ByteBuf frame) {
+        ChannelHandlerContext framer = channel.pipeline().context(FRAMER);
+        if (framer == null) {
+            ReferenceCountUtil.release(frame);
+            return channel.newFailedFuture(new IllegalStateException("Pipeline has no '" + FRAMER + "' handler"));
+        }
+        return framer.writeAndFlush(frame);
+    }
+}
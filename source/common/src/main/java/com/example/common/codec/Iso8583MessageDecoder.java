@@ -0,0 +1,32 @@
+package com.example.common.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageDecoder;
+
+import java.util.List;
+
+/**
+ * Turns length-stripped frames into {@link com.example.common.model.Iso8583Message}s.
+ * In lazy mode the frame is not copied: the handler receives a {@link LazyIso8583Message}
+ * backed by the pooled frame buffer.
+ */
+public class Iso8583MessageDecoder extends MessageToMessageDecoder<ByteBuf> {
+
+    private final Iso8583Codec codec;
+    private final boolean lazy;
+
+    public Iso8583MessageDecoder(Iso8583Codec codec) {
+        this(codec, false);
+    }
+
+    public Iso8583MessageDecoder(Iso8583Codec codec, boolean lazy) {
+        this.codec = codec;
+        this.lazy = lazy;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf frame, List<Object> out) {
+        out.add(lazy ? codec.decodeView(frame) : codec.decode(frame));
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.common.codec;
+
+import com.example.common.model.Iso8583Message;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+/**
+ * Writes {@link Iso8583Message}s as frame bodies; the length header is added further down the pipeline.
+ */
+public class Iso8583MessageEncoder extends MessageToByteEncoder<Iso8583Message> {
+
+    private final Iso8583Codec codec;
+
+    public Iso8583MessageEncoder(Iso8583Codec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Iso8583Message message, ByteBuf out) {
+        codec.encode(message, out);
+    }
+}
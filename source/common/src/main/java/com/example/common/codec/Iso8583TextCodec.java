@@ -0,0 +1,118 @@
+package com.example.common.codec;
+
+import com.example.common.model.Iso8583Message;
+import com.example.common.parser.Iso8583Parser;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The pipe-delimited {@code MTI|n=value} text format used between our own services.
+ */
+public class Iso8583TextCodec implements Iso8583Codec, FieldReader {
+
+    public static final Iso8583TextCodec INSTANCE = new Iso8583TextCodec();
+
+    private static final byte SEPARATOR = '|';
+    private static final byte ASSIGN = '=';
+
+    @Override
+    public void encode(Iso8583Message message, ByteBuf out) {
+        ByteBufUtil.writeUtf8(out, message.toString());
+    }
+
+    @Override
+    public Iso8583Message decode(ByteBuf frame) {
+        return Iso8583Parser.parseMessage(frame.toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Indexes the same two layouts {@link Iso8583Parser#parseMessage} accepts
+     * ({@code MTI|n=value} and {@code MTI=..|Fn=..}) by scanning for delimiters in place.
+     */
+    @Override
+    public Iso8583Message decodeView(ByteBuf frame) {
+        LazyIso8583Message view = new LazyIso8583Message(frame.retain(), this);
+        int start = frame.readerIndex();
+        int end = frame.writerIndex();
+
+        boolean named = end - start >= 4
+                && frame.getByte(start) == 'M' && frame.getByte(start + 1) == 'T'
+                && frame.getByte(start + 2) == 'I' && frame.getByte(start + 3) == ASSIGN;
+        int pos;
+        if (named) {
+            pos = start;
+        } else if (end - start >= 4) {
+            view.index(0, start, 4);
+            pos = segmentEnd(frame, start, end) + 1;
+        } else {
+            return view;
+        }
+
+        while (pos < end) {
+            int segmentEnd = segmentEnd(frame, pos, end);
+            int assign = frame.indexOf(pos, segmentEnd, ASSIGN);
+            if (assign >= 0) {
+                indexSegment(frame, view, named, pos, assign, segmentEnd);
+            }
+            pos = segmentEnd + 1;
+        }
+        return view;
+    }
+
+    @Override
+    public String readMti(ByteBuf frame, int offset, int length) {
+        return frame.toString(offset, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String readField(ByteBuf frame, int fieldNumber, int offset, int length) {
+        return frame.toString(offset, length, StandardCharsets.UTF_8);
+    }
+
+    private static void indexSegment(ByteBuf frame, LazyIso8583Message view, boolean named,
+                                     int keyStart, int assign, int segmentEnd) {
+        int valueStart = assign + 1;
+        int valueLength = segmentEnd - valueStart;
+        int digitsStart = keyStart;
+        if (named) {
+            if (assign - keyStart == 3 && frame.getByte(keyStart) == 'M'
+                    && frame.getByte(keyStart + 1) == 'T' && frame.getByte(keyStart + 2) == 'I') {
+                view.index(0, valueStart, valueLength);
+                return;
+            }
+            if (frame.getByte(keyStart) != 'F') {
+                return;
+            }
+            digitsStart++;
+        }
+
+        int fieldNumber = parseFieldNumber(frame, digitsStart, assign);
+        if (Iso8583Message.isValidFieldNumber(fieldNumber)) {
+            view.index(fieldNumber, valueStart, valueLength);
+        } else {
+            System.err.println("⚠️ Invalid field number: " + frame.toString(keyStart, assign - keyStart, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static int parseFieldNumber(ByteBuf frame, int start, int end) {
+        if (start >= end || end - start > 9) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = frame.getByte(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int segmentEnd(ByteBuf frame, int from, int end) {
+        int separator = frame.indexOf(from, end, SEPARATOR);
+        return separator < 0 ? end : separator;
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.common.codec;
+
+import com.example.common.model.Iso8583Message;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCounted;
+
+import java.util.Map;
+
+/**
+ * An {@link Iso8583Message} view over a decoded frame. The codec only records the
+ * (offset, length) of each field; a String is created the first time the field is read.
+ * <p>
+ * The view retains the frame, so it must be released like any other reference-counted
+ * Netty message ({@code SimpleChannelInboundHandler} does this automatically). Fields that
+ * were never read are gone once the frame is released: call {@link #materialize()} before
+ * handing the message to code that outlives the read.
+ */
+public class LazyIso8583Message extends Iso8583Message implements ReferenceCounted {
+
+    private final ByteBuf frame;
+    private final FieldReader reader;
+    private final int[] offsets = new int[MAX_FIELD + 1];
+    private final int[] lengths = new int[MAX_FIELD + 1];
+    private long pendingLow;
+    private long pendingHigh;
+    private boolean mtiPending;
+
+    LazyIso8583Message(ByteBuf frame, FieldReader reader) {
+        this.frame = frame;
+        this.reader = reader;
+    }
+
+    void index(int fieldNumber, int offset, int length) {
+        offsets[fieldNumber] = offset;
+        lengths[fieldNumber] = length;
+        if (fieldNumber == 0) {
+            mtiPending = true;
+        } else if (fieldNumber <= 64) {
+            pendingLow |= 1L << (fieldNumber - 1);
+        } else {
+            pendingHigh |= 1L << (fieldNumber - 65);
+        }
+    }
+
+    /**
+     * Copies every remaining field out of the frame so the message stays usable after release.
+     */
+    public LazyIso8583Message materialize() {
+        if (mtiPending) {
+            getMti();
+        }
+        while (pendingLow != 0) {
+            getField(Long.numberOfTrailingZeros(pendingLow) + 1);
+        }
+        while (pendingHigh != 0) {
+            getField(Long.numberOfTrailingZeros(pendingHigh) + 65);
+        }
+        return this;
+    }
+
+    @Override
+    public String getMti() {
+        if (mtiPending) {
+            mtiPending = false;
+            super.setMti(reader.readMti(frame, offsets[0], lengths[0]));
+        }
+        return super.getMti();
+    }
+
+    @Override
+    public void setMti(String mti) {
+        mtiPending = false;
+        super.setMti(mti);
+    }
+
+    @Override
+    public String getField(int fieldNumber) {
+        if (isPending(fieldNumber)) {
+            clearPending(fieldNumber);
+            super.addField(fieldNumber, reader.readField(frame, fieldNumber, offsets[fieldNumber], lengths[fieldNumber]));
+        }
+        return super.getField(fieldNumber);
+    }
+
+    @Override
+    public void addField(int fieldNumber, String value) {
+        clearPending(fieldNumber);
+        super.addField(fieldNumber, value);
+    }
+
+    @Override
+    public boolean hasField(int fieldNumber) {
+        return isPending(fieldNumber) || super.hasField(fieldNumber);
+    }
+
+    @Override
+    public String removeField(int fieldNumber) {
+        clearPending(fieldNumber);
+        return super.removeField(fieldNumber);
+    }
+
+    @Override
+    public int getFieldCount() {
+        return Long.bitCount(pendingLow) + Long.bitCount(pendingHigh) + super.getFieldCount();
+    }
+
+    @Override
+    public void forEachField(FieldConsumer consumer) {
+        materialize();
+        super.forEachField(consumer);
+    }
+
+    @Override
+    public int nextField(int fieldNumber) {
+        materialize();
+        return super.nextField(fieldNumber);
+    }
+
+    @Override
+    public Map<Integer, String> getFields() {
+        materialize();
+        return super.getFields();
+    }
+
+    @Override
+    public String toString() {
+        materialize();
+        return super.toString();
+    }
+
+    private boolean isPending(int fieldNumber) {
+        if (fieldNumber < 1 || fieldNumber > MAX_FIELD) {
+            return false;
+        }
+        return fieldNumber <= 64
+                ? (pendingLow & (1L << (fieldNumber - 1))) != 0
+                : (pendingHigh & (1L << (fieldNumber - 65))) != 0;
+    }
+
+    private void clearPending(int fieldNumber) {
+        if (fieldNumber >= 1 && fieldNumber <= 64) {
+            pendingLow &= ~(1L << (fieldNumber - 1));
+        } else if (fieldNumber > 64 && fieldNumber <= MAX_FIELD) {
+            pendingHigh &= ~(1L << (fieldNumber - 65));
+        }
+    }
+
+    @Override
+    public int refCnt() {
+        return frame.refCnt();
+    }
+
+    @Override
+    public LazyIso8583Message retain() {
+        frame.retain();
+        return this;
+    }
+
+    @Override
+    public LazyIso8583Message retain(int increment) {
+        frame.retain(increment);
+        return this;
+    }
+
+    @Override
+    public LazyIso8583Message touch() {
+        frame.touch();
+        return this;
+    }
+
+    @Override
+    public LazyIso8583Message touch(Object hint) {
+        frame.touch(hint);
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return frame.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return frame.release(decrement);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.common.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.MessageToMessageCodec;
+
+import java.util.List;
+
+/**
+ * Strips the 5-byte TPDU in front of inbound bodies and adds one to outbound bodies. A TPDU is
+ * the ID byte {@code 0x60} followed by the destination and source NII, each 2 BCD bytes.
+ * <p>
+ * Replies go back where the last request came from: its source NII becomes our destination and
+ * its destination NII our source. Until a request arrives, writes are addressed to NII 000 from
+ * the local NII. One instance per channel.
+ */
+public class TpduHandler extends MessageToMessageCodec<ByteBuf, ByteBuf> {
+
+    public static final int LENGTH = 5;
+    public static final byte TPDU_ID = 0x60;
+
+    private short destinationNii;
+    private short sourceNii;
+
+    /**
+     * @param localNii this side's NII, 3 digits, e.g. {@code "003"}
+     */
+    public TpduHandler(String localNii) {
+        this.destinationNii = 0;
+        this.sourceNii = bcd(localNii);
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf frame, List<Object> out) {
+        if (frame.readableBytes() < LENGTH || frame.getByte(frame.readerIndex()) != TPDU_ID) {
+            throw new CorruptedFrameException("Frame does not start with a TPDU");
+        }
+        frame.skipBytes(1);
+        short requestDestination = frame.readShort();
+        short requestSource = frame.readShort();
+        destinationNii = requestSource;
+        sourceNii = requestDestination;
+        out.add(frame.retain());
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf body, List<Object> out) {
+        ByteBuf tpdu = ctx.alloc().buffer(LENGTH);
+        tpdu.writeByte(TPDU_ID);
+        tpdu.writeShort(destinationNii);
+        tpdu.writeShort(sourceNii);
+        // One buffer, so the length prepender frames TPDU and body together
+        CompositeByteBuf framed = ctx.alloc().compositeBuffer(2);
+        framed.addComponents(true, tpdu, body.retain());
+        out.add(framed);
+    }
+
+    private static short bcd(String nii) {
+        if (nii == null || !nii.matches("\\d{1,4}")) {
+            throw new IllegalArgumentException("NII must be up to 4 digits: " + nii);
+        }
+        // Each decimal digit is one nibble, which is exactly how hex reads it
+        return (short) Integer.parseInt(nii, 16);
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.common.codec;
+
+import com.example.common.rules.Iso8583Rules;
+
+/**
+ * Message body encodings a socket pipeline can be configured with.
+ */
+public enum WireFormat {
+    /** Pipe-delimited {@code MTI|n=value} text. */
+    TEXT,
+    /** Binary bitmap message with ASCII MTI, numerics and length prefixes. */
+    BINARY,
+    /** Binary bitmap message with packed BCD MTI, numerics and length prefixes. */
+    BINARY_BCD;
+
+    public Iso8583Codec codec() {
+        return switch (this) {
+            case TEXT -> Iso8583TextCodec.INSTANCE;
+            case BINARY -> Codecs.BINARY;
+            case BINARY_BCD -> Codecs.BINARY_BCD;
+        };
+    }
+
+    private static final class Codecs {
+        private static final Iso8583Codec BINARY = new Iso8583BinaryCodec(Iso8583Rules.getDefault(), false);
+        private static final Iso8583Codec BINARY_BCD = new Iso8583BinaryCodec(Iso8583Rules.getDefault(), true);
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.common.dedup;
+
+import com.example.common.dispatch.MtiHandlerRegistry;
+import com.example.common.model.Iso8583Message;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Recognizes retransmitted requests by RRN (field 37), STAN (field 11), terminal id (field 41)
+ * and MTI, with repeat MTIs (0201, 0401...) counted as the original, and answers them with the
+ * response the original got instead of processing them again.
+ * <p>
+ * Requests are remembered for {@code windowMillis} in two generations of fixed-size
+ * open-addressing tables keyed by a 64-bit hash, each fronted by a Bloom filter so a first
+ * transmission, the common case, usually costs a few bit tests and no probe. The current
+ * generation becomes the previous one every window, or early once it holds {@code capacity}
+ * requests, so memory stays flat however much traffic there is; under more than
+ * {@code capacity} distinct requests per window the oldest are forgotten early.
+ * <p>
+ * A duplicate that arrives while its original is still being processed gets no response;
+ * the original's response answers both.
+ */
+public class DuplicateDetector {
+
+    /** Fields the key is built from, which callers must decode. */
+    public static final int[] KEY_FIELDS = {11, 37, 41};
+
+    private static final long EMPTY = 0;
+    private static final byte PENDING = 0;
+    private static final byte DONE = 1;
+    private static final byte ABANDONED = 2;
+
+    private final int capacity;
+    private final long windowMillis;
+    private final LongSupplier clock;
+    private Generation current;
+    private Generation previous;
+    private long rotateAt;
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder inFlight = new LongAdder();
+
+    /**
+     * @param capacity     requests remembered per generation
+     * @param windowMillis how long a request counts as a duplicate of an earlier one
+     */
+    public DuplicateDetector(int capacity, long windowMillis) {
+        this(capacity, windowMillis, System::currentTimeMillis);
+    }
+
+    public DuplicateDetector(int capacity, long windowMillis, LongSupplier clock) {
+        this.capacity = Math.max(1, capacity);
+        this.windowMillis = windowMillis;
+        this.clock = clock;
+        this.current = new Generation(this.capacity);
+        this.previous = new Generation(this.capacity);
+        this.rotateAt = clock.getAsLong() + windowMillis;
+    }
+
+    /**
+     * Runs {@code handler} for a first transmission and remembers its response. A duplicate of
+     * a completed request gets a copy of that response; one of a request still in progress
+     * gets null. Requests without an RRN or STAN are always handled.
+     * <p>
+     * If the handler throws, the request is forgotten so a retransmission is processed.
+     */
+    public Iso8583Message process(Iso8583Message request, UnaryOperator<Iso8583Message> handler) {
+        long key = key(request);
+        if (key == EMPTY) {
+            return handler.apply(request);
+        }
+        synchronized (this) {
+            long now = clock.getAsLong();
+            rotate(now);
+            Generation generation = current;
+            int slot = live(current, key, now);
+            if (slot < 0) {
+                generation = previous;
+                slot = live(previous, key, now);
+            }
+            if (slot < 0) {
+                current.remember(key, now);
+            } else if (generation.states[slot] == PENDING) {
+                inFlight.increment();
+                return null;
+            } else {
+                replayed.increment();
+                Iso8583Message cached = generation.responses[slot];
+                return cached != null ? copy(cached) : null;
+            }
+        }
+
+        Iso8583Message response;
+        try {
+            response = handler.apply(request);
+        } catch (RuntimeException | Error e) {
+            complete(key, null, false);
+            throw e;
+        }
+        complete(key, response, true);
+        return response;
+    }
+
+    /**
+     * @return duplicates answered with a remembered response
+     */
+    public long getReplayedCount() {
+        return replayed.sum();
+    }
+
+    /**
+     * @return duplicates dropped because their original was still being processed
+     */
+    public long getInFlightCount() {
+        return inFlight.sum();
+    }
+
+    /**
+     * @return the key for {@code request}, or 0 if it has no RRN or STAN
+     */
+    static long key(Iso8583Message request) {
+        String rrn = request.getField(37);
+        String stan = request.getField(11);
+        if (rrn == null || stan == null) {
+            return EMPTY;
+        }
+        int mti = MtiHandlerRegistry.index(request.getMti());
+        // Origin digit 1 and 3 are repeats of 0 and 2
+        long hash = 0xcbf29ce484222325L ^ (mti - (mti % 10) % 2);
+        hash = hash(hash, rrn);
+        hash = hash(hash, stan);
+        hash = hash(hash, request.getField(41));
+        hash = mix(hash);
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    private static long hash(long hash, String value) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+            }
+        }
+        // Separator, so ("12", "3") and ("1", "23") differ
+        return (hash ^ 0xff) * 0x100000001b3L;
+    }
+
+    private static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+
+    private synchronized void complete(long key, Iso8583Message response, boolean done) {
+        Generation generation = current;
+        int slot = current.find(key);
+        if (slot < 0) {
+            generation = previous;
+            slot = previous.find(key);
+        }
+        if (slot < 0) {
+            // Rotated out while the handler ran
+            return;
+        }
+        if (done) {
+            generation.states[slot] = DONE;
+            generation.responses[slot] = response;
+        } else {
+            // So the next transmission is processed
+            generation.states[slot] = ABANDONED;
+        }
+    }
+
+    /**
+     * @return the slot of {@code key} if it was seen within the window, otherwise -1
+     */
+    private int live(Generation generation, long key, long now) {
+        int slot = generation.find(key);
+        return slot >= 0 && generation.states[slot] != ABANDONED && now - generation.times[slot] <= windowMillis ? slot : -1;
+    }
+
+    private void rotate(long now) {
+        if (now < rotateAt && current.size < capacity) {
+            return;
+        }
+        Generation recycled = previous;
+        recycled.clear();
+        previous = current;
+        current = recycled;
+        rotateAt = now + windowMillis;
+    }
+
+    private static Iso8583Message copy(Iso8583Message response) {
+        Iso8583Message copy = new Iso8583Message();
+        copy.setMti(response.getMti());
+        response.forEachField(copy::addField);
+        return copy;
+    }
+
+    /**
+     * One window of requests: a linear-probing table and its Bloom filter. Only touched while
+     * holding the detector's monitor.
+     */
+    private static final class Generation {
+        final long[] keys;
+        final long[] times;
+        final byte[] states;
+        final Iso8583Message[] responses;
+        final long[] bloom;
+        final int bloomMask;
+        int size;
+
+        Generation(int capacity) {
+            // At most 75% full when the generation rotates
+            int length = Integer.highestOneBit((int) Math.min(1 << 30, capacity * 4L / 3 + 1) * 2 - 1);
+            keys = new long[length];
+            times = new long[length];
+            states = new byte[length];
+            responses = new Iso8583Message[length];
+            // About 16 bits per request, so three probes give under 1% false positives
+            int bits = Integer.highestOneBit((int) Math.min(1 << 30, capacity * 16L) * 2 - 1);
+            bloom = new long[Math.max(1, bits >>> 6)];
+            bloomMask = bloom.length * 64 - 1;
+        }
+
+        int find(long key) {
+            if (!mightContain(key)) {
+                return -1;
+            }
+            int mask = keys.length - 1;
+            for (int slot = (int) key & mask; ; slot = (slot + 1) & mask) {
+                long k = keys[slot];
+                if (k == key) {
+                    return slot;
+                }
+                if (k == EMPTY) {
+                    return -1;
+                }
+            }
+        }
+
+        void remember(long key, long now) {
+            int slot = find(key);
+            if (slot < 0) {
+                int mask = keys.length - 1;
+                slot = (int) key & mask;
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                size++;
+                for (int shift = 0; shift < 63; shift += 21) {
+                    int bit = (int) (key >>> shift) & bloomMask;
+                    bloom[bit >>> 6] |= 1L << bit;
+                }
+            }
+            times[slot] = now;
+            states[slot] = PENDING;
+            responses[slot] = null;
+        }
+
+        void clear() {
+            Arrays.fill(keys, EMPTY);
+            Arrays.fill(responses, null);
+            Arrays.fill(bloom, 0);
+            size = 0;
+        }
+
+        private boolean mightContain(long key) {
+            for (int shift = 0; shift < 63; shift += 21) {
+                int bit = (int) (key >>> shift) & bloomMask;
+                if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
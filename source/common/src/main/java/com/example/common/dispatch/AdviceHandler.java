@@ -0,0 +1,47 @@
+package com.example.common.dispatch;
+
+import com.example.common.model.Iso8583Message;
+import com.example.common.response.ResponseTemplate;
+
+import java.util.function.Consumer;
+
+/**
+ * Authorization advices (0120 to 0130) and financial advices (0220 to 0230): transactions
+ * already decided elsewhere, e.g. by stand-in. Each advice is passed to a listener, e.g. to
+ * record it, and then acknowledged.
+ */
+public class AdviceHandler implements MtiHandler {
+
+    private static final ResponseTemplate AUTHORIZATION_ADVICE = acknowledgement("0130");
+    private static final ResponseTemplate FINANCIAL_ADVICE = acknowledgement("0230");
+
+    private final Consumer<Iso8583Message> listener;
+
+    public AdviceHandler() {
+        this(advice -> { });
+    }
+
+    public AdviceHandler(Consumer<Iso8583Message> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public String[] mtis() {
+        return new String[]{"0120", "0220"};
+    }
+
+    @Override
+    public int[] fields() {
+        return new int[]{2, 3, 4, 7, 11, 12, 13, 37, 38, 39, 41, 42, 49};
+    }
+
+    @Override
+    public Iso8583Message handle(Iso8583Message request) {
+        listener.accept(request);
+        return ("0120".equals(request.getMti()) ? AUTHORIZATION_ADVICE : FINANCIAL_ADVICE).respond(request);
+    }
+
+    private static ResponseTemplate acknowledgement(String mti) {
+        return ResponseTemplate.builder(mti).echo(7, 11, 12, 13, 37).set(39, "00").build();
+    }
+}
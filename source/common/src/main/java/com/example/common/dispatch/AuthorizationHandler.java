@@ -0,0 +1,75 @@
+package com.example.common.dispatch;
+
+import com.example.common.model.Iso8583Message;
+import com.example.common.response.ResponseTemplate;
+
+/**
+ * Authorization (0100 to 0110) and financial (0200 to 0210) requests. An {@link Authorizer}
+ * picks the response code; approvals carry a fresh approval code in field 38.
+ */
+public class AuthorizationHandler implements MtiHandler {
+
+    /**
+     * Decides a request.
+     */
+    @FunctionalInterface
+    public interface Authorizer {
+        /**
+         * @return the field 39 response code, {@code "00"} to approve
+         */
+        String authorize(Iso8583Message request);
+    }
+
+    public static final String APPROVED = "00";
+
+    private static final int[] AUTHORIZATION_ECHO = {2, 3, 4, 7, 11, 12, 13, 37, 41, 42, 49};
+    private static final int[] FINANCIAL_ECHO = {2, 3, 4, 7, 11, 37};
+
+    private static final ResponseTemplate AUTHORIZATION_APPROVED = approved("0110", AUTHORIZATION_ECHO);
+    private static final ResponseTemplate AUTHORIZATION_DECLINED = declined("0110", AUTHORIZATION_ECHO);
+    private static final ResponseTemplate FINANCIAL_APPROVED = approved("0210", FINANCIAL_ECHO);
+    private static final ResponseTemplate FINANCIAL_DECLINED = declined("0210", FINANCIAL_ECHO);
+
+    private final Authorizer authorizer;
+
+    /**
+     * Approves everything.
+     */
+    public AuthorizationHandler() {
+        this(request -> APPROVED);
+    }
+
+    public AuthorizationHandler(Authorizer authorizer) {
+        this.authorizer = authorizer;
+    }
+
+    @Override
+    public String[] mtis() {
+        return new String[]{"0100", "0200"};
+    }
+
+    @Override
+    public int[] fields() {
+        return AUTHORIZATION_ECHO;
+    }
+
+    @Override
+    public Iso8583Message handle(Iso8583Message request) {
+        boolean financial = "0200".equals(request.getMti());
+        String responseCode = authorizer.authorize(request);
+        if (APPROVED.equals(responseCode)) {
+            return (financial ? FINANCIAL_APPROVED : AUTHORIZATION_APPROVED).respond(request);
+        }
+        Iso8583Message response = (financial ? FINANCIAL_DECLINED : AUTHORIZATION_DECLINED).respond(request);
+        response.addField(39, responseCode);
+        return response;
+    }
+
+    private static ResponseTemplate approved(String mti, int[] echo) {
+        return ResponseTemplate.builder(mti).echo(echo).approvalCode().set(39, APPROVED).build();
+    }
+
+    private static ResponseTemplate declined(String mti, int[] echo) {
+        return ResponseTemplate.builder(mti).echo(echo).build();
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.common.dispatch;
+
+import com.example.common.model.Iso8583Message;
+
+/**
+ * Answers one family of request MTIs. Registered with an {@link MtiHandlerRegistry}.
+ */
+public interface MtiHandler {
+
+    /**
+     * @return the request MTIs this handler answers, e.g. {@code {"0100", "0200"}}
+     */
+    String[] mtis();
+
+    /**
+     * @return the request fields this handler reads or echoes. Only these, the fields the
+     *         MTI requires and the registry's always-read fields are validated and decoded.
+     */
+    int[] fields();
+
+    /**
+     * @return the response, or null when nothing is sent back
+     */
+    Iso8583Message handle(Iso8583Message request);
+}
@@ -0,0 +1,132 @@
+package com.example.common.dispatch;
+
+import com.example.common.model.Iso8583Message;
+import com.example.common.model.MtiRule;
+import com.example.common.response.Digits;
+import com.example.common.rules.Iso8583Rules;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Finds the {@link MtiHandler} for a request MTI with one array lookup: the four MTI digits
+ * are the index, so there are no string compares or hashing on the hot path.
+ * <p>
+ * For every registered MTI the registry also keeps the fields worth decoding: what the
+ * handler declares, what {@code iso8583-rules.json} requires for the MTI, and the fields
+ * every request needs (e.g. STAN and RRN for tracing). Callers validate and copy only those.
+ */
+public final class MtiHandlerRegistry {
+
+    private static final int SIZE = 10_000;
+
+    private final Iso8583Rules rules;
+    private final int[] alwaysRead;
+    private final MtiHandler[] handlers = new MtiHandler[SIZE];
+    private final int[][] fields = new int[SIZE][];
+
+    /**
+     * @param alwaysRead fields decoded for every request, handled or not
+     */
+    public MtiHandlerRegistry(Iso8583Rules rules, int... alwaysRead) {
+        this.rules = rules;
+        this.alwaysRead = alwaysRead.clone();
+    }
+
+    /**
+     * Registers a handler for each of its MTIs, replacing an earlier handler for the same MTI.
+     *
+     * @throws IllegalArgumentException if an MTI is not four digits
+     */
+    public MtiHandlerRegistry register(MtiHandler handler) {
+        for (String mti : handler.mtis()) {
+            int index = index(mti);
+            if (index < 0) {
+                throw new IllegalArgumentException("Invalid MTI: " + mti);
+            }
+            if (handlers[index] != null && handlers[index] != handler) {
+                System.out.println("🔁 MTI " + mti + ": " + handler.getClass().getSimpleName()
+                        + " replaces " + handlers[index].getClass().getSimpleName());
+            }
+            handlers[index] = handler;
+            fields[index] = fieldsFor(mti, handler.fields());
+        }
+        return this;
+    }
+
+    /**
+     * @return the handler for {@code mti}, or null if none is registered
+     */
+    public MtiHandler handler(String mti) {
+        int index = index(mti);
+        return index < 0 ? null : handlers[index];
+    }
+
+    /**
+     * @return the fields to validate and decode for {@code mti}, in ascending order; only the
+     *         always-read fields if no handler is registered
+     */
+    public int[] fields(String mti) {
+        int index = index(mti);
+        int[] handled = index < 0 ? null : fields[index];
+        return handled != null ? handled : alwaysRead;
+    }
+
+    /**
+     * Copies the MTI and the fields {@link #fields} lists into a new message, so the rest of
+     * a lazily decoded request never has to be parsed.
+     */
+    public Iso8583Message extract(Iso8583Message request) {
+        Iso8583Message copy = new Iso8583Message();
+        String mti = request.getMti();
+        copy.setMti(mti);
+        copy.copyFields(request, fields(mti));
+        return copy;
+    }
+
+    /**
+     * @return the MTI as a number from 0 to 9999, or -1 if it is not four digits
+     */
+    public static int index(String mti) {
+        if (mti == null || mti.length() != 4) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            char c = mti.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * @return the response MTI for a request or advice MTI (0200 to 0210, 0420 to 0430), or
+     *         null if {@code mti} is not a request
+     */
+    public static String responseMti(String mti) {
+        int index = index(mti);
+        if (index < 0 || (index / 10) % 2 != 0) {
+            return null;
+        }
+        return Digits.zeroPad(index + 10, 4);
+    }
+
+    private int[] fieldsFor(String mti, int[] declared) {
+        BitSet set = new BitSet(Iso8583Message.MAX_FIELD + 1);
+        for (int fieldNumber : declared) {
+            set.set(fieldNumber);
+        }
+        for (int fieldNumber : alwaysRead) {
+            set.set(fieldNumber);
+        }
+        MtiRule rule = rules.getMtiRule(mti);
+        List<Integer> required = rule != null ? rule.getRequiredFields() : null;
+        if (required != null) {
+            required.forEach(set::set);
+        }
+        return set.stream().filter(Iso8583Message::isValidFieldNumber).toArray();
+    }
+}
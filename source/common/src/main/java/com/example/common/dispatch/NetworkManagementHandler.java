@@ -0,0 +1,46 @@
+package com.example.common.dispatch;
+
+import com.example.common.model.Iso8583Message;
+import com.example.common.response.ResponseTemplate;
+
+/**
+ * Link-level messages: network management (0800 to 0810, 0820 to 0830, e.g. echo tests and
+ * sign-on) and reconciliation (0500 to 0510, 0520 to 0530). All are acknowledged with our
+ * own transmission and local date/time.
+ */
+public class NetworkManagementHandler implements MtiHandler {
+
+    private static final ResponseTemplate NETWORK_MANAGEMENT = acknowledgement("0810", 11, 70);
+    private static final ResponseTemplate NETWORK_MANAGEMENT_ADVICE = acknowledgement("0830", 11);
+    private static final ResponseTemplate RECONCILIATION = acknowledgement("0510", 11, 70);
+    private static final ResponseTemplate RECONCILIATION_ADVICE = acknowledgement("0530", 11);
+
+    @Override
+    public String[] mtis() {
+        return new String[]{"0500", "0520", "0800", "0820"};
+    }
+
+    @Override
+    public int[] fields() {
+        return new int[]{7, 11, 70};
+    }
+
+    @Override
+    public Iso8583Message handle(Iso8583Message request) {
+        return switch (request.getMti()) {
+            case "0500" -> RECONCILIATION.respond(request);
+            case "0520" -> RECONCILIATION_ADVICE.respond(request);
+            case "0820" -> NETWORK_MANAGEMENT_ADVICE.respond(request);
+            default -> NETWORK_MANAGEMENT.respond(request);
+        };
+    }
+
+    private static ResponseTemplate acknowledgement(String mti, int... echo) {
+        return ResponseTemplate.builder(mti)
+                .echo(echo)
+                .transmissionDateTime()
+                .localDateTime()
+                .set(39, "00")
+                .build();
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.common.dispatch;
+
+import com.example.common.model.Iso8583Message;
+import com.example.common.response.ResponseTemplate;
+
+import java.util.function.Consumer;
+
+/**
+ * Reversal requests (0400 to 0410) and reversal advices (0420 to 0430). Each reversal is
+ * passed to a listener, e.g. to undo the original authorization, and then acknowledged.
+ */
+public class ReversalHandler implements MtiHandler {
+
+    private static final ResponseTemplate REVERSAL = ResponseTemplate.builder("0410")
+            .echo(2, 3, 4, 7, 11, 12, 13, 37, 41, 42, 49, 90)
+            .set(39, "00")
+            .build();
+
+    private static final ResponseTemplate REVERSAL_ADVICE = ResponseTemplate.builder("0430")
+            .echo(7, 11, 12, 13, 37)
+            .set(39, "00")
+            .build();
+
+    private final Consumer<Iso8583Message> listener;
+
+    public ReversalHandler() {
+        this(reversal -> { });
+    }
+
+    public ReversalHandler(Consumer<Iso8583Message> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public String[] mtis() {
+        return new String[]{"0400", "0420"};
+    }
+
+    @Override
+    public int[] fields() {
+        return new int[]{2, 3, 4, 7, 11, 12, 13, 37, 41, 42, 49, 90};
+    }
+
+    @Override
+    public Iso8583Message handle(Iso8583Message request) {
+        listener.accept(request);
+        return ("0400".equals(request.getMti()) ? REVERSAL : REVERSAL_ADVICE).respond(request);
+    }
+}
@@ -1,41 +1,202 @@
 package com.example.common.model;
 
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
+/**
+ * An ISO 8583 message. Fields 1-128 live in a flat array indexed by field number, with a
+ * two-word presence bitmap so iteration and {@link #toString()} come out in ascending order.
+ */
 public class Iso8583Message {
+    public static final int MAX_FIELD = 128;
+
     private String mti;
-    private Map<Integer, String> fields = new HashMap<>();
-    
+    private final String[] values = new String[MAX_FIELD + 1];
+    private long presentLow;
+    private long presentHigh;
+    private Map<Integer, String> fieldsView;
+
+    /**
+     * Receives one present field at a time, in ascending field order.
+     */
+    @FunctionalInterface
+    public interface FieldConsumer {
+        void accept(int fieldNumber, String value);
+    }
+
+    public static boolean isValidFieldNumber(int fieldNumber) {
+        return fieldNumber >= 1 && fieldNumber <= MAX_FIELD;
+    }
+
     public void setMti(String mti) {
         this.mti = mti;
     }
-    
+
     public String getMti() {
         return mti;
     }
-    
+
+    /**
+     * Sets a field, replacing any previous value. A {@code null} value removes the field.
+     *
+     * @throws IllegalArgumentException if the field number is outside 1-128
+     */
     public void addField(int fieldNumber, String value) {
-        fields.put(fieldNumber, value);
+        if (!isValidFieldNumber(fieldNumber)) {
+            throw new IllegalArgumentException("Invalid field number: " + fieldNumber);
+        }
+        if (value == null) {
+            removeField(fieldNumber);
+            return;
+        }
+        values[fieldNumber] = value;
+        if (fieldNumber <= 64) {
+            presentLow |= 1L << (fieldNumber - 1);
+        } else {
+            presentHigh |= 1L << (fieldNumber - 65);
+        }
     }
-    
+
     public String getField(int fieldNumber) {
-        return fields.get(fieldNumber);
+        return isValidFieldNumber(fieldNumber) ? values[fieldNumber] : null;
+    }
+
+    public boolean hasField(int fieldNumber) {
+        return getField(fieldNumber) != null;
+    }
+
+    public String removeField(int fieldNumber) {
+        if (!isValidFieldNumber(fieldNumber)) {
+            return null;
+        }
+        String previous = values[fieldNumber];
+        values[fieldNumber] = null;
+        if (fieldNumber <= 64) {
+            presentLow &= ~(1L << (fieldNumber - 1));
+        } else {
+            presentHigh &= ~(1L << (fieldNumber - 65));
+        }
+        return previous;
+    }
+
+    public int getFieldCount() {
+        return Long.bitCount(presentLow) + Long.bitCount(presentHigh);
+    }
+
+    /**
+     * Copies the listed fields from {@code source}, skipping the ones it does not carry.
+     */
+    public void copyFields(Iso8583Message source, int... fieldNumbers) {
+        for (int fieldNumber : fieldNumbers) {
+            String value = source.getField(fieldNumber);
+            if (value != null) {
+                addField(fieldNumber, value);
+            }
+        }
+    }
+
+    public void forEachField(FieldConsumer consumer) {
+        for (long word = presentLow; word != 0; word &= word - 1) {
+            int fieldNumber = Long.numberOfTrailingZeros(word) + 1;
+            consumer.accept(fieldNumber, values[fieldNumber]);
+        }
+        for (long word = presentHigh; word != 0; word &= word - 1) {
+            int fieldNumber = Long.numberOfTrailingZeros(word) + 65;
+            consumer.accept(fieldNumber, values[fieldNumber]);
+        }
+    }
+
+    /**
+     * Returns the first present field after {@code fieldNumber}, or -1 if there is none.
+     */
+    public int nextField(int fieldNumber) {
+        int from = Math.max(fieldNumber, 0);
+        if (from < 64) {
+            long word = presentLow & (-1L << from);
+            if (word != 0) {
+                return Long.numberOfTrailingZeros(word) + 1;
+            }
+            from = 64;
+        }
+        if (from < MAX_FIELD) {
+            long word = presentHigh & (-1L << (from - 64));
+            if (word != 0) {
+                return Long.numberOfTrailingZeros(word) + 65;
+            }
+        }
+        return -1;
     }
-    
+
+    /**
+     * Read-only view of the present fields in ascending order, kept for callers that want a Map.
+     */
     public Map<Integer, String> getFields() {
-        return fields;
+        if (fieldsView == null) {
+            fieldsView = new FieldsView();
+        }
+        return fieldsView;
     }
-    
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append(mti);
-        
-        for (Map.Entry<Integer, String> entry : fields.entrySet()) {
-            sb.append("|").append(entry.getKey()).append("=").append(entry.getValue());
-        }
-        
+        forEachField((fieldNumber, value) -> sb.append('|').append(fieldNumber).append('=').append(value));
         return sb.toString();
     }
-}
\ No newline at end of file
+
+    private final class FieldsView extends AbstractMap<Integer, String> {
+        private final Set<Map.Entry<Integer, String>> entries = new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<Integer, String>> iterator() {
+                return new Iterator<>() {
+                    private int next = nextField(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return next != -1;
+                    }
+
+                    @Override
+                    public Map.Entry<Integer, String> next() {
+                        if (next == -1) {
+                            throw new NoSuchElementException();
+                        }
+                        int fieldNumber = next;
+                        next = nextField(fieldNumber);
+                        return new AbstractMap.SimpleImmutableEntry<>(fieldNumber, getField(fieldNumber));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return getFieldCount();
+            }
+        };
+
+        @Override
+        public Set<Map.Entry<Integer, String>> entrySet() {
+            return entries;
+        }
+
+        @Override
+        public String get(Object key) {
+            return key instanceof Integer ? getField((Integer) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Integer && hasField((Integer) key);
+        }
+
+        @Override
+        public int size() {
+            return getFieldCount();
+        }
+    }
+}
@@ -1,23 +1,54 @@
 package com.example.common.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class ValidationResult {
+    private static final ValidationResult VALID = new ValidationResult(true);
+
+    private final boolean shared;
     private boolean valid;
     private List<String> errors;
 
     public ValidationResult() {
+        this(false);
+    }
+
+    private ValidationResult(boolean shared) {
+        this.shared = shared;
         this.valid = true;
-        this.errors = new ArrayList<>();
+    }
+
+    /**
+     * The shared result for messages that passed validation. It cannot be modified.
+     */
+    public static ValidationResult valid() {
+        return VALID;
     }
 
     public boolean isValid() { return valid; }
-    public void setValid(boolean valid) { this.valid = valid; }
+    public void setValid(boolean valid) {
+        checkNotShared();
+        this.valid = valid;
+    }
+
+    public List<String> getErrors() {
+        return errors != null ? errors : Collections.emptyList();
+    }
 
-    public List<String> getErrors() { return errors; }
-    public void addError(String error) { 
+    public void addError(String error) {
+        checkNotShared();
+        if (errors == null) {
+            errors = new ArrayList<>(2);
+        }
         this.errors.add(error);
         this.valid = false;
     }
-}
\ No newline at end of file
+
+    private void checkNotShared() {
+        if (shared) {
+            throw new UnsupportedOperationException("The shared valid result is immutable");
+        }
+    }
+}
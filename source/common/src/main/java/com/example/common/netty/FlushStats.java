@@ -0,0 +1,51 @@
+package com.example.common.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the flushes that reach the socket and the bytes written to it, so the effect of flush
+ * consolidation shows up as bytes per flush. One instance is shared by all channels of an
+ * endpoint and must be the first handler in each pipeline.
+ */
+@ChannelHandler.Sharable
+public class FlushStats extends ChannelOutboundHandlerAdapter {
+
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof ByteBuf buf) {
+            bytes.add(buf.readableBytes());
+        } else if (msg instanceof ByteBufHolder holder) {
+            bytes.add(holder.content().readableBytes());
+        }
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        flushes.increment();
+        ctx.flush();
+    }
+
+    public long getFlushCount() {
+        return flushes.sum();
+    }
+
+    public long getByteCount() {
+        return bytes.sum();
+    }
+
+    public double getBytesPerFlush() {
+        long count = flushes.sum();
+        return count > 0 ? (double) bytes.sum() / count : 0;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.common.netty;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * The socket transport used by our Netty bootstraps: native epoll on Linux when the native
+ * library loads, plain NIO everywhere else. Event loop groups and channel classes must come
+ * from the same transport.
+ */
+public enum NettyTransport {
+    EPOLL {
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads, String threadNamePrefix) {
+            return new EpollEventLoopGroup(threads, new DefaultThreadFactory(threadNamePrefix, true));
+        }
+
+        @Override
+        public Class<? extends SocketChannel> socketChannelClass() {
+            return EpollSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends ServerSocketChannel> serverSocketChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+
+        @Override
+        public boolean supportsReusePort() {
+            return true;
+        }
+
+        @Override
+        public ServerBootstrap enableReusePort(ServerBootstrap bootstrap) {
+            return bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+    },
+    NIO {
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads, String threadNamePrefix) {
+            return new NioEventLoopGroup(threads, new DefaultThreadFactory(threadNamePrefix, true));
+        }
+
+        @Override
+        public Class<? extends SocketChannel> socketChannelClass() {
+            return NioSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends ServerSocketChannel> serverSocketChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+    };
+
+    /**
+     * @param preferNative use epoll if it is available on this host
+     */
+    public static NettyTransport select(boolean preferNative) {
+        if (preferNative && Epoll.isAvailable()) {
+            return EPOLL;
+        }
+        if (preferNative) {
+            System.out.println("ℹ️ Native epoll transport unavailable, using NIO: " + Epoll.unavailabilityCause());
+        }
+        return NIO;
+    }
+
+    /**
+     * @param threads number of event loops, 0 for Netty's default of twice the core count
+     */
+    public abstract EventLoopGroup newEventLoopGroup(int threads, String threadNamePrefix);
+
+    public abstract Class<? extends SocketChannel> socketChannelClass();
+
+    public abstract Class<? extends ServerSocketChannel> serverSocketChannelClass();
+
+    /**
+     * Whether several listeners can bind the same port and have the kernel spread accepts
+     * across them (SO_REUSEPORT).
+     */
+    public boolean supportsReusePort() {
+        return false;
+    }
+
+    /**
+     * @throws UnsupportedOperationException if {@link #supportsReusePort()} is false
+     */
+    public ServerBootstrap enableReusePort(ServerBootstrap bootstrap) {
+        throw new UnsupportedOperationException("SO_REUSEPORT needs the epoll transport");
+    }
+}
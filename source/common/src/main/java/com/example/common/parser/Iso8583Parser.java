@@ -21,7 +21,7 @@ public class Iso8583Parser {
                         try {
                             int fieldNumber = Integer.parseInt(fieldValue[0].substring(1));
                             msg.addField(fieldNumber, fieldValue[1]);
-                        } catch (NumberFormatException e) {
+                        } catch (IllegalArgumentException e) {
                             System.err.println("⚠️ Invalid field number: " + fieldValue[0]);
                         }
                     }
@@ -37,7 +37,7 @@ public class Iso8583Parser {
                     try {
                         int fieldNumber = Integer.parseInt(fieldValue[0]);
                         msg.addField(fieldNumber, fieldValue[1]);
-                    } catch (NumberFormatException e) {
+                    } catch (IllegalArgumentException e) {
                         System.err.println("⚠️ Invalid field number: " + fieldValue[0]);
                     }
                 }
@@ -50,4 +50,15 @@ public class Iso8583Parser {
     public static ValidationResult validateMessage(Iso8583Message message) {
         return validator.validate(message);
     }
+
+    public static ValidationResult validateMessage(Iso8583Message message, boolean failFast) {
+        return validator.validate(message, failFast);
+    }
+
+    /**
+     * Validates only the format of {@code fields}; see {@link Iso8583Validator#validate(Iso8583Message, int[], boolean)}.
+     */
+    public static ValidationResult validateMessage(Iso8583Message message, int[] fields, boolean failFast) {
+        return validator.validate(message, fields, failFast);
+    }
 }
\ No newline at end of file
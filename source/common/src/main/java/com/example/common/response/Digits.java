@@ -0,0 +1,50 @@
+package com.example.common.response;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Zero-padded numeric field values without {@code String.format}, and the approval codes
+ * (field 38) built from them. Random values come from {@link ThreadLocalRandom}, so concurrent
+ * callers never contend on a shared generator.
+ */
+public final class Digits {
+
+    private Digits() {
+    }
+
+    /**
+     * @return {@code value} as exactly {@code width} digits, left-padded with zeros and keeping
+     *         the low-order digits if it is longer
+     * @throws IllegalArgumentException if {@code value} is negative
+     */
+    public static String zeroPad(long value, int width) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        char[] digits = new char[width];
+        for (int i = width - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(digits);
+    }
+
+    /**
+     * @return {@code width} random digits
+     */
+    public static String random(int width) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] digits = new char[width];
+        for (int i = 0; i < width; i++) {
+            digits[i] = (char) ('0' + random.nextInt(10));
+        }
+        return new String(digits);
+    }
+
+    /**
+     * @return a six-digit approval code for field 38
+     */
+    public static String approvalCode() {
+        return random(6);
+    }
+}
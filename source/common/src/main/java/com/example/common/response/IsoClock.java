@@ -0,0 +1,87 @@
+package com.example.common.response;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+/**
+ * The date/time fields of outgoing messages, formatted once per second instead of per message:
+ * field 7 (MMddHHmmss), field 12 (HHmmss) and field 13 (MMdd), in the clock's time zone.
+ * Readers on any thread share the same strings until the second changes.
+ */
+public final class IsoClock {
+
+    private static final IsoClock SYSTEM = new IsoClock(Clock.systemDefaultZone());
+
+    private final Clock clock;
+    private volatile Snapshot current;
+
+    public IsoClock(Clock clock) {
+        this.clock = clock;
+        this.current = snapshot(Math.floorDiv(clock.millis(), 1000L));
+    }
+
+    /**
+     * The clock in the JVM's default time zone.
+     */
+    public static IsoClock system() {
+        return SYSTEM;
+    }
+
+    /** Field 7, transmission date and time. */
+    public String transmissionDateTime() {
+        return current().transmissionDateTime;
+    }
+
+    /** Field 12, local transaction time. */
+    public String localTime() {
+        return current().localTime;
+    }
+
+    /** Field 13, local transaction date. */
+    public String localDate() {
+        return current().localDate;
+    }
+
+    private Snapshot current() {
+        long second = Math.floorDiv(clock.millis(), 1000L);
+        Snapshot snapshot = current;
+        if (snapshot.second != second) {
+            // Racing threads may both format the new second; either result is correct
+            snapshot = snapshot(second);
+            current = snapshot;
+        }
+        return snapshot;
+    }
+
+    private Snapshot snapshot(long second) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochSecond(second), clock.getZone());
+        char[] digits = new char[10];
+        put(digits, 0, time.getMonthValue());
+        put(digits, 2, time.getDayOfMonth());
+        put(digits, 4, time.getHour());
+        put(digits, 6, time.getMinute());
+        put(digits, 8, time.getSecond());
+        String transmission = new String(digits);
+        return new Snapshot(second, transmission, transmission.substring(4), transmission.substring(0, 4));
+    }
+
+    private static void put(char[] digits, int offset, int twoDigitValue) {
+        digits[offset] = (char) ('0' + twoDigitValue / 10);
+        digits[offset + 1] = (char) ('0' + twoDigitValue % 10);
+    }
+
+    private static final class Snapshot {
+        final long second;
+        final String transmissionDateTime;
+        final String localTime;
+        final String localDate;
+
+        Snapshot(long second, String transmissionDateTime, String localTime, String localDate) {
+            this.second = second;
+            this.transmissionDateTime = transmissionDateTime;
+            this.localTime = localTime;
+            this.localDate = localDate;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.common.response;
+
+import com.example.common.model.Iso8583Message;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * How to answer one kind of request: the response MTI, the request fields echoed back, fixed
+ * field values, and which fields take the current time or a fresh approval code. Everything is
+ * resolved when the template is built, so {@link #respond} only copies values into a new message.
+ * <pre>
+ * ResponseTemplate approved = ResponseTemplate.builder("0210")
+ *         .echo(2, 3, 4, 7, 11, 37)
+ *         .approvalCode()
+ *         .set(39, "00")
+ *         .build();
+ * </pre>
+ */
+public final class ResponseTemplate {
+
+    private final String mti;
+    private final int[] echoFields;
+    private final int[] fixedFields;
+    private final String[] fixedValues;
+    private final boolean transmissionTime;
+    private final boolean localTime;
+    private final boolean localDate;
+    private final boolean approvalCode;
+    private final IsoClock clock;
+
+    private ResponseTemplate(Builder builder) {
+        this.mti = builder.mti;
+        this.echoFields = builder.echoFields;
+        this.fixedFields = builder.fixedFields.stream().mapToInt(Integer::intValue).toArray();
+        this.fixedValues = builder.fixedValues.toArray(new String[0]);
+        this.transmissionTime = builder.transmissionTime;
+        this.localTime = builder.localTime;
+        this.localDate = builder.localDate;
+        this.approvalCode = builder.approvalCode;
+        this.clock = builder.clock;
+    }
+
+    public static Builder builder(String responseMti) {
+        return new Builder(responseMti);
+    }
+
+    /**
+     * Builds the response to {@code request}. Echoed fields the request does not carry are left out.
+     */
+    public Iso8583Message respond(Iso8583Message request) {
+        Iso8583Message response = new Iso8583Message();
+        response.setMti(mti);
+        response.copyFields(request, echoFields);
+        if (transmissionTime) {
+            response.addField(7, clock.transmissionDateTime());
+        }
+        if (localTime) {
+            response.addField(12, clock.localTime());
+        }
+        if (localDate) {
+            response.addField(13, clock.localDate());
+        }
+        if (approvalCode) {
+            response.addField(38, Digits.approvalCode());
+        }
+        for (int i = 0; i < fixedFields.length; i++) {
+            response.addField(fixedFields[i], fixedValues[i]);
+        }
+        return response;
+    }
+
+    public String getMti() {
+        return mti;
+    }
+
+    @Override
+    public String toString() {
+        return "ResponseTemplate{" + mti + ", echo=" + Arrays.toString(echoFields) + "}";
+    }
+
+    public static final class Builder {
+        private final String mti;
+        private int[] echoFields = new int[0];
+        private final List<Integer> fixedFields = new ArrayList<>();
+        private final List<String> fixedValues = new ArrayList<>();
+        private boolean transmissionTime;
+        private boolean localTime;
+        private boolean localDate;
+        private boolean approvalCode;
+        private IsoClock clock = IsoClock.system();
+
+        private Builder(String mti) {
+            this.mti = mti;
+        }
+
+        /** Request fields copied into the response. */
+        public Builder echo(int... fieldNumbers) {
+            for (int fieldNumber : fieldNumbers) {
+                if (!Iso8583Message.isValidFieldNumber(fieldNumber)) {
+                    throw new IllegalArgumentException("Invalid field number: " + fieldNumber);
+                }
+            }
+            this.echoFields = fieldNumbers.clone();
+            return this;
+        }
+
+        /** A value every response carries, e.g. a response code. Applied after echoed fields. */
+        public Builder set(int fieldNumber, String value) {
+            if (!Iso8583Message.isValidFieldNumber(fieldNumber)) {
+                throw new IllegalArgumentException("Invalid field number: " + fieldNumber);
+            }
+            fixedFields.add(fieldNumber);
+            fixedValues.add(value);
+            return this;
+        }
+
+        /** Field 7 set to the current transmission date and time. */
+        public Builder transmissionDateTime() {
+            this.transmissionTime = true;
+            return this;
+        }
+
+        /** Fields 12 and 13 set to the current local time and date. */
+        public Builder localDateTime() {
+            this.localTime = true;
+            this.localDate = true;
+            return this;
+        }
+
+        /** Field 38 set to a fresh approval code. */
+        public Builder approvalCode() {
+            this.approvalCode = true;
+            return this;
+        }
+
+        public Builder clock(IsoClock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public ResponseTemplate build() {
+            return new ResponseTemplate(this);
+        }
+    }
+}
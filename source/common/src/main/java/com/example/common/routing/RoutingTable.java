@@ -0,0 +1,194 @@
+package com.example.common.routing;
+
+import com.example.common.model.Iso8583Message;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Decides which link a message goes out on, so it is not written to every connection.
+ * <p>
+ * Routes are keyed by terminal id (field 41), acquirer id (field 32) and BIN (the first digits
+ * of field 2), and are learned from the traffic each link sends us. A key can map to a group of
+ * links; one of them is picked by the message's RRN/STAN so all legs of a transaction use the
+ * same link. The most specific match wins: terminal, then acquirer, then BIN.
+ * <p>
+ * Lookups are plain {@link ConcurrentHashMap} reads of immutable groups. Groups are replaced
+ * copy-on-write, which only happens when a link shows up for a key for the first time or goes away.
+ *
+ * @param <T> the link type, e.g. a Netty channel or a connection id
+ */
+public class RoutingTable<T> {
+
+    public static final int DEFAULT_BIN_LENGTH = 6;
+
+    public enum Key {
+        TERMINAL(41),
+        ACQUIRER(32),
+        BIN(2);
+
+        private final int field;
+
+        Key(int field) {
+            this.field = field;
+        }
+
+        public int getField() {
+            return field;
+        }
+    }
+
+    private static final Key[] KEYS = Key.values();
+
+    @SuppressWarnings("unchecked")
+    private final Map<String, Object[]>[] routes = new Map[KEYS.length];
+    private final Predicate<T> isUsable;
+    private final int binLength;
+    private final LongAdder routed = new LongAdder();
+    private final LongAdder unrouted = new LongAdder();
+
+    /**
+     * @param isUsable whether a link can take writes right now; unusable group members are skipped
+     */
+    public RoutingTable(Predicate<T> isUsable) {
+        this(isUsable, DEFAULT_BIN_LENGTH);
+    }
+
+    public RoutingTable(Predicate<T> isUsable, int binLength) {
+        for (int i = 0; i < routes.length; i++) {
+            routes[i] = new ConcurrentHashMap<>();
+        }
+        this.isUsable = isUsable;
+        this.binLength = binLength;
+    }
+
+    /**
+     * Records that the keys carried by a message received on {@code link} are reachable through it.
+     */
+    public void learn(Iso8583Message message, T link) {
+        for (Key key : KEYS) {
+            String value = keyValue(message, key);
+            if (value != null) {
+                bind(key, value, link);
+            }
+        }
+    }
+
+    /**
+     * Adds a link to the group for one key.
+     */
+    public void bind(Key key, String value, T link) {
+        Map<String, Object[]> table = routes[key.ordinal()];
+        Object[] group = table.get(value);
+        if (group != null && contains(group, link)) {
+            // The common case once traffic is flowing: nothing to write
+            return;
+        }
+        table.compute(value, (k, current) -> {
+            if (current == null) {
+                return new Object[]{link};
+            }
+            if (contains(current, link)) {
+                return current;
+            }
+            Object[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = link;
+            return grown;
+        });
+    }
+
+    /**
+     * @return the link to send the message on, or null if no usable route matches and the
+     *         caller should fall back to broadcasting
+     */
+    @SuppressWarnings("unchecked")
+    public T route(Iso8583Message message) {
+        for (Key key : KEYS) {
+            String value = keyValue(message, key);
+            if (value == null) {
+                continue;
+            }
+            Object[] group = routes[key.ordinal()].get(value);
+            if (group == null) {
+                continue;
+            }
+            int start = Math.floorMod(spreadKey(message), group.length);
+            for (int i = 0; i < group.length; i++) {
+                T link = (T) group[(start + i) % group.length];
+                if (isUsable.test(link)) {
+                    routed.increment();
+                    return link;
+                }
+            }
+        }
+        unrouted.increment();
+        return null;
+    }
+
+    /**
+     * Drops a link from every group, e.g. when its connection closes.
+     */
+    public void remove(T link) {
+        for (Map<String, Object[]> table : routes) {
+            table.replaceAll((value, group) -> contains(group, link) ? without(group, link) : group);
+            table.values().removeIf(group -> group.length == 0);
+        }
+    }
+
+    public int size(Key key) {
+        return routes[key.ordinal()].size();
+    }
+
+    public long getRoutedCount() {
+        return routed.sum();
+    }
+
+    public long getUnroutedCount() {
+        return unrouted.sum();
+    }
+
+    private String keyValue(Iso8583Message message, Key key) {
+        String value = message.getField(key.field);
+        if (value == null) {
+            return null;
+        }
+        if (key == Key.BIN) {
+            return value.length() >= binLength ? value.substring(0, binLength) : null;
+        }
+        // Terminal ids are space padded on the wire
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static int spreadKey(Iso8583Message message) {
+        String rrn = message.getField(37);
+        if (rrn != null) {
+            return rrn.hashCode();
+        }
+        String stan = message.getField(11);
+        return stan != null ? stan.hashCode() : 0;
+    }
+
+    private static boolean contains(Object[] group, Object link) {
+        for (Object member : group) {
+            if (member.equals(link)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Object[] without(Object[] group, Object link) {
+        Object[] remaining = new Object[group.length - 1];
+        int i = 0;
+        for (Object member : group) {
+            if (!member.equals(link)) {
+                remaining[i++] = member;
+            }
+        }
+        return remaining;
+    }
+}
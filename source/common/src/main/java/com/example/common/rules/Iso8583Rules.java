@@ -0,0 +1,79 @@
+package com.example.common.rules;
+
+import com.example.common.model.FieldRule;
+import com.example.common.model.MtiRule;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Field and MTI metadata loaded from {@code iso8583-rules.json}.
+ * Shared by the validator and the wire codecs so the file is only parsed once.
+ */
+public final class Iso8583Rules {
+    public static final String DEFAULT_RESOURCE = "iso8583-rules.json";
+
+    private final Map<Integer, FieldRule> fieldRules;
+    private final Map<String, MtiRule> mtiRules;
+
+    private Iso8583Rules(Map<Integer, FieldRule> fieldRules, Map<String, MtiRule> mtiRules) {
+        this.fieldRules = Collections.unmodifiableMap(fieldRules);
+        this.mtiRules = Collections.unmodifiableMap(mtiRules);
+    }
+
+    public static Iso8583Rules getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    public static Iso8583Rules load(String resource) {
+        try (InputStream is = Iso8583Rules.class.getClassLoader().getResourceAsStream(resource)) {
+            if (is == null) {
+                throw new IllegalStateException("Rules resource not found: " + resource);
+            }
+            ObjectMapper mapper = new ObjectMapper();
+            JsonNode root = mapper.readTree(is);
+
+            Map<Integer, FieldRule> fieldRules = new HashMap<>();
+            JsonNode fields = root.get("fields");
+            fields.fieldNames().forEachRemaining(fieldNum -> {
+                FieldRule rule = mapper.convertValue(fields.get(fieldNum), FieldRule.class);
+                fieldRules.put(Integer.parseInt(fieldNum), rule);
+            });
+
+            Map<String, MtiRule> mtiRules = new HashMap<>();
+            JsonNode mtis = root.get("mtiRules");
+            mtis.fieldNames().forEachRemaining(mti -> {
+                MtiRule rule = mapper.convertValue(mtis.get(mti), MtiRule.class);
+                mtiRules.put(mti, rule);
+            });
+
+            return new Iso8583Rules(fieldRules, mtiRules);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load ISO 8583 rules", e);
+        }
+    }
+
+    public FieldRule getFieldRule(int fieldNumber) {
+        return fieldRules.get(fieldNumber);
+    }
+
+    public Map<Integer, FieldRule> getFieldRules() {
+        return fieldRules;
+    }
+
+    public MtiRule getMtiRule(String mti) {
+        return mtiRules.get(mti);
+    }
+
+    public Map<String, MtiRule> getMtiRules() {
+        return mtiRules;
+    }
+
+    private static final class DefaultHolder {
+        private static final Iso8583Rules INSTANCE = load(DEFAULT_RESOURCE);
+    }
+}
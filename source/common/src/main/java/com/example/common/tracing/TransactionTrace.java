@@ -0,0 +1,159 @@
+package com.example.common.tracing;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Scope;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The trace of one transaction in one service, from {@link TransactionTracer#start} to
+ * {@link #end()}. A sampled transaction has a live span; any other keeps only its identity and
+ * start time, and becomes a span at {@link #end()} if it failed or was slow. Not thread-safe:
+ * a transaction is handled by one thread at a time.
+ */
+public final class TransactionTrace {
+
+    static final TransactionTrace DISABLED = new TransactionTrace();
+
+    private final TransactionTracer owner;
+    private final String spanName;
+    private final String mti;
+    private final String stan;
+    private final String rrn;
+    private final long startNanos;
+    private final long startEpochMillis;
+    private final Span span;
+    private int attributeCount;
+    private String error;
+    private boolean ended;
+
+    private TransactionTrace() {
+        this.owner = null;
+        this.spanName = null;
+        this.mti = null;
+        this.stan = null;
+        this.rrn = null;
+        this.startNanos = 0;
+        this.startEpochMillis = 0;
+        this.span = null;
+        this.ended = true;
+    }
+
+    TransactionTrace(TransactionTracer owner, String spanName, String mti, String stan, String rrn, boolean sampled) {
+        this.owner = owner;
+        this.spanName = spanName;
+        this.mti = mti;
+        this.stan = stan;
+        this.rrn = rrn;
+        this.startNanos = System.nanoTime();
+        this.startEpochMillis = System.currentTimeMillis();
+        this.span = sampled ? identify(owner.tracer().spanBuilder(spanName)).startSpan() : null;
+    }
+
+    /**
+     * @return true if this transaction has a span from the start
+     */
+    public boolean isSampled() {
+        return span != null;
+    }
+
+    /**
+     * Adds an attribute to a sampled span while the attribute budget lasts.
+     */
+    public TransactionTrace attribute(String key, String value) {
+        if (span != null && value != null && attributeCount < owner.maxAttributes()) {
+            span.setAttribute(key, value);
+            attributeCount++;
+        }
+        return this;
+    }
+
+    public TransactionTrace attribute(String key, long value) {
+        if (span != null && attributeCount < owner.maxAttributes()) {
+            span.setAttribute(key, value);
+            attributeCount++;
+        }
+        return this;
+    }
+
+    /**
+     * Marks the transaction failed; it is traced whether or not it was sampled.
+     */
+    public TransactionTrace fail(String description) {
+        this.error = description != null ? description : "error";
+        return this;
+    }
+
+    public TransactionTrace fail(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return fail(String.valueOf(cause.getMessage()));
+    }
+
+    /**
+     * Makes the span current so spans of outgoing calls become its children. A no-op for
+     * transactions that are not sampled.
+     */
+    public Scope makeCurrent() {
+        return span != null ? span.makeCurrent() : Scope.noop();
+    }
+
+    /**
+     * Convenience for {@code whenComplete}: fails the transaction if {@code error} is set, then ends it.
+     */
+    public void end(Throwable error) {
+        if (error != null) {
+            fail(error);
+        }
+        end();
+    }
+
+    public void end() {
+        if (ended) {
+            return;
+        }
+        ended = true;
+        if (span != null) {
+            setStatus(span);
+            span.end();
+            return;
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        boolean slow = owner.isSlow(elapsed);
+        if (error == null && !slow) {
+            return;
+        }
+        Span late = identify(owner.tracer().spanBuilder(spanName))
+                .setStartTimestamp(startEpochMillis, TimeUnit.MILLISECONDS)
+                .setAttribute("iso8583.trace_reason", error != null ? "error" : "slow")
+                .startSpan();
+        setStatus(late);
+        late.end(TimeUnit.MILLISECONDS.toNanos(startEpochMillis) + elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    private void setStatus(Span target) {
+        if (error != null) {
+            target.setStatus(StatusCode.ERROR, error);
+        } else {
+            target.setStatus(StatusCode.OK);
+        }
+    }
+
+    private SpanBuilder identify(SpanBuilder builder) {
+        if (mti != null) {
+            builder.setAttribute("iso8583.mti", mti);
+            attributeCount++;
+        }
+        if (stan != null) {
+            builder.setAttribute("iso8583.stan", stan);
+            attributeCount++;
+        }
+        if (rrn != null) {
+            builder.setAttribute("iso8583.rrn", rrn);
+            attributeCount++;
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.common.tracing;
+
+import com.example.common.model.Iso8583Message;
+import io.opentelemetry.api.trace.Tracer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides which transactions get a span, so tracing costs little at peak load.
+ * <ul>
+ *   <li>{@code OFF}: no spans.</li>
+ *   <li>{@code SAMPLED}: a span for a fixed share of transactions, chosen by hashing the RRN
+ *       (field 37, or the STAN without one). Every service hashes the same way, so they keep or
+ *       drop the same transactions. An optional per-second cap bounds the span rate in bursts.
+ *       Transactions that fail or take longer than the slow threshold always get a span, created
+ *       when they finish.</li>
+ *   <li>{@code FULL}: a span for every transaction.</li>
+ * </ul>
+ * Each traced transaction is one span per service, and at most {@code maxAttributes}
+ * attributes, including the MTI, STAN and RRN.
+ */
+public final class TransactionTracer {
+
+    public enum Mode {
+        OFF,
+        SAMPLED,
+        FULL
+    }
+
+    private final Tracer tracer;
+    private final Mode mode;
+    private final long ratioThreshold;
+    private final int maxPerSecond;
+    private final long slowThresholdNanos;
+    private final int maxAttributes;
+
+    private volatile long rateWindow;
+    private final AtomicInteger rateUsed = new AtomicInteger();
+
+    public TransactionTracer(Tracer tracer, Mode mode, double sampleRatio, int maxPerSecond,
+                             long slowThresholdMillis, int maxAttributes) {
+        if (sampleRatio < 0 || sampleRatio > 1) {
+            throw new IllegalArgumentException("Sample ratio must be between 0 and 1: " + sampleRatio);
+        }
+        this.tracer = tracer;
+        this.mode = mode;
+        // Compared against the top 53 bits of the key hash
+        this.ratioThreshold = (long) (sampleRatio * (1L << 53));
+        this.maxPerSecond = maxPerSecond;
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+        this.maxAttributes = maxAttributes;
+    }
+
+    /**
+     * Starts tracing one transaction. The result is never null; when the transaction is not
+     * sampled its methods do almost nothing until {@link TransactionTrace#end()}.
+     */
+    public TransactionTrace start(String spanName, Iso8583Message message) {
+        return start(spanName, message.getMti(), message.getField(11), message.getField(37));
+    }
+
+    public TransactionTrace start(String spanName, String mti, String stan, String rrn) {
+        if (mode == Mode.OFF) {
+            return TransactionTrace.DISABLED;
+        }
+        boolean sampled = mode == Mode.FULL || (isSampled(rrn != null ? rrn : stan) && tryAcquire());
+        return new TransactionTrace(this, spanName, mti, stan, rrn, sampled);
+    }
+
+    /**
+     * @return true if transactions with this key fall within the sample ratio
+     */
+    public boolean isSampled(String key) {
+        if (key == null) {
+            return false;
+        }
+        return (mix(key.hashCode()) >>> 11) < ratioThreshold;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    Tracer tracer() {
+        return tracer;
+    }
+
+    int maxAttributes() {
+        return maxAttributes;
+    }
+
+    boolean isSlow(long elapsedNanos) {
+        return slowThresholdNanos > 0 && elapsedNanos >= slowThresholdNanos;
+    }
+
+    private boolean tryAcquire() {
+        if (maxPerSecond <= 0) {
+            return true;
+        }
+        long second = System.currentTimeMillis() / 1000;
+        if (second != rateWindow) {
+            // A racing thread may reset too; a few extra spans at the boundary are harmless
+            rateWindow = second;
+            rateUsed.set(0);
+        }
+        return rateUsed.incrementAndGet() <= maxPerSecond;
+    }
+
+    // Spreads String.hashCode, which is identical on every JVM, over all 64 bits
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
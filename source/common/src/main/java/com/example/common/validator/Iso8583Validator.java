@@ -1,97 +1,173 @@
 package com.example.common.validator;
 
 import com.example.common.model.*;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.common.rules.Iso8583Rules;
 
-import java.io.InputStream;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Validates messages against {@link Iso8583Rules}. The rules are compiled once into a table
+ * indexed by field number, so a valid message is checked without regexes or allocations.
+ */
 public class Iso8583Validator {
-    private Map<Integer, FieldRule> fieldRules;
-    private Map<String, MtiRule> mtiRules;
+    private final FieldCheck[] fieldChecks = new FieldCheck[Iso8583Message.MAX_FIELD + 1];
+    private final Map<String, int[]> requiredFields = new HashMap<>();
 
     public Iso8583Validator() {
-        loadRules();
+        this(Iso8583Rules.getDefault());
     }
 
-    private void loadRules() {
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            InputStream is = getClass().getClassLoader().getResourceAsStream("iso8583-rules.json");
-            JsonNode root = mapper.readTree(is);
-
-            fieldRules = new HashMap<>();
-            JsonNode fields = root.get("fields");
-            fields.fieldNames().forEachRemaining(fieldNum -> {
-                FieldRule rule = mapper.convertValue(fields.get(fieldNum), FieldRule.class);
-                fieldRules.put(Integer.parseInt(fieldNum), rule);
-            });
-
-            mtiRules = new HashMap<>();
-            JsonNode mtis = root.get("mtiRules");
-            mtis.fieldNames().forEachRemaining(mti -> {
-                MtiRule rule = mapper.convertValue(mtis.get(mti), MtiRule.class);
-                mtiRules.put(mti, rule);
-            });
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to load ISO 8583 rules", e);
-        }
+    public Iso8583Validator(Iso8583Rules rules) {
+        rules.getFieldRules().forEach((fieldNumber, rule) -> {
+            if (Iso8583Message.isValidFieldNumber(fieldNumber)) {
+                fieldChecks[fieldNumber] = new FieldCheck(fieldNumber, rule);
+            }
+        });
+        rules.getMtiRules().forEach((mti, rule) -> {
+            List<Integer> required = rule.getRequiredFields();
+            requiredFields.put(mti, required == null
+                    ? new int[0]
+                    : required.stream().mapToInt(Integer::intValue).toArray());
+        });
     }
 
     public ValidationResult validate(Iso8583Message message) {
-        ValidationResult result = new ValidationResult();
+        return validate(message, false);
+    }
 
+    /**
+     * @param failFast stop at the first error instead of collecting all of them
+     */
+    public ValidationResult validate(Iso8583Message message, boolean failFast) {
+        return validate(message, null, failFast);
+    }
+
+    /**
+     * Like {@link #validate(Iso8583Message, boolean)}, but only checks the format of the listed
+     * fields, so a lazily decoded message only decodes those. Required fields are still checked
+     * for presence.
+     *
+     * @param fields the fields to check, or null for every field present
+     */
+    public ValidationResult validate(Iso8583Message message, int[] fields, boolean failFast) {
         // Validate MTI
         String mti = message.getMti();
         if (mti == null || mti.length() != 4) {
-            result.addError("Invalid MTI format");
-            return result;
+            return invalid("Invalid MTI format");
         }
 
-        MtiRule mtiRule = mtiRules.get(mti);
-        if (mtiRule == null) {
-            result.addError("Unknown MTI: " + mti);
-            return result;
+        int[] required = requiredFields.get(mti);
+        if (required == null) {
+            return invalid("Unknown MTI: " + mti);
         }
 
+        ValidationResult result = null;
+
         // Check required fields
-        for (Integer requiredField : mtiRule.getRequiredFields()) {
-            if (!message.getFields().containsKey(requiredField)) {
-                result.addError("Missing required field: " + requiredField);
+        for (int fieldNumber : required) {
+            if (!message.hasField(fieldNumber)) {
+                result = addError(result, "Missing required field: " + fieldNumber);
+                if (failFast) {
+                    return result;
+                }
             }
         }
 
         // Validate field formats
-        for (Map.Entry<Integer, String> entry : message.getFields().entrySet()) {
-            Integer fieldNum = entry.getKey();
-            String value = entry.getValue();
-            FieldRule rule = fieldRules.get(fieldNum);
-
-            if (rule != null) {
-                validateField(fieldNum, value, rule, result);
+        if (fields == null) {
+            for (int fieldNumber = message.nextField(0); fieldNumber != -1; fieldNumber = message.nextField(fieldNumber)) {
+                result = validateField(message, fieldNumber, result, failFast);
+                if (failFast && result != null) {
+                    return result;
+                }
+            }
+        } else {
+            for (int fieldNumber : fields) {
+                if (message.hasField(fieldNumber)) {
+                    result = validateField(message, fieldNumber, result, failFast);
+                    if (failFast && result != null) {
+                        return result;
+                    }
+                }
             }
         }
 
+        return result != null ? result : ValidationResult.valid();
+    }
+
+    private ValidationResult validateField(Iso8583Message message, int fieldNumber, ValidationResult result, boolean failFast) {
+        FieldCheck check = fieldChecks[fieldNumber];
+        return check != null ? check.validate(message.getField(fieldNumber), result, failFast) : result;
+    }
+
+    private static ValidationResult invalid(String error) {
+        ValidationResult result = new ValidationResult();
+        result.addError(error);
         return result;
     }
 
-    private void validateField(Integer fieldNum, String value, FieldRule rule, ValidationResult result) {
-        // Validate type
-        if ("NUMERIC".equals(rule.getType()) && !value.matches("\\d+")) {
-            result.addError("Field " + fieldNum + " must be numeric");
+    private static ValidationResult addError(ValidationResult result, String error) {
+        if (result == null) {
+            result = new ValidationResult();
         }
+        result.addError(error);
+        return result;
+    }
 
-        // Validate length
-        if ("FIXED".equals(rule.getFormat()) && rule.getLength() != null) {
-            if (value.length() != rule.getLength()) {
-                result.addError("Field " + fieldNum + " must be exactly " + rule.getLength() + " characters");
+    private static boolean isDigits(String value) {
+        int length = value.length();
+        if (length == 0) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
             }
         }
+        return true;
+    }
+
+    /**
+     * One field rule with its string comparisons resolved up front.
+     */
+    private static final class FieldCheck {
+        private final int fieldNumber;
+        private final boolean numeric;
+        private final int exactLength;
+        private final int maxLength;
+
+        FieldCheck(int fieldNumber, FieldRule rule) {
+            this.fieldNumber = fieldNumber;
+            this.numeric = "NUMERIC".equals(rule.getType());
+            this.exactLength = "FIXED".equals(rule.getFormat()) && rule.getLength() != null ? rule.getLength() : -1;
+            this.maxLength = rule.getMaxLength() != null ? rule.getMaxLength() : Integer.MAX_VALUE;
+        }
+
+        ValidationResult validate(String value, ValidationResult result, boolean failFast) {
+            // Validate type
+            if (numeric && !isDigits(value)) {
+                result = addError(result, "Field " + fieldNumber + " must be numeric");
+                if (failFast) {
+                    return result;
+                }
+            }
 
-        if (rule.getMaxLength() != null && value.length() > rule.getMaxLength()) {
-            result.addError("Field " + fieldNum + " exceeds maximum length of " + rule.getMaxLength());
+            // Validate length
+            int length = value.length();
+            if (exactLength >= 0 && length != exactLength) {
+                result = addError(result, "Field " + fieldNumber + " must be exactly " + exactLength + " characters");
+                if (failFast) {
+                    return result;
+                }
+            }
+
+            if (length > maxLength) {
+                result = addError(result, "Field " + fieldNumber + " exceeds maximum length of " + maxLength);
+            }
+            return result;
         }
     }
-}
\ No newline at end of file
+}
@@ -7,9 +7,14 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "transactions")
 public class Transaction {
+
+    public static final String ID_SEQUENCE = "transactions_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
     
+    // Pooled-lo: one sequence call reserves a block of ID_ALLOCATION_SIZE ids, so inserts can be batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
     
     @Column(name = "source_number", length = 20)
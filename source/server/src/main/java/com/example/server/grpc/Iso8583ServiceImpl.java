@@ -3,38 +3,111 @@ package com.example.server.grpc;
 import com.example.simulator.grpc.Iso8583Proto;
 import com.example.simulator.grpc.Iso8583ServiceGrpc;
 import com.example.server.server.Iso8583Server;
+import com.example.common.dedup.DuplicateDetector;
 import com.example.common.model.Iso8583Message;
 import com.example.common.model.ValidationResult;
 import com.example.common.parser.Iso8583Parser;
 import com.example.server.entity.Transaction;
 import com.example.server.entity.TransactionEvent;
-import com.example.server.repository.TransactionRepository;
-import com.example.server.repository.TransactionEventRepository;
+import com.example.server.service.TransactionWriteBehind;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 public class Iso8583ServiceImpl extends Iso8583ServiceGrpc.Iso8583ServiceImplBase {
     
     @Autowired(required = false)
-    private TransactionRepository transactionRepository;
-    
-    @Autowired(required = false)
-    private TransactionEventRepository eventRepository;
+    private TransactionWriteBehind writeBehind;
     
     @Value("${iso8583.database.write.enabled:true}")
     private boolean databaseWriteEnabled;
+
+    // Requests a streaming caller may have in flight before the first response goes out
+    @Value("${iso8583.grpc.stream-prefetch:64}")
+    private int streamPrefetch;
+
+    @Value("${iso8583.duplicates.capacity:100000}")
+    private int duplicateCapacity;
+
+    @Value("${iso8583.duplicates.window-ms:60000}")
+    private long duplicateWindowMillis;
+
+    // Simulator retries of a transaction already forwarded are acknowledged, not sent again
+    private DuplicateDetector duplicates;
     
     public Iso8583ServiceImpl() {
         System.out.println("✅ Iso8583ServiceImpl created");
     }
 
+    @PostConstruct
+    public void init() {
+        duplicates = duplicateCapacity > 0 ? new DuplicateDetector(duplicateCapacity, duplicateWindowMillis) : null;
+    }
+
     @Override
     public void sendTransaction(Iso8583Proto.TransactionRequest request, 
                                StreamObserver<Iso8583Proto.TransactionResponse> responseObserver) {
+        responseObserver.onNext(process(request));
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Many transactions over one call. Inbound messages are requested explicitly, and only
+     * while the outbound side can take the responses, so a fast sender cannot pile up
+     * unsent responses on the server.
+     */
+    @Override
+    public StreamObserver<Iso8583Proto.TransactionRequest> streamTransactions(
+            StreamObserver<Iso8583Proto.TransactionResponse> responseObserver) {
+        ServerCallStreamObserver<Iso8583Proto.TransactionResponse> serverObserver =
+                (ServerCallStreamObserver<Iso8583Proto.TransactionResponse>) responseObserver;
+        serverObserver.disableAutoRequest();
+
+        AtomicBoolean waitingForReady = new AtomicBoolean(false);
+        serverObserver.setOnReadyHandler(() -> {
+            if (serverObserver.isReady() && waitingForReady.compareAndSet(true, false)) {
+                serverObserver.request(1);
+            }
+        });
+        serverObserver.request(streamPrefetch);
+
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(Iso8583Proto.TransactionRequest request) {
+                serverObserver.onNext(process(request));
+                if (serverObserver.isReady()) {
+                    serverObserver.request(1);
+                } else {
+                    // Resume in the on-ready handler once the client drains our responses
+                    waitingForReady.set(true);
+                    if (serverObserver.isReady() && waitingForReady.compareAndSet(true, false)) {
+                        serverObserver.request(1);
+                    }
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                System.err.println("❌ gRPC stream error: " + t.getMessage());
+            }
+
+            @Override
+            public void onCompleted() {
+                serverObserver.onCompleted();
+            }
+        };
+    }
+
+    private Iso8583Proto.TransactionResponse process(Iso8583Proto.TransactionRequest request) {
         try {
             String message = request.getMessage();
             String clientId = request.getClientId();
@@ -49,44 +122,51 @@ public class Iso8583ServiceImpl extends Iso8583ServiceGrpc.Iso8583ServiceImplBas
                 throw new RuntimeException("Invalid message: " + String.join(", ", validation.getErrors()));
             }
             
-            // Save transaction to database if enabled
-            Long transactionId = null;
-            if (databaseWriteEnabled && transactionRepository != null && eventRepository != null) {
-                Transaction transaction = saveTransaction(parsedMsg);
-                transactionId = transaction.getId();
-                saveTransactionEvent(transactionId, "RECEIVED", message);
+            boolean[] forwarded = {false};
+            if (duplicates != null) {
+                duplicates.process(parsedMsg, msg -> {
+                    forward(msg, message);
+                    forwarded[0] = true;
+                    // Nothing to replay, so nothing to keep
+                    return null;
+                });
+            } else {
+                forward(parsedMsg, message);
+                forwarded[0] = true;
             }
             
-            // Send message to all connected socket clients
-            Iso8583Server.broadcastToClients(message);
-            
-            // Log broadcast event if database enabled
-            if (databaseWriteEnabled && transactionId != null && eventRepository != null) {
-                saveTransactionEvent(transactionId, "BROADCAST", message);
-            }
-            
-            Iso8583Proto.TransactionResponse response = Iso8583Proto.TransactionResponse.newBuilder()
+            return Iso8583Proto.TransactionResponse.newBuilder()
                     .setSuccess(true)
-                    .setMessage("Transaction sent to clients")
+                    .setMessage(forwarded[0] ? "Transaction sent to clients" : "Duplicate transmission, already sent to clients")
+                    .setCorrelationId(request.getCorrelationId())
                     .build();
             
-            responseObserver.onNext(response);
-            responseObserver.onCompleted();
-            
         } catch (Exception e) {
             System.err.println("❌ gRPC error: " + e.getMessage());
             
-            Iso8583Proto.TransactionResponse response = Iso8583Proto.TransactionResponse.newBuilder()
+            return Iso8583Proto.TransactionResponse.newBuilder()
                     .setSuccess(false)
                     .setMessage("Error: " + e.getMessage())
+                    .setCorrelationId(request.getCorrelationId())
                     .build();
-            
-            responseObserver.onNext(response);
-            responseObserver.onCompleted();
         }
     }
     
-    private Transaction saveTransaction(Iso8583Message msg) {
+    private void forward(Iso8583Message parsedMsg, String message) {
+        boolean persist = databaseWriteEnabled && writeBehind != null;
+        TransactionEvent received = persist ? new TransactionEvent(null, "RECEIVED", message) : null;
+        
+        // Route to the socket client that owns the terminal, or broadcast when none does
+        Iso8583Server.broadcastToClients(parsedMsg);
+        
+        // Rows are written in batches by the write-behind stage, off the gRPC thread
+        if (persist) {
+            writeBehind.submit(buildTransaction(parsedMsg),
+                    List.of(received, new TransactionEvent(null, "BROADCAST", message)));
+        }
+    }
+    
+    private Transaction buildTransaction(Iso8583Message msg) {
         String sourceNumber = msg.getField(2); // PAN
         String targetNumber = msg.getField(42); // Card acceptor ID
         String amountStr = msg.getField(4); // Transaction amount
@@ -111,11 +191,6 @@ public class Iso8583ServiceImpl extends Iso8583ServiceGrpc.Iso8583ServiceImplBas
             mti
         );
         
-        return transactionRepository.save(transaction);
-    }
-    
-    private void saveTransactionEvent(Long transactionId, String eventType, String isoMessage) {
-        TransactionEvent event = new TransactionEvent(transactionId, eventType, isoMessage);
-        eventRepository.save(event);
+        return transaction;
     }
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package com.example.server.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Accepted socket connections per listener, for spotting reconnect storms and how evenly the
+ * kernel spreads them across SO_REUSEPORT listeners.
+ */
+@Component
+public class ConnectionMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    public ConnectionMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param listener index of the listener on the shared port
+     */
+    public Counter acceptCounter(int port, int listener) {
+        return Counter.builder("iso8583.server.accepts")
+                .description("Client connections accepted")
+                .tag("port", Integer.toString(port))
+                .tag("listener", Integer.toString(listener))
+                .register(meterRegistry);
+    }
+
+    public void bindConnectedClients(Supplier<Number> connectedClients) {
+        Gauge.builder("iso8583.server.connections", connectedClients)
+                .description("Client connections currently open")
+                .register(meterRegistry);
+    }
+}
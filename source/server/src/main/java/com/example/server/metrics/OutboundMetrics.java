@@ -0,0 +1,88 @@
+package com.example.server.metrics;
+
+import com.example.common.netty.FlushStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for writes to socket clients: how they are flushed, and what happens to clients
+ * that cannot keep up.
+ */
+@Component
+public class OutboundMetrics {
+
+    private final Counter parkedMessages;
+    private final Counter droppedMessages;
+    private final Counter slowConsumerDisconnects;
+    private final Counter readPauses;
+    private final AtomicLong currentlyParked = new AtomicLong();
+    private final MeterRegistry meterRegistry;
+
+    public OutboundMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.parkedMessages = Counter.builder("iso8583.outbound.parked")
+                .description("Messages queued because the client's socket buffer was full")
+                .register(meterRegistry);
+
+        this.droppedMessages = Counter.builder("iso8583.outbound.dropped")
+                .description("Messages discarded because the client could not take them")
+                .register(meterRegistry);
+
+        this.slowConsumerDisconnects = Counter.builder("iso8583.outbound.disconnects")
+                .description("Clients disconnected for not reading their messages")
+                .register(meterRegistry);
+
+        this.readPauses = Counter.builder("iso8583.outbound.read.pauses")
+                .description("Times reading from a client was paused until it drained its responses")
+                .register(meterRegistry);
+
+        Gauge.builder("iso8583.outbound.parked.current", currentlyParked, AtomicLong::get)
+                .description("Messages currently queued for slow clients")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Exposes the socket flush counters of the client pipelines.
+     */
+    public void bindFlushStats(FlushStats flushStats) {
+        FunctionCounter.builder("iso8583.outbound.flushes", flushStats, FlushStats::getFlushCount)
+                .description("Flushes that reached client sockets")
+                .register(meterRegistry);
+
+        FunctionCounter.builder("iso8583.outbound.bytes", flushStats, FlushStats::getByteCount)
+                .description("Bytes written to client sockets")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        Gauge.builder("iso8583.outbound.bytes.per.flush", flushStats, FlushStats::getBytesPerFlush)
+                .description("Average bytes per socket flush since startup")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public void parked() {
+        parkedMessages.increment();
+        currentlyParked.incrementAndGet();
+    }
+
+    public void unparked(int count) {
+        currentlyParked.addAndGet(-count);
+    }
+
+    public void dropped() {
+        droppedMessages.increment();
+    }
+
+    public void disconnected() {
+        slowConsumerDisconnects.increment();
+    }
+
+    public void readPaused() {
+        readPauses.increment();
+    }
+}
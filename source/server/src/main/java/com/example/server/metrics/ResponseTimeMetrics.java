@@ -30,6 +30,17 @@ public class ResponseTimeMetrics {
                 .register(meterRegistry);
     }
     
+    /**
+     * Records one request/response round trip measured by the caller.
+     */
+    public void recordResponseTime(long durationNanos) {
+        responseTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    public void incrementTimeout() {
+        timeoutCounter.increment();
+    }
+    
     public void startTimer(String field37) {
         pendingRequests.put(field37, System.currentTimeMillis());
     }
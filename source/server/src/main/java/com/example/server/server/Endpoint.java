@@ -0,0 +1,61 @@
+package com.example.server.server;
+
+import com.example.common.codec.Framing;
+import com.example.common.codec.WireFormat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One listening port with its framing and wire format, parsed from
+ * {@code iso8583.server.endpoints}: comma-separated {@code port:framing[:wire-format]} entries,
+ * e.g. {@code 8583:BINARY_2,8584:ASCII_4:BINARY,8585:TPDU}.
+ */
+final class Endpoint {
+
+    final int port;
+    final Framing framing;
+    final WireFormat wireFormat;
+
+    Endpoint(int port, Framing framing, WireFormat wireFormat) {
+        this.port = port;
+        this.framing = framing;
+        this.wireFormat = wireFormat;
+    }
+
+    /**
+     * @param defaultWireFormat for entries that do not name one
+     * @throws IllegalArgumentException for malformed entries or a port listed twice
+     */
+    static List<Endpoint> parse(String spec, WireFormat defaultWireFormat) {
+        List<Endpoint> endpoints = new ArrayList<>();
+        for (String entry : spec.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            String[] parts = entry.split(":");
+            if (parts.length < 2 || parts.length > 3) {
+                throw new IllegalArgumentException("Endpoint must be port:framing[:wire-format]: " + entry);
+            }
+            int port = Integer.parseInt(parts[0].trim());
+            Framing framing = Framing.valueOf(parts[1].trim());
+            WireFormat wireFormat = parts.length == 3 ? WireFormat.valueOf(parts[2].trim()) : defaultWireFormat;
+            for (Endpoint existing : endpoints) {
+                if (existing.port == port) {
+                    throw new IllegalArgumentException("Port listed twice: " + port);
+                }
+            }
+            endpoints.add(new Endpoint(port, framing, wireFormat));
+        }
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("No endpoints configured");
+        }
+        return endpoints;
+    }
+
+    @Override
+    public String toString() {
+        return port + " " + framing + "/" + wireFormat;
+    }
+}
@@ -1,41 +1,113 @@
 package com.example.server.server;
 
+import com.example.common.codec.Iso8583Frames;
+import com.example.common.codec.Iso8583MessageDecoder;
+import com.example.common.codec.Iso8583MessageEncoder;
+import com.example.common.codec.LazyIso8583Message;
+import com.example.common.codec.WireFormat;
 import com.example.common.model.Iso8583Message;
-import com.example.common.parser.Iso8583Parser;
+import com.example.common.netty.FlushStats;
+import com.example.common.netty.NettyTransport;
+import com.example.common.routing.RoutingTable;
+import com.example.server.metrics.ConnectionMetrics;
+import com.example.server.metrics.OutboundMetrics;
 import com.example.server.service.Iso8583Processor;
 import com.example.server.service.TransactionTimer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
 
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
-import io.netty.handler.codec.LengthFieldPrepender;
-import io.netty.handler.codec.string.StringDecoder;
-import io.netty.handler.codec.string.StringEncoder;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.util.AttributeKey;
+import io.micrometer.core.instrument.Counter;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 @Component
 @Order(1)
 public class Iso8583Server {
-    private static final int PORT = 8583;
     private final AtomicBoolean running = new AtomicBoolean(false);
     private static final java.util.concurrent.ConcurrentHashMap<String, ChannelHandlerContext> connectedClients = new java.util.concurrent.ConcurrentHashMap<>();
+    // Which client link serves which terminal/acquirer/BIN, learned from what each link sends us
+    private static final RoutingTable<ChannelHandlerContext> routes = new RoutingTable<>(ctx -> ctx.channel().isActive());
     private static Iso8583Processor processor;
     private static TransactionTimer transactionTimer;
+    // Wire format of each client channel, for bodies encoded once and written to many clients
+    private static final AttributeKey<WireFormat> WIRE_FORMAT = AttributeKey.valueOf("wireFormat");
 
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
+
+    // Wire format of endpoints that do not name their own
+    @Value("${iso8583.server.wire-format:TEXT}")
+    private WireFormat wireFormat;
+
+    // One listening port per partner format, all served by the same worker loops
+    @Value("${iso8583.server.endpoints:${iso8583.server.port:8583}:BINARY_2}")
+    private String endpoints;
+
+    // Our NII, used as the TPDU source address until a partner's TPDU tells us where to reply
+    @Value("${iso8583.server.tpdu-nii:000}")
+    private String tpduNii;
+
+    @Value("${iso8583.server.worker-threads:0}")
+    private int workerThreads;
+
+    @Value("${iso8583.netty.native-transport:true}")
+    private boolean nativeTransport;
+
+    // Listening sockets bound to the port with SO_REUSEPORT (epoll only), each on its own boss loop
+    @Value("${iso8583.server.listeners:1}")
+    private int listeners;
+
+    @Value("${iso8583.server.accept-backlog:1024}")
+    private int acceptBacklog;
+
+    @Autowired
+    private ConnectionMetrics connectionMetrics;
+
+    // Per-client outbound buffer limits and what happens to frames for a client that stops reading
+    @Value("${iso8583.server.outbound.low-water-mark:32768}")
+    private int lowWaterMark;
+
+    @Value("${iso8583.server.outbound.high-water-mark:65536}")
+    private int highWaterMark;
+
+    @Value("${iso8583.server.outbound.policy:PARK}")
+    private OutboundBackpressureHandler.Policy outboundPolicy;
+
+    @Value("${iso8583.server.outbound.max-parked:1024}")
+    private int maxParked;
+
+    // Write responses during a read burst and flush once when it ends, or every max-writes-per-flush writes
+    @Value("${iso8583.netty.flush-consolidation:true}")
+    private boolean flushConsolidation;
+
+    @Value("${iso8583.netty.max-writes-per-flush:256}")
+    private int maxWritesPerFlush;
+
+    @Autowired
+    private OutboundMetrics outboundMetrics;
+
+    @Autowired
+    private MessageDispatcher dispatcher;
+
+    private final FlushStats flushStats = new FlushStats();
     
     @Autowired
     public void setProcessor(Iso8583Processor processor) {
@@ -47,35 +119,63 @@ public class Iso8583Server {
         Iso8583Server.transactionTimer = timer;
     }
     
-    public static void broadcastToClients(String message) {
-        // Parse message to get field 37 for tracking
-        Iso8583Message parsedMsg = Iso8583Parser.parseMessage(message);
-        String field37 = parsedMsg.getField(37);
+    /**
+     * Sends a message to the client that serves its terminal, acquirer or BIN. Only messages
+     * without a known route are broadcast to every connected client. The message body is
+     * encoded once per wire format; each channel adds the headers of its own framing.
+     */
+    public static void broadcastToClients(Iso8583Message message) {
+        String field37 = message.getField(37);
         
-        if ("0200".equals(parsedMsg.getMti()) && field37 != null && transactionTimer != null) {
+        if ("0200".equals(message.getMti()) && field37 != null && transactionTimer != null) {
             transactionTimer.startTimer(field37);
             System.out.println("⏱️ Started timer for request with field37: " + field37);
         }
         
-        connectedClients.values().forEach(ctx -> {
-            if (ctx.channel().isActive()) {
-                String clientAddress = ctx.channel().remoteAddress().toString();
-                System.out.println("📤 [" + clientAddress + "] Broadcasting: " + message);
-                ctx.writeAndFlush(message).addListener(f -> {
-                    if (!f.isSuccess()) {
-                        System.err.println("❌ [" + clientAddress + "] Broadcast error: " + f.cause().getMessage());
-                    }
-                });
+        ChannelHandlerContext route = routes.route(message);
+        if (route == null && connectedClients.isEmpty()) {
+            return;
+        }
+        String text = message.toString();
+        Map<WireFormat, ByteBuf> bodies = new EnumMap<>(WireFormat.class);
+        try {
+            if (route != null) {
+                send(route, message, bodies, text, "Routing");
+                return;
+            }
+            connectedClients.values().forEach(ctx -> {
+                if (ctx.channel().isActive()) {
+                    send(ctx, message, bodies, text, "Broadcasting");
+                }
+            });
+        } finally {
+            bodies.values().forEach(ByteBuf::release);
+        }
+    }
+
+    private static void send(ChannelHandlerContext ctx, Iso8583Message message, Map<WireFormat, ByteBuf> bodies,
+                             String text, String action) {
+        String clientAddress = ctx.channel().remoteAddress().toString();
+        ByteBuf body = bodies.computeIfAbsent(ctx.channel().attr(WIRE_FORMAT).get(),
+                format -> Iso8583Frames.encodeBody(ByteBufAllocator.DEFAULT, format.codec(), message));
+        System.out.println("📤 [" + clientAddress + "] " + action + ": " + text);
+        Iso8583Frames.writeBody(ctx.channel(), body.retainedDuplicate()).addListener(f -> {
+            if (!f.isSuccess()) {
+                System.err.println("❌ [" + clientAddress + "] " + action + " error: " + f.cause().getMessage());
             }
         });
     }
 
+    public static RoutingTable<ChannelHandlerContext> getRoutes() {
+        return routes;
+    }
+
     @EventListener(ApplicationReadyEvent.class)
     public void startServer() {
         String mode = System.getProperty("app.mode", "both");
         if (!"client".equals(mode)) {
             new Thread(this::runServer, "netty-iso8583-server-thread").start();
-            System.out.println("🚀 Netty ISO 8583 Server starting on port " + PORT);
+            System.out.println("🚀 Netty ISO 8583 Server starting on " + endpoints);
         }
     }
 
@@ -84,37 +184,52 @@ public class Iso8583Server {
             return;
         }
 
-        bossGroup = new NioEventLoopGroup(1);
-        workerGroup = new NioEventLoopGroup();
+        List<Endpoint> configured;
+        try {
+            configured = Endpoint.parse(endpoints, wireFormat);
+        } catch (IllegalArgumentException e) {
+            running.set(false);
+            System.err.println("❌ Invalid iso8583.server.endpoints '" + endpoints + "': " + e.getMessage());
+            return;
+        }
+        NettyTransport transport = NettyTransport.select(nativeTransport);
+        int listenerCount = Math.max(1, listeners);
+        if (listenerCount > 1 && !transport.supportsReusePort()) {
+            System.out.println("ℹ️ " + listenerCount + " listeners need SO_REUSEPORT (epoll), using one listener");
+            listenerCount = 1;
+        }
+        bossGroup = transport.newEventLoopGroup(listenerCount, "iso8583-server-boss");
+        workerGroup = transport.newEventLoopGroup(workerThreads, "iso8583-server-worker");
+        System.out.println("🔧 Server transport: " + transport + ", " + listenerCount + " listener(s) per endpoint, accept backlog " + acceptBacklog);
+        outboundMetrics.bindFlushStats(flushStats);
+        connectionMetrics.bindConnectedClients(connectedClients::size);
 
         try {
             ServerBootstrap b = new ServerBootstrap();
             b.group(bossGroup, workerGroup)
-             .channel(NioServerSocketChannel.class)
-             .childHandler(new ChannelInitializer<SocketChannel>() {
-                 @Override
-                 protected void initChannel(SocketChannel ch) {
-                     ChannelPipeline p = ch.pipeline();
-
-                     // Inbound: read 2-byte length prefix and produce a frame (strip the length field)
-                     p.addLast(new LengthFieldBasedFrameDecoder(65535, 0, 2, 0, 2));
-                     // Convert ByteBuf frames to String (UTF-8)
-                     p.addLast(new StringDecoder(StandardCharsets.UTF_8));
-
-                     // Outbound: add 2-byte length prefix then encode String -> ByteBuf
-                     p.addLast(new LengthFieldPrepender(2));
-                     p.addLast(new StringEncoder(StandardCharsets.UTF_8));
-
-                     // Our handler that processes ISO messages
-                     p.addLast(new Iso8583ServerHandler());
-                 }
-             })
-             .option(ChannelOption.SO_BACKLOG, 128)
-             .childOption(ChannelOption.SO_KEEPALIVE, true);
-
-            ChannelFuture f = b.bind(PORT).sync();
+             .channel(transport.serverSocketChannelClass())
+             .option(ChannelOption.SO_BACKLOG, acceptBacklog)
+             .childOption(ChannelOption.SO_KEEPALIVE, true)
+             .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(lowWaterMark, highWaterMark));
+            if (listenerCount > 1) {
+                transport.enableReusePort(b);
+            }
+
+            // Each bind registers a new listening socket on the next boss loop
+            List<Channel> boundListeners = new ArrayList<>(configured.size() * listenerCount);
+            for (Endpoint endpoint : configured) {
+                ServerBootstrap endpointBootstrap = b.clone().childHandler(new EndpointInitializer(endpoint));
+                for (int i = 0; i < listenerCount; i++) {
+                    ServerBootstrap listener = endpointBootstrap.clone()
+                            .handler(new AcceptCounter(connectionMetrics.acceptCounter(endpoint.port, i)));
+                    boundListeners.add(listener.bind(endpoint.port).sync().channel());
+                }
+                System.out.println("🔌 Listening on " + endpoint);
+            }
             System.out.println("✅ Server ready and listening...");
-            f.channel().closeFuture().sync();
+            for (Channel listener : boundListeners) {
+                listener.closeFuture().sync();
+            }
         } catch (InterruptedException ie) {
             Thread.currentThread().interrupt();
             System.err.println("❌ Server interrupted: " + ie.getMessage());
@@ -137,10 +252,73 @@ public class Iso8583Server {
         }
     }
 
-    private static class Iso8583ServerHandler extends SimpleChannelInboundHandler<String> {
+    /**
+     * Pipeline of a client channel accepted on one endpoint.
+     */
+    private class EndpointInitializer extends ChannelInitializer<SocketChannel> {
+        private final Endpoint endpoint;
+
+        EndpointInitializer(Endpoint endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        protected void initChannel(SocketChannel ch) {
+            ch.attr(WIRE_FORMAT).set(endpoint.wireFormat);
+            ChannelPipeline p = ch.pipeline();
+
+            p.addLast(flushStats);
+            if (flushConsolidation) {
+                // Also merges flushes of broadcast writes that arrive outside a read
+                p.addLast(new FlushConsolidationHandler(maxWritesPerFlush, true));
+            }
+            // Below the framing, so it sees every frame's bytes, pre-encoded broadcasts included;
+            // only the flush handlers sit between it and the socket
+            p.addLast(new OutboundBackpressureHandler(outboundPolicy, maxParked, outboundMetrics));
+
+            // Inbound: split frames and strip their headers; outbound: add the headers back
+            endpoint.framing.configure(p, tpduNii);
+            // Index frame body into a lazy Iso8583Message view using the endpoint's wire format
+            p.addLast(new Iso8583MessageDecoder(endpoint.wireFormat.codec(), true));
+            // Outbound: encode Iso8583Message -> ByteBuf; pre-encoded bodies pass straight through
+            p.addLast(new Iso8583MessageEncoder(endpoint.wireFormat.codec()));
+
+            // Our handler that processes ISO messages
+            p.addLast(new Iso8583ServerHandler(dispatcher));
+        }
+    }
+
+    /**
+     * Counts connections accepted by one listening socket.
+     */
+    private static class AcceptCounter extends ChannelInboundHandlerAdapter {
+        private final Counter accepts;
+
+        AcceptCounter(Counter accepts) {
+            this.accepts = accepts;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object child) {
+            accepts.increment();
+            ctx.fireChannelRead(child);
+        }
+    }
+
+    private static class Iso8583ServerHandler extends SimpleChannelInboundHandler<Iso8583Message> {
+        private final MessageDispatcher dispatcher;
+        // Null when requests are processed inline on the event loop
+        private final SerialExecutor executor;
+        // Set on the event loop, read by workers to know whether to resume reading
+        private volatile boolean backlogPaused;
         private ChannelHandlerContext ctx;
         private String clientAddress;
 
+        Iso8583ServerHandler(MessageDispatcher dispatcher) {
+            this.dispatcher = dispatcher;
+            this.executor = dispatcher.newConnectionExecutor();
+        }
+
         @Override
         public void channelActive(ChannelHandlerContext ctx) {
             this.ctx = ctx;
@@ -152,47 +330,89 @@ public class Iso8583Server {
         }
 
         @Override
-        protected void channelRead0(ChannelHandlerContext ctx, String msg) {
-            // msg is one framed String message (length already stripped)
-            System.out.println("📨 [" + clientAddress + "] Received: " + msg);
+        protected void channelRead0(ChannelHandlerContext ctx, Iso8583Message request) {
+            // request is a lazy view over the pooled frame: only the fields we read get copied out
+            String mti = request.getMti();
+            System.out.println("📨 [" + clientAddress + "] Received MTI " + mti + " STAN " + request.getField(11));
             try {
-                Iso8583Message request = Iso8583Parser.parseMessage(msg);
-                Iso8583Message response = processor.processMessage(request);
-                String responseMessage = response.toString();
-                
-                // Check if this is a 0210 response with matching field 37
-                if ("0210".equals(request.getMti()) && transactionTimer != null) {
+                routes.learn(request, ctx);
+
+                // 0210 responses only need field 37 to stop the timer - transaction is complete, nothing to send
+                if ("0210".equals(mti) && transactionTimer != null) {
                     String responseField37 = request.getField(37);
                     if (responseField37 != null) {
                         transactionTimer.checkResponse(responseField37);
                     }
-                    // Don't send response for 0210 messages - transaction is complete
                     System.out.println("✅ Transaction completed for field37: " + responseField37);
                     return;
                 }
-                
-                // writeAndFlush will go through StringEncoder and LengthFieldPrepender
-                ctx.writeAndFlush(responseMessage).addListener(f -> {
-                    if (f.isSuccess()) {
-                        System.out.println("📤 [" + clientAddress + "] Sent: " + responseMessage);
-                    } else {
-                        System.err.println("❌ [" + clientAddress + "] Send failed: " + f.cause().getMessage());
-                    }
-                });
+
+                if (executor == null) {
+                    respond(ctx, request);
+                    return;
+                }
+                // The frame is released when this method returns, so copy out the fields the handler needs
+                Iso8583Message detached = request instanceof LazyIso8583Message ? processor.extract(request) : request;
+                if (dispatcher.dispatch(executor, () -> respondFromWorker(ctx, detached)) && !backlogPaused) {
+                    backlogPaused = true;
+                    ReadGate.of(ctx.channel()).pause(ReadGate.DISPATCH_BACKLOG);
+                }
             } catch (Exception e) {
                 System.err.println("❌ [" + clientAddress + "] Error processing message: " + e.getMessage());
             }
         }
 
+        private void respondFromWorker(ChannelHandlerContext ctx, Iso8583Message request) {
+            try {
+                respond(ctx, request);
+            } catch (Exception e) {
+                System.err.println("❌ [" + clientAddress + "] Error processing message: " + e.getMessage());
+            }
+            if (backlogPaused && dispatcher.canResume(executor)) {
+                ctx.channel().eventLoop().execute(() -> {
+                    if (backlogPaused && dispatcher.canResume(executor)) {
+                        backlogPaused = false;
+                        ReadGate.of(ctx.channel()).resume(ReadGate.DISPATCH_BACKLOG);
+                    }
+                });
+            }
+        }
+
+        private void respond(ChannelHandlerContext ctx, Iso8583Message request) {
+            Iso8583Message response = processor.processMessage(request);
+            if (response == null) {
+                return;
+            }
+            String responseMessage = response.toString();
+
+            // write goes through Iso8583MessageEncoder and the endpoint's framing; FlushConsolidationHandler
+            // turns the flushes of a read burst, or of worker writes queued on the event loop, into one
+            ChannelFuture written = ctx.writeAndFlush(response);
+            written.addListener(f -> {
+                if (f.isSuccess()) {
+                    System.out.println("📤 [" + clientAddress + "] Sent: " + responseMessage);
+                } else {
+                    System.err.println("❌ [" + clientAddress + "] Send failed: " + f.cause().getMessage());
+                }
+            });
+        }
+
         @Override
         public void channelInactive(ChannelHandlerContext ctx) {
             System.out.println("👋 [" + clientAddress + "] Client disconnected");
             // Remove client from connected clients map
             connectedClients.remove(clientAddress);
+            routes.remove(ctx);
         }
 
         @Override
         public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            // A malformed body only drops that frame and the connection stays usable. A corrupted
+            // length header loses the frame boundaries, and FrameCorruptionHandler has closed it
+            if (cause instanceof DecoderException && ctx.channel().isActive()) {
+                System.err.println("⚠️ [" + clientAddress + "] Dropped undecodable frame: " + cause.getMessage());
+                return;
+            }
             System.err.println("🔌 [" + clientAddress + "] Connection error: " + cause.getMessage());
             ctx.close();
         }
@@ -0,0 +1,146 @@
+package com.example.server.server;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Where socket requests are processed.
+ * <ul>
+ *   <li>{@code INLINE}: on the Netty event loop. Cheapest, but only for handlers that never block.</li>
+ *   <li>{@code VIRTUAL}: a virtual thread per task, for handlers that block on the database or an HSM.
+ *       Needs Java 21; on older runtimes the bounded pool is used instead.</li>
+ *   <li>{@code POOL}: a fixed pool with a bounded queue. When the queue is full the event loop runs
+ *       the task itself, which slows reading instead of dropping requests.</li>
+ * </ul>
+ * Each connection gets its own {@link SerialExecutor}, so its responses keep request order.
+ */
+@Component
+public class MessageDispatcher {
+
+    public enum Mode {
+        INLINE,
+        VIRTUAL,
+        POOL
+    }
+
+    private final Mode mode;
+    private final ExecutorService executor;
+    private final int maxPendingPerConnection;
+    private final AtomicLong pending = new AtomicLong();
+    private final Timer queueWait;
+    private final Counter callerRuns;
+
+    public MessageDispatcher(MeterRegistry meterRegistry,
+                             @Value("${iso8583.server.dispatch.mode:INLINE}") Mode mode,
+                             @Value("${iso8583.server.dispatch.pool-threads:0}") int poolThreads,
+                             @Value("${iso8583.server.dispatch.queue-capacity:1024}") int queueCapacity,
+                             @Value("${iso8583.server.dispatch.max-pending-per-connection:512}") int maxPendingPerConnection) {
+        this.maxPendingPerConnection = maxPendingPerConnection;
+        this.queueWait = Timer.builder("iso8583.dispatch.wait")
+                .description("Time requests wait between the event loop and a worker")
+                .register(meterRegistry);
+        this.callerRuns = Counter.builder("iso8583.dispatch.caller.runs")
+                .description("Requests processed on the event loop because the worker queue was full")
+                .register(meterRegistry);
+        Gauge.builder("iso8583.dispatch.pending", pending, AtomicLong::get)
+                .description("Requests handed off and not yet processed")
+                .register(meterRegistry);
+
+        ExecutorService virtual = mode == Mode.VIRTUAL ? newVirtualThreadExecutor() : null;
+        if (mode == Mode.VIRTUAL && virtual == null) {
+            System.out.println("ℹ️ Virtual threads need Java 21, dispatching to the bounded pool instead");
+            mode = Mode.POOL;
+        }
+        this.mode = mode;
+        if (mode == Mode.VIRTUAL) {
+            this.executor = virtual;
+        } else if (mode == Mode.POOL) {
+            int threads = poolThreads > 0 ? poolThreads : Runtime.getRuntime().availableProcessors() * 2;
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    new DefaultThreadFactory("iso8583-dispatch", true),
+                    (task, rejectedBy) -> {
+                        callerRuns.increment();
+                        task.run();
+                    });
+            Gauge.builder("iso8583.dispatch.queue.size", pool, p -> p.getQueue().size())
+                    .description("Connections waiting for a dispatch worker")
+                    .register(meterRegistry);
+            Gauge.builder("iso8583.dispatch.active", pool, ThreadPoolExecutor::getActiveCount)
+                    .description("Dispatch workers currently processing")
+                    .register(meterRegistry);
+            this.executor = pool;
+        } else {
+            this.executor = null;
+        }
+        System.out.println("🔧 Message dispatch: " + this.mode);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return an executor that runs one connection's requests in order, or null for INLINE
+     */
+    SerialExecutor newConnectionExecutor() {
+        return executor != null ? new SerialExecutor(executor) : null;
+    }
+
+    /**
+     * Hands a request to the connection's executor. The task must not touch pooled buffers of
+     * the request; materialize lazy messages first.
+     *
+     * @return true if the connection now has too many requests waiting and reads should pause
+     */
+    boolean dispatch(SerialExecutor connectionExecutor, Runnable task) {
+        long queuedAt = System.nanoTime();
+        pending.incrementAndGet();
+        connectionExecutor.execute(() -> {
+            queueWait.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+            try {
+                task.run();
+            } finally {
+                pending.decrementAndGet();
+            }
+        });
+        return connectionExecutor.getPendingCount() >= maxPendingPerConnection;
+    }
+
+    /**
+     * @return true if a paused connection has drained enough to read again
+     */
+    boolean canResume(SerialExecutor connectionExecutor) {
+        return connectionExecutor.getPendingCount() <= maxPendingPerConnection / 2;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            // Looked up reflectively so the server still builds and runs on Java 17
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.server.server;
+
+import com.example.server.metrics.OutboundMetrics;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Keeps a client that stops reading from filling the server's heap.
+ * <p>
+ * Sits next to the socket, below the framer, so it sees every outbound frame. While the channel
+ * is writable, frames pass straight through. Once Netty's outbound buffer passes the high water
+ * mark, new frames are handled by the {@link Policy}. Reading from the client is paused until
+ * its buffer drains below the low water mark, because each request it sends adds a response
+ * it is not reading. All state is confined to the channel's event loop.
+ */
+public class OutboundBackpressureHandler extends ChannelDuplexHandler {
+
+    public enum Policy {
+        /** Discard frames while the client is not writable. */
+        DROP,
+        /** Close the connection as soon as the client falls behind. */
+        DISCONNECT,
+        /** Queue frames up to a limit and write them when the client catches up; drop beyond it. */
+        PARK
+    }
+
+    private final Policy policy;
+    private final int maxParked;
+    private final OutboundMetrics metrics;
+    private final Queue<ParkedWrite> parked = new ArrayDeque<>();
+
+    private boolean overflowing;
+
+    public OutboundBackpressureHandler(Policy policy, int maxParked, OutboundMetrics metrics) {
+        this.policy = policy;
+        this.maxParked = maxParked;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        // Anything parked goes first so frames keep their order
+        if (parked.isEmpty() && ctx.channel().isWritable()) {
+            ctx.write(msg, promise);
+            return;
+        }
+        pauseReads(ctx);
+
+        switch (policy) {
+            case PARK -> {
+                if (parked.size() < maxParked) {
+                    parked.add(new ParkedWrite(msg, promise));
+                    metrics.parked();
+                } else {
+                    drop(ctx, msg, promise, "outbound queue full (" + maxParked + ")");
+                }
+            }
+            case DROP -> drop(ctx, msg, promise, "client not writable");
+            case DISCONNECT -> {
+                drop(ctx, msg, promise, "client not writable");
+                if (ctx.channel().isOpen()) {
+                    System.err.println("🔌 [" + ctx.channel().remoteAddress() + "] Disconnecting slow client");
+                    metrics.disconnected();
+                    ctx.close();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            drain(ctx);
+            ReadGate gate = ReadGate.of(ctx.channel());
+            if (parked.isEmpty() && gate.isPaused(ReadGate.SLOW_CLIENT)) {
+                overflowing = false;
+                gate.resume(ReadGate.SLOW_CLIENT);
+                System.out.println("▶️ [" + ctx.channel().remoteAddress() + "] Client caught up, reading resumed");
+            }
+        } else {
+            pauseReads(ctx);
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        releaseParked(new RuntimeException("Connection closed"));
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        releaseParked(new RuntimeException("Handler removed"));
+    }
+
+    int getParkedCount() {
+        return parked.size();
+    }
+
+    private void drain(ChannelHandlerContext ctx) {
+        int written = 0;
+        while (!parked.isEmpty() && ctx.channel().isWritable()) {
+            ParkedWrite write = parked.poll();
+            ctx.write(write.msg, write.promise);
+            written++;
+        }
+        if (written > 0) {
+            metrics.unparked(written);
+            ctx.flush();
+        }
+    }
+
+    private void pauseReads(ChannelHandlerContext ctx) {
+        ReadGate gate = ReadGate.of(ctx.channel());
+        if (!gate.isPaused(ReadGate.SLOW_CLIENT)) {
+            gate.pause(ReadGate.SLOW_CLIENT);
+            metrics.readPaused();
+            System.out.println("⏸️ [" + ctx.channel().remoteAddress() + "] Client not keeping up, reading paused");
+        }
+    }
+
+    private void drop(ChannelHandlerContext ctx, Object msg, ChannelPromise promise, String reason) {
+        if (!overflowing) {
+            // Logged once per episode, the counter has the totals
+            overflowing = true;
+            System.err.println("⚠️ [" + ctx.channel().remoteAddress() + "] Dropping messages: " + reason);
+        }
+        metrics.dropped();
+        ReferenceCountUtil.release(msg);
+        promise.tryFailure(new RuntimeException("Message dropped: " + reason));
+    }
+
+    private void releaseParked(Throwable cause) {
+        if (parked.isEmpty()) {
+            return;
+        }
+        metrics.unparked(parked.size());
+        ParkedWrite write;
+        while ((write = parked.poll()) != null) {
+            ReferenceCountUtil.release(write.msg);
+            write.promise.tryFailure(cause);
+        }
+    }
+
+    private static final class ParkedWrite {
+        final Object msg;
+        final ChannelPromise promise;
+
+        ParkedWrite(Object msg, ChannelPromise promise) {
+            this.msg = msg;
+            this.promise = promise;
+        }
+    }
+}
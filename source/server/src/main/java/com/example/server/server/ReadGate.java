@@ -0,0 +1,66 @@
+package com.example.server.server;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+/**
+ * Shared ownership of a channel's autoRead flag. Several handlers may want reads paused for
+ * their own reason; reading resumes only when none of them does. Only use it on the channel's
+ * event loop.
+ */
+final class ReadGate {
+
+    /** The client is not reading its responses. */
+    static final int SLOW_CLIENT = 1;
+    /** Too many of the client's requests are waiting for a worker. */
+    static final int DISPATCH_BACKLOG = 1 << 1;
+
+    private static final AttributeKey<ReadGate> KEY = AttributeKey.valueOf("readGate");
+
+    private final Channel channel;
+    private int reasons;
+
+    private ReadGate(Channel channel) {
+        this.channel = channel;
+    }
+
+    static ReadGate of(Channel channel) {
+        ReadGate gate = channel.attr(KEY).get();
+        if (gate == null) {
+            gate = new ReadGate(channel);
+            channel.attr(KEY).set(gate);
+        }
+        return gate;
+    }
+
+    /**
+     * @return true if this call paused reading
+     */
+    boolean pause(int reason) {
+        boolean wasOpen = reasons == 0;
+        reasons |= reason;
+        if (wasOpen) {
+            channel.config().setAutoRead(false);
+        }
+        return wasOpen;
+    }
+
+    /**
+     * @return true if this call resumed reading
+     */
+    boolean resume(int reason) {
+        if ((reasons & reason) == 0) {
+            return false;
+        }
+        reasons &= ~reason;
+        if (reasons == 0) {
+            channel.config().setAutoRead(true);
+            return true;
+        }
+        return false;
+    }
+
+    boolean isPaused(int reason) {
+        return (reasons & reason) != 0;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.server.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs one connection's tasks one at a time, in submission order, on a shared executor, so
+ * responses leave in the order their requests arrived. At most one drain task per connection
+ * is queued on the shared executor; a long backlog is drained in batches so a busy connection
+ * does not hold a worker indefinitely.
+ */
+final class SerialExecutor implements Executor {
+
+    private static final int MAX_BATCH = 64;
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Executor delegate;
+
+    SerialExecutor(Executor delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (pending.getAndIncrement() == 0) {
+            delegate.execute(this::drain);
+        }
+    }
+
+    /**
+     * Tasks submitted but not yet finished, including the one running.
+     */
+    int getPendingCount() {
+        return pending.get();
+    }
+
+    private void drain() {
+        int ran = 0;
+        while (true) {
+            Runnable task = tasks.poll();
+            try {
+                task.run();
+            } catch (Throwable t) {
+                System.err.println("❌ Dispatched task failed: " + t.getMessage());
+            }
+            if (pending.decrementAndGet() == 0) {
+                return;
+            }
+            if (++ran >= MAX_BATCH) {
+                // Requeue behind other connections' work
+                delegate.execute(this::drain);
+                return;
+            }
+        }
+    }
+}
@@ -1,105 +1,141 @@
 package com.example.server.service;
 
+import com.example.common.dedup.DuplicateDetector;
+import com.example.common.dispatch.AdviceHandler;
+import com.example.common.dispatch.AuthorizationHandler;
+import com.example.common.dispatch.MtiHandler;
+import com.example.common.dispatch.MtiHandlerRegistry;
+import com.example.common.dispatch.NetworkManagementHandler;
+import com.example.common.dispatch.ReversalHandler;
 import com.example.common.model.Iso8583Message;
 import com.example.common.model.ValidationResult;
 import com.example.common.parser.Iso8583Parser;
+import com.example.common.response.ResponseTemplate;
+import com.example.common.rules.Iso8583Rules;
+import com.example.common.tracing.TransactionTrace;
+import com.example.common.tracing.TransactionTracer;
 import com.example.server.metrics.TransactionMetrics;
-import io.opentelemetry.api.trace.Tracer;
-import io.opentelemetry.api.trace.Span;
-import io.opentelemetry.api.trace.StatusCode;
 import io.opentelemetry.context.Scope;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 
+/**
+ * Answers socket requests through an {@link MtiHandlerRegistry}: authorization, reversal,
+ * advice and network management handlers are built in, and any {@link MtiHandler} bean is
+ * registered after them, replacing the built-in handler for its MTIs.
+ * <p>
+ * Retransmissions (same RRN, STAN, terminal and MTI within
+ * {@code iso8583.duplicates.window-ms}) are answered from a {@link DuplicateDetector} with the
+ * original response instead of being authorized again.
+ */
 @Component
 public class Iso8583Processor {
-    
+
+    // STAN and RRN let the sender match the reply, and are all tracing needs
+    private static final int[] ECHOED = {11, 37};
+
+    private static final ResponseTemplate FORMAT_ERROR = ResponseTemplate.builder("0210")
+            .echo(ECHOED)
+            .set(39, "30")
+            .build();
+
     private final TransactionMetrics transactionMetrics;
-    private final Tracer tracer;
-    
-    public Iso8583Processor(TransactionMetrics transactionMetrics, Tracer tracer) {
+    private final TransactionTracer tracer;
+    private final MtiHandlerRegistry handlers;
+    private final DuplicateDetector duplicates;
+
+    public Iso8583Processor(TransactionMetrics transactionMetrics, TransactionTracer tracer,
+                            ObjectProvider<MtiHandler> customHandlers,
+                            @Value("${iso8583.duplicates.capacity:100000}") int duplicateCapacity,
+                            @Value("${iso8583.duplicates.window-ms:60000}") long duplicateWindowMillis) {
         this.transactionMetrics = transactionMetrics;
         this.tracer = tracer;
+        // The duplicate key (STAN, RRN, terminal) is decoded for every request
+        this.handlers = new MtiHandlerRegistry(Iso8583Rules.getDefault(), DuplicateDetector.KEY_FIELDS)
+                .register(new AuthorizationHandler())
+                .register(new ReversalHandler(reversal ->
+                        System.out.println("↩️ Reversal for RRN " + reversal.getField(37))))
+                .register(new AdviceHandler())
+                .register(new NetworkManagementHandler())
+                .register(new CompletedTransactions());
+        customHandlers.orderedStream().forEach(handlers::register);
+        this.duplicates = duplicateCapacity > 0 ? new DuplicateDetector(duplicateCapacity, duplicateWindowMillis) : null;
+    }
+
+    /**
+     * Copies out only the fields the request's handler needs, so the rest of a lazily decoded
+     * frame is never parsed.
+     */
+    public Iso8583Message extract(Iso8583Message request) {
+        return handlers.extract(request);
     }
-    
+
+    /**
+     * @return the response, or null when the request needs none
+     */
     public Iso8583Message processMessage(Iso8583Message request) {
-        String stan = request.getField(11) != null ? request.getField(11) : "unknown";
-        
-        Span span = tracer.spanBuilder("iso8583.server.process_message")
-                .setAttribute("message.mti", request.getMti())
-                .setAttribute("message.stan", stan)
-                .setAttribute("iso8583.stan", stan)
-                .setAttribute("iso8583.correlation_id", stan)
-                .startSpan();
-        
-        try (Scope scope = span.makeCurrent()) {
-            System.out.println("🔄 Iso8583Processor.processMessage called with MTI: " + request.getMti());
-            
-            // Validate incoming message
-            ValidationResult validation = Iso8583Parser.validateMessage(request);
+        TransactionTrace trace = tracer.start("iso8583.server.process_message", request);
+
+        try (Scope scope = trace.makeCurrent()) {
+            String requestMti = request.getMti();
+            MtiHandler handler = handlers.handler(requestMti);
+            if (handler == null) {
+                transactionMetrics.incrementFailed();
+                trace.fail("Unknown message type");
+                System.err.println("⚠️ Unknown message type: " + requestMti);
+                return formatError(request);
+            }
+
+            // Validate what the handler reads - the reply is a plain format error, so stop at the first problem
+            ValidationResult validation = Iso8583Parser.validateMessage(request, handlers.fields(requestMti), true);
             if (!validation.isValid()) {
-                span.setStatus(StatusCode.ERROR, "Invalid message format");
+                trace.fail("Invalid message format");
                 System.err.println("❌ Invalid message: " + String.join(", ", validation.getErrors()));
-                Iso8583Message errorResponse = new Iso8583Message();
-                errorResponse.setMti("0210");
-                errorResponse.addField(39, "30"); // Format error
-                return errorResponse;
+                return formatError(request);
             }
-        
-        Iso8583Message response = new Iso8583Message();
-        String requestMti = request.getMti();
-        System.out.println("📊 TransactionMetrics instance: " + transactionMetrics);
 
-        if ("0200".equals(requestMti)) {
-            response.setMti("0210");
-            copyField(request, response, 2);
-            copyField(request, response, 3);
-            copyField(request, response, 4);
-            copyField(request, response, 7);
-            copyField(request, response, 11);
-            copyField(request, response, 37);
-            response.addField(38, generateApprovalCode());
-            response.addField(39, "00");
-            System.out.println("💳 Processed authorization request - APPROVED");
-        } else if ("0800".equals(requestMti)) {
-            response.setMti("0810");
-            copyField(request, response, 7);
-            copyField(request, response, 11);
-            copyField(request, response, 70);
-            response.addField(7, LocalDateTime.now().format(DateTimeFormatter.ofPattern("MMddHHmmss")));
-            System.out.println("💓 Processed echo request - Connection alive");
-        } else if ("0210".equals(requestMti)) {
-            System.out.println("Authorize Successfully");
-            // Don't return null, return the original message so timer can check it
-            return request;
-        }
-        else {
-            response.setMti("0210");
-            response.addField(39, "30");
-            transactionMetrics.incrementFailed();
-            System.err.println("⚠️ Unknown message type: " + requestMti);
-        }
-            span.setAttribute("response.mti", response.getMti())
-                .setAttribute("response.code", response.getField(39) != null ? response.getField(39) : "unknown")
-                .setStatus(StatusCode.OK);
-            
+            Iso8583Message response = duplicates != null ? duplicates.process(request, handler::handle) : handler.handle(request);
+            if (response != null) {
+                trace.attribute("response.code", response.getField(39));
+                System.out.println("🔄 Processed " + requestMti + " -> " + response.getMti() + " " + response.getField(39));
+            }
             return response;
         } catch (Exception e) {
-            span.setStatus(StatusCode.ERROR, e.getMessage());
+            trace.fail(e);
             throw e;
         } finally {
-            span.end();
+            trace.end();
         }
     }
-    private static void copyField(Iso8583Message source, Iso8583Message target, int fieldNumber) {
-        String value = source.getField(fieldNumber);
-        if (value != null) {
-            target.addField(fieldNumber, value);
+
+    private static Iso8583Message formatError(Iso8583Message request) {
+        Iso8583Message response = FORMAT_ERROR.respond(request);
+        String responseMti = MtiHandlerRegistry.responseMti(request.getMti());
+        if (responseMti != null) {
+            response.setMti(responseMti);
         }
+        return response;
     }
-    private static String generateApprovalCode() {
-            return String.format("%06d", (int) (Math.random() * 999999));
+
+    /**
+     * Responses to transactions this server sent; the transaction timer has already seen them.
+     */
+    private static final class CompletedTransactions implements MtiHandler {
+        @Override
+        public String[] mtis() {
+            return new String[]{"0110", "0210"};
         }
-}
\ No newline at end of file
+
+        @Override
+        public int[] fields() {
+            return new int[]{39};
+        }
+
+        @Override
+        public Iso8583Message handle(Iso8583Message response) {
+            System.out.println("✅ Transaction completed for field37: " + response.getField(37));
+            return null;
+        }
+    }
+}
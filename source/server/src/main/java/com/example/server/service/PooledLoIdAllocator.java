@@ -0,0 +1,36 @@
+package com.example.server.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Hands out ids from a database sequence the way Hibernate's pooled-lo optimizer does: each
+ * {@code nextval} returns the low end of a block of {@code blockSize} ids, which are then
+ * assigned locally. Rows written here and rows persisted through JPA draw from the same
+ * sequence without colliding, as long as the block size matches the entity's allocationSize.
+ */
+class PooledLoIdAllocator {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String nextValueSql;
+    private final int blockSize;
+    private long next;
+    private long limit;
+
+    PooledLoIdAllocator(JdbcTemplate jdbcTemplate, String sequenceName, int blockSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.nextValueSql = "SELECT nextval('" + sequenceName + "')";
+        this.blockSize = blockSize;
+    }
+
+    synchronized long nextId() {
+        if (next >= limit) {
+            Long low = jdbcTemplate.queryForObject(nextValueSql, Long.class);
+            if (low == null) {
+                throw new IllegalStateException("Sequence returned no value: " + nextValueSql);
+            }
+            next = low;
+            limit = low + blockSize;
+        }
+        return next++;
+    }
+}
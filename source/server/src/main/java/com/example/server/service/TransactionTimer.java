@@ -1,42 +1,132 @@
 package com.example.server.service;
 
+import com.example.server.metrics.ResponseTimeMetrics;
 import com.example.server.metrics.TransactionMetrics;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PreDestroy;
+
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Tracks broadcast 0200 requests until their 0210 arrives or the timeout expires.
+ * <p>
+ * Timeouts live on hashed timer wheels (O(1) start and cancel), sharded by RRN hash so one
+ * wheel thread and one map do not become the bottleneck. A response cancels its timeout and
+ * records the round trip into {@code iso8583.response.time}.
+ */
 @Service
 public class TransactionTimer {
     
     private final TransactionMetrics transactionMetrics;
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(10);
-    private final ConcurrentHashMap<String, String> pendingTransactions = new ConcurrentHashMap<>();
-    
-    @Value("${iso8583.transaction.timeout:7}")
-    private int timeoutSeconds;
+    private final ResponseTimeMetrics responseTimeMetrics;
+    private final Shard[] shards;
+    private final long timeoutNanos;
     
-    public TransactionTimer(TransactionMetrics transactionMetrics) {
+    public TransactionTimer(TransactionMetrics transactionMetrics,
+                            ResponseTimeMetrics responseTimeMetrics,
+                            @Value("${iso8583.transaction.timeout:7}") int timeoutSeconds,
+                            @Value("${iso8583.transaction.timer-shards:4}") int shardCount,
+                            @Value("${iso8583.transaction.timer-tick-ms:100}") long tickMillis) {
         this.transactionMetrics = transactionMetrics;
+        this.responseTimeMetrics = responseTimeMetrics;
+        this.timeoutNanos = TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        this.shards = new Shard[Math.max(1, shardCount)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(new HashedWheelTimer(
+                    new DefaultThreadFactory("transaction-timer-" + i, true), tickMillis, TimeUnit.MILLISECONDS));
+        }
     }
     
     public void startTimer(String field37) {
-        pendingTransactions.put(field37, field37);
-        scheduler.schedule(() -> {
-            if (pendingTransactions.remove(field37) != null) {
-                System.out.println("⏰ Transaction timeout for field37: " + field37);
-                transactionMetrics.incrementFailed();
+        Shard shard = shardFor(field37);
+        Pending pending = new Pending(shard, field37, System.nanoTime());
+        Pending previous = shard.pending.put(field37, pending);
+        if (previous != null) {
+            // Same RRN broadcast again: only the latest request is tracked. An overlapping call
+            // may not have scheduled its timeout yet; if it fires, expire() finds it replaced
+            Timeout timeout = previous.timeout;
+            if (timeout != null) {
+                timeout.cancel();
             }
-        }, timeoutSeconds, TimeUnit.SECONDS);
+        }
+        pending.timeout = shard.wheel.newTimeout(pending, timeoutNanos, TimeUnit.NANOSECONDS);
     }
     
     public void checkResponse(String field37) {
-        if (pendingTransactions.remove(field37) != null) {
-            System.out.println("✅ Transaction successful for field37: " + field37);
+        Pending pending = shardFor(field37).pending.remove(field37);
+        if (pending != null) {
+            long elapsed = System.nanoTime() - pending.startNanos;
+            Timeout timeout = pending.timeout;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+            responseTimeMetrics.recordResponseTime(elapsed);
+            System.out.println("✅ Transaction successful for field37: " + field37
+                    + " in " + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms");
             transactionMetrics.incrementSuccessful();
         }
     }
-}
\ No newline at end of file
+
+    public int getPendingCount() {
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.pending.size();
+        }
+        return count;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Shard shard : shards) {
+            shard.wheel.stop();
+        }
+    }
+
+    private Shard shardFor(String field37) {
+        int h = field37.hashCode();
+        h ^= h >>> 16;
+        return shards[(h & Integer.MAX_VALUE) % shards.length];
+    }
+
+    private void expire(Pending pending) {
+        if (pending.shard.pending.remove(pending.field37, pending)) {
+            System.out.println("⏰ Transaction timeout for field37: " + pending.field37);
+            responseTimeMetrics.incrementTimeout();
+            transactionMetrics.incrementFailed();
+        }
+    }
+
+    private static final class Shard {
+        final HashedWheelTimer wheel;
+        final ConcurrentHashMap<String, Pending> pending = new ConcurrentHashMap<>();
+
+        Shard(HashedWheelTimer wheel) {
+            this.wheel = wheel;
+        }
+    }
+
+    private final class Pending implements TimerTask {
+        final Shard shard;
+        final String field37;
+        final long startNanos;
+        volatile Timeout timeout;
+
+        Pending(Shard shard, String field37, long startNanos) {
+            this.shard = shard;
+            this.field37 = field37;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void run(Timeout timeout) {
+            expire(this);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.example.server.service;
+
+import com.example.server.entity.Transaction;
+import com.example.server.entity.TransactionEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind persistence for transactions and their events.
+ * <p>
+ * Callers hand over a transaction with its events and return immediately; a single writer
+ * thread drains the bounded queue and inserts each batch with two JDBC batch statements
+ * (transactions first, then their events) in one database transaction. Ids are taken from the
+ * entities' pooled-lo sequences, so no generated keys have to be read back.
+ * When the queue stays full, or a batch cannot be written, the rows are appended to a local
+ * spill file that is replayed on the next start.
+ */
+@Component
+@ConditionalOnProperty(name = "iso8583.database.write.enabled", havingValue = "true")
+public class TransactionWriteBehind {
+
+    private static final String INSERT_TRANSACTION =
+            "INSERT INTO transactions (id, source_number, target_number, status, amount, transaction_time, update_time, stan, mti) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_EVENT =
+            "INSERT INTO transaction_events (id, transaction_id, event_type, iso_message, event_time) VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PooledLoIdAllocator transactionIds;
+    private final PooledLoIdAllocator eventIds;
+    private final BlockingQueue<PendingWrite> queue;
+    private final int flushSize;
+    private final long flushIntervalMillis;
+    private final long offerTimeoutMillis;
+    private final Path spillFile;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public TransactionWriteBehind(JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${iso8583.persistence.queue-capacity:10000}") int queueCapacity,
+                                  @Value("${iso8583.persistence.flush-size:500}") int flushSize,
+                                  @Value("${iso8583.persistence.flush-interval-ms:50}") long flushIntervalMillis,
+                                  @Value("${iso8583.persistence.offer-timeout-ms:100}") long offerTimeoutMillis,
+                                  @Value("${iso8583.persistence.spill-file:}") String spillFile) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionIds = new PooledLoIdAllocator(jdbcTemplate, Transaction.ID_SEQUENCE, Transaction.ID_ALLOCATION_SIZE);
+        this.eventIds = new PooledLoIdAllocator(jdbcTemplate, TransactionEvent.ID_SEQUENCE, TransactionEvent.ID_ALLOCATION_SIZE);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.flushSize = flushSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.spillFile = spillFile.isBlank() ? null : Paths.get(spillFile);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = new Thread(this::runWriter, "transaction-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+        System.out.println("💾 Write-behind persistence started (flush " + flushSize + " rows / "
+                + flushIntervalMillis + " ms, spill " + (spillFile != null ? spillFile : "disabled") + ")");
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (writer != null) {
+            writer.interrupt();
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Whatever the writer could not flush in time survives in the spill file
+        List<PendingWrite> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        if (!leftover.isEmpty()) {
+            spill(leftover);
+        }
+        System.out.println("🛑 Write-behind persistence stopped");
+    }
+
+    /**
+     * Queues a transaction and its events. Blocks for at most the offer timeout when the queue is
+     * full, then spills to disk.
+     *
+     * @throws RuntimeException if the queue is full and no spill file is configured
+     */
+    public void submit(Transaction transaction, List<TransactionEvent> events) {
+        PendingWrite write = new PendingWrite(transaction, events);
+        try {
+            if (queue.offer(write, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (spillFile == null) {
+            throw new RuntimeException("Persistence queue full (" + queue.size() + " pending)");
+        }
+        spill(List.of(write));
+    }
+
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    private void runWriter() {
+        replaySpillFile();
+
+        List<PendingWrite> batch = new ArrayList<>(flushSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Give the batch up to one flush interval to fill, but never hold rows longer
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (batch.size() < flushSize) {
+                    queue.drainTo(batch, flushSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= flushSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // stop() interrupts us; keep draining until the queue is empty
+                queue.drainTo(batch, flushSize - batch.size());
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        try {
+            write(batch);
+        } catch (Exception e) {
+            System.err.println("❌ Failed to write " + batch.size() + " transactions: " + e.getMessage());
+            spill(batch);
+        }
+    }
+
+    private void write(List<PendingWrite> batch) {
+        // Ids come from the pooled-lo sequences up front, so both inserts are plain batches
+        List<TransactionEvent> events = new ArrayList<>(batch.size() * 2);
+        for (PendingWrite write : batch) {
+            long id = transactionIds.nextId();
+            write.transaction.setId(id);
+            for (TransactionEvent event : write.events) {
+                event.setId(eventIds.nextId());
+                event.setTransactionId(id);
+                events.add(event);
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_TRANSACTION, batch, batch.size(), (ps, write) -> {
+                Transaction t = write.transaction;
+                ps.setLong(1, t.getId());
+                ps.setString(2, t.getSourceNumber());
+                ps.setString(3, t.getTargetNumber());
+                ps.setString(4, t.getStatus());
+                ps.setBigDecimal(5, t.getAmount());
+                ps.setTimestamp(6, toTimestamp(t.getTransactionTime()));
+                ps.setTimestamp(7, toTimestamp(t.getUpdateTime()));
+                ps.setString(8, t.getStan());
+                ps.setString(9, t.getMti());
+            });
+            jdbcTemplate.batchUpdate(INSERT_EVENT, events, events.size(), (ps, event) -> {
+                ps.setLong(1, event.getId());
+                ps.setLong(2, event.getTransactionId());
+                ps.setString(3, event.getEventType());
+                ps.setString(4, event.getIsoMessage());
+                ps.setTimestamp(5, toTimestamp(event.getEventTime()));
+            });
+        });
+    }
+
+    private static Timestamp toTimestamp(java.time.LocalDateTime time) {
+        return time != null ? Timestamp.valueOf(time) : null;
+    }
+
+    private synchronized void spill(List<PendingWrite> writes) {
+        if (spillFile == null) {
+            System.err.println("❌ Dropped " + writes.size() + " transactions (no spill file configured)");
+            return;
+        }
+        try {
+            StringBuilder lines = new StringBuilder();
+            for (PendingWrite write : writes) {
+                // Ids are assigned again on replay
+                write.transaction.setId(null);
+                write.events.forEach(event -> event.setId(null));
+                lines.append(objectMapper.writeValueAsString(write)).append('\n');
+            }
+            Path parent = spillFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.writeString(spillFile, lines, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+            System.out.println("💽 Spilled " + writes.size() + " transactions to " + spillFile);
+        } catch (IOException e) {
+            System.err.println("❌ Failed to spill " + writes.size() + " transactions: " + e.getMessage());
+        }
+    }
+
+    private void replaySpillFile() {
+        if (spillFile == null || !Files.exists(spillFile)) {
+            return;
+        }
+        Path replaying = spillFile.resolveSibling(spillFile.getFileName() + ".replaying");
+        List<PendingWrite> writes = new ArrayList<>();
+        try {
+            // Anything that fails again is spilled to a fresh file by flush()
+            synchronized (this) {
+                Files.move(spillFile, replaying, StandardCopyOption.REPLACE_EXISTING);
+            }
+            for (String line : Files.readAllLines(replaying, StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    writes.add(objectMapper.readValue(line, PendingWrite.class));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Failed to read spill file " + spillFile + ": " + e.getMessage());
+            return;
+        }
+        System.out.println("🔁 Replaying " + writes.size() + " spilled transactions");
+        for (int from = 0; from < writes.size(); from += flushSize) {
+            flush(writes.subList(from, Math.min(writes.size(), from + flushSize)));
+        }
+        try {
+            Files.delete(replaying);
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not delete " + replaying + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * One transaction and the events that reference it, written together.
+     */
+    static class PendingWrite {
+        public Transaction transaction;
+        public List<TransactionEvent> events;
+
+        public PendingWrite() {
+        }
+
+        PendingWrite(Transaction transaction, List<TransactionEvent> events) {
+            this.transaction = transaction;
+            this.events = events;
+        }
+    }
+}
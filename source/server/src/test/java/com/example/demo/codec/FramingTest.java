@@ -0,0 +1,112 @@
+package com.example.server.codec;
+
+import com.example.common.codec.Framing;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FramingTest {
+
+    private static EmbeddedChannel channel(Framing framing) {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        framing.configure(channel.pipeline(), "003");
+        return channel;
+    }
+
+    private static byte[] readAll(EmbeddedChannel channel) {
+        ByteBuf out = Unpooled.buffer();
+        ByteBuf part;
+        while ((part = channel.readOutbound()) != null) {
+            out.writeBytes(part);
+            part.release();
+        }
+        return ByteBufUtil.getBytes(out);
+    }
+
+    private static String inboundText(EmbeddedChannel channel) {
+        ByteBuf body = channel.readInbound();
+        try {
+            return body.toString(StandardCharsets.US_ASCII);
+        } finally {
+            body.release();
+        }
+    }
+
+    @Test
+    @DisplayName("ASCII_4 splits frames on a decimal length header and writes one back")
+    void asciiLengthRoundTrip() {
+        EmbeddedChannel channel = channel(Framing.ASCII_4);
+
+        channel.writeInbound(Unpooled.copiedBuffer("0005hel", StandardCharsets.US_ASCII));
+        assertNull(channel.readInbound());
+        channel.writeInbound(Unpooled.copiedBuffer("lo0002ok", StandardCharsets.US_ASCII));
+        assertEquals("hello", inboundText(channel));
+        assertEquals("ok", inboundText(channel));
+
+        channel.writeOutbound(Unpooled.copiedBuffer("reply", StandardCharsets.US_ASCII));
+        assertEquals("0005reply", new String(readAll(channel), StandardCharsets.US_ASCII));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    @DisplayName("ASCII_4 rejects a header that is not decimal digits and closes the connection")
+    void asciiLengthRejectsGarbage() {
+        EmbeddedChannel channel = channel(Framing.ASCII_4);
+
+        assertThrows(CorruptedFrameException.class,
+                () -> channel.writeInbound(Unpooled.copiedBuffer("00x5hello", StandardCharsets.US_ASCII)));
+        assertFalse(channel.isOpen(), "The frame boundaries are lost, so later bytes must not be parsed");
+        assertNull(channel.readInbound());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    @DisplayName("TPDU drops a frame without a TPDU but keeps the connection")
+    void tpduMissingKeepsConnection() {
+        EmbeddedChannel channel = channel(Framing.TPDU);
+
+        byte[] bad = {0x00, 0x02, 'h', 'i'};
+        assertThrows(CorruptedFrameException.class, () -> channel.writeInbound(Unpooled.wrappedBuffer(bad)));
+        assertTrue(channel.isOpen());
+
+        byte[] good = {0x00, 0x07, 0x60, 0x00, 0x03, 0x01, 0x20, 'o', 'k'};
+        channel.writeInbound(Unpooled.wrappedBuffer(good));
+        assertEquals("ok", inboundText(channel));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    @DisplayName("TPDU is stripped inbound and replies swap the request's NIIs")
+    void tpduSwapsNii() {
+        EmbeddedChannel channel = channel(Framing.TPDU);
+
+        // length 7, TPDU 60 0003 0120, body "hi"
+        byte[] request = {0x00, 0x07, 0x60, 0x00, 0x03, 0x01, 0x20, 'h', 'i'};
+        channel.writeInbound(Unpooled.wrappedBuffer(request));
+        assertEquals("hi", inboundText(channel));
+
+        channel.writeOutbound(Unpooled.copiedBuffer("ok", StandardCharsets.US_ASCII));
+        byte[] reply = {0x00, 0x07, 0x60, 0x01, 0x20, 0x00, 0x03, 'o', 'k'};
+        assertArrayEquals(reply, readAll(channel));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    @DisplayName("TPDU writes before any request come from the local NII")
+    void tpduUsesLocalNiiFirst() {
+        EmbeddedChannel channel = channel(Framing.TPDU);
+
+        channel.writeOutbound(Unpooled.copiedBuffer("x", StandardCharsets.US_ASCII));
+        byte[] frame = {0x00, 0x06, 0x60, 0x00, 0x00, 0x00, 0x03, 'x'};
+        assertArrayEquals(frame, readAll(channel));
+        assertFalse(channel.finish());
+    }
+}
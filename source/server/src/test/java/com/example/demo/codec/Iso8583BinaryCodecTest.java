@@ -0,0 +1,121 @@
+package com.example.server.codec;
+
+import com.example.common.codec.Iso8583BinaryCodec;
+import com.example.common.codec.Iso8583Codec;
+import com.example.common.codec.WireFormat;
+import com.example.common.model.Iso8583Message;
+import com.example.common.rules.Iso8583Rules;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.CorruptedFrameException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Iso8583BinaryCodecTest {
+
+    private static Iso8583Message authorizationRequest() {
+        Iso8583Message message = new Iso8583Message();
+        message.setMti("0200");
+        message.addField(2, "4000123456789012");
+        message.addField(3, "000000");
+        message.addField(4, "000000001000");
+        message.addField(7, "1016120000");
+        message.addField(11, "123456");
+        message.addField(37, "123456789012");
+        message.addField(41, "SIM001  ");
+        message.addField(52, "0123456789ABCDEF");
+        message.addField(48, "private data");
+        return message;
+    }
+
+    private static Iso8583Message roundTrip(Iso8583Codec codec, Iso8583Message message) {
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            codec.encode(message, buf);
+            return codec.decode(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    @DisplayName("ASCII binary codec should round-trip every field")
+    void shouldRoundTripAsciiBinary() {
+        Iso8583Message original = authorizationRequest();
+        Iso8583Message decoded = roundTrip(WireFormat.BINARY.codec(), original);
+
+        assertEquals("0200", decoded.getMti());
+        assertEquals(original.getFields(), decoded.getFields());
+    }
+
+    @Test
+    @DisplayName("BCD binary codec should round-trip every field")
+    void shouldRoundTripBcdBinary() {
+        Iso8583Message original = authorizationRequest();
+        Iso8583Message decoded = roundTrip(WireFormat.BINARY_BCD.codec(), original);
+
+        assertEquals("0200", decoded.getMti());
+        assertEquals(original.getFields(), decoded.getFields());
+    }
+
+    @Test
+    @DisplayName("Should write primary bitmap and LLVAR prefix in the expected layout")
+    void shouldWriteExpectedLayout() {
+        Iso8583Message message = new Iso8583Message();
+        message.setMti("0800");
+        message.addField(2, "123");
+        message.addField(11, "000001");
+
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            new Iso8583BinaryCodec(Iso8583Rules.getDefault(), true).encode(message, buf);
+
+            assertEquals(0x08, buf.readUnsignedByte(), "MTI is packed BCD");
+            assertEquals(0x00, buf.readUnsignedByte());
+            assertEquals(0x4020000000000000L, buf.readLong(), "Bits for fields 2 and 11");
+            assertEquals(0x03, buf.readUnsignedByte(), "LLVAR length prefix");
+            assertEquals(0x01, buf.readUnsignedByte(), "Odd-length PAN is left padded");
+            assertEquals(0x23, buf.readUnsignedByte());
+            assertEquals(3, buf.readableBytes(), "Six-digit STAN packs into three bytes");
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    @DisplayName("Should emit a secondary bitmap when fields above 64 are present")
+    void shouldHandleSecondaryBitmap() {
+        Iso8583Message message = new Iso8583Message();
+        message.setMti("0800");
+        message.addField(7, "1016120000");
+        message.addField(11, "000001");
+        message.addField(70, "1");
+
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            WireFormat.BINARY.codec().encode(message, buf);
+            assertTrue((buf.getLong(4) & (1L << 63)) != 0, "Field 1 flags the secondary bitmap");
+
+            Iso8583Message decoded = WireFormat.BINARY.codec().decode(buf);
+            assertEquals("001", decoded.getField(70), "Fixed numerics are zero padded");
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject truncated frames")
+    void shouldRejectTruncatedFrames() {
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            WireFormat.BINARY.codec().encode(authorizationRequest(), buf);
+            buf.writerIndex(buf.writerIndex() - 3);
+
+            assertThrows(CorruptedFrameException.class, () -> WireFormat.BINARY.codec().decode(buf));
+        } finally {
+            buf.release();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.server.codec;
+
+import com.example.common.codec.Iso8583Frames;
+import com.example.common.codec.Iso8583MessageEncoder;
+import com.example.common.codec.WireFormat;
+import com.example.common.model.Iso8583Message;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.LengthFieldPrepender;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Iso8583FramesTest {
+
+    private static Iso8583Message authorizationRequest() {
+        Iso8583Message message = new Iso8583Message();
+        message.setMti("0200");
+        message.addField(2, "4000123456789012");
+        message.addField(4, "000000001000");
+        message.addField(11, "123456");
+        message.addField(37, "123456789012");
+        message.addField(41, "SIM001  ");
+        return message;
+    }
+
+    private static EmbeddedChannel clientPipeline(WireFormat format) {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        channel.pipeline().addLast(Iso8583Frames.FRAMER, new LengthFieldPrepender(Iso8583Frames.LENGTH_FIELD_LENGTH));
+        channel.pipeline().addLast(new Iso8583MessageEncoder(format.codec()));
+        return channel;
+    }
+
+    private static byte[] readAll(EmbeddedChannel channel) {
+        ByteBuf out = Unpooled.buffer();
+        ByteBuf part;
+        while ((part = channel.readOutbound()) != null) {
+            out.writeBytes(part);
+            part.release();
+        }
+        byte[] bytes = ByteBufUtil.getBytes(out);
+        out.release();
+        return bytes;
+    }
+
+    @Test
+    @DisplayName("Pre-framed writes should match the pipeline's own encoding and release the frame")
+    void preFramedWritesShouldMatchPipeline() {
+        for (WireFormat format : WireFormat.values()) {
+            EmbeddedChannel reference = clientPipeline(format);
+            reference.writeAndFlush(authorizationRequest());
+            byte[] expected = readAll(reference);
+
+            ByteBuf frame = Iso8583Frames.encode(ByteBufAllocator.DEFAULT, format.codec(), authorizationRequest());
+            EmbeddedChannel first = clientPipeline(format);
+            EmbeddedChannel second = clientPipeline(format);
+            assertTrue(Iso8583Frames.writeFramed(first, frame.retainedDuplicate()).isSuccess());
+            assertTrue(Iso8583Frames.writeFramed(second, frame.retainedDuplicate()).isSuccess());
+
+            assertArrayEquals(expected, readAll(first), format + " frame differs");
+            assertArrayEquals(expected, readAll(second), format + " frame differs");
+            assertTrue(frame.release(), "Channels should have released their duplicates");
+        }
+    }
+
+    @Test
+    @DisplayName("Should fail the write when the pipeline has no framer")
+    void shouldFailWithoutFramer() {
+        ByteBuf frame = Iso8583Frames.encode(ByteBufAllocator.DEFAULT, WireFormat.TEXT.codec(), authorizationRequest());
+        EmbeddedChannel channel = new EmbeddedChannel();
+
+        assertFalse(Iso8583Frames.writeFramed(channel, frame).isSuccess());
+        assertEquals(0, frame.refCnt());
+    }
+}
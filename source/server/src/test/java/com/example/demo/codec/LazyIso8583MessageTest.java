@@ -0,0 +1,89 @@
+package com.example.server.codec;
+
+import com.example.common.codec.LazyIso8583Message;
+import com.example.common.codec.WireFormat;
+import com.example.common.model.Iso8583Message;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.IllegalReferenceCountException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LazyIso8583MessageTest {
+
+    private static ByteBuf frame(String text) {
+        return Unpooled.copiedBuffer(text, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("Text view should expose the same fields as the String parser")
+    void textViewShouldMatchParser() {
+        ByteBuf frame = frame("0200|2=4000123456789012|4=000000001000|11=123456|37=123456789012");
+        Iso8583Message view = WireFormat.TEXT.codec().decodeView(frame);
+        try {
+            assertInstanceOf(LazyIso8583Message.class, view);
+            assertEquals("0200", view.getMti());
+            assertEquals("123456", view.getField(11));
+            assertEquals("123456789012", view.getField(37));
+            assertNull(view.getField(3));
+            assertEquals(4, view.getFields().size());
+        } finally {
+            ((LazyIso8583Message) view).release();
+            frame.release();
+        }
+    }
+
+    @Test
+    @DisplayName("Text view should accept the MTI=..|Fn=.. layout")
+    void textViewShouldAcceptNamedLayout() {
+        ByteBuf frame = frame("MTI=0800|F7=1016120000|F11=000001|F70=001");
+        LazyIso8583Message view = (LazyIso8583Message) WireFormat.TEXT.codec().decodeView(frame);
+        try {
+            assertEquals("0800", view.getMti());
+            assertEquals("001", view.getField(70));
+        } finally {
+            view.release();
+            frame.release();
+        }
+    }
+
+    @Test
+    @DisplayName("Materialized fields should survive releasing the frame")
+    void materializedFieldsShouldSurviveRelease() {
+        Iso8583Message original = new Iso8583Message();
+        original.setMti("0200");
+        original.addField(2, "4000123456789012");
+        original.addField(11, "000042");
+        original.addField(37, "000000000042");
+
+        ByteBuf frame = Unpooled.buffer();
+        WireFormat.BINARY_BCD.codec().encode(original, frame);
+        LazyIso8583Message view = (LazyIso8583Message) WireFormat.BINARY_BCD.codec().decodeView(frame);
+        frame.release();
+
+        assertEquals("000042", view.getField(11));
+        view.release();
+
+        assertEquals("000042", view.getField(11), "Already read fields are plain Strings");
+        assertThrows(IllegalReferenceCountException.class, () -> view.getField(2));
+    }
+
+    @Test
+    @DisplayName("Overwriting a field should not read the frame")
+    void overwriteShouldReplaceIndexedValue() {
+        ByteBuf frame = frame("0210|11=123456|39=00");
+        LazyIso8583Message view = (LazyIso8583Message) WireFormat.TEXT.codec().decodeView(frame);
+        try {
+            view.addField(39, "05");
+            assertEquals("05", view.getField(39));
+            assertEquals("0210|11=123456|39=05", view.toString());
+        } finally {
+            view.release();
+            frame.release();
+        }
+    }
+}
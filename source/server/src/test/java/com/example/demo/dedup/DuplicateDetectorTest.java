@@ -0,0 +1,134 @@
+package com.example.server.dedup;
+
+import com.example.common.dedup.DuplicateDetector;
+import com.example.common.model.Iso8583Message;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DuplicateDetectorTest {
+
+    private long now = 1_000;
+    private final AtomicInteger handled = new AtomicInteger();
+    private final UnaryOperator<Iso8583Message> approve = request -> {
+        Iso8583Message response = new Iso8583Message();
+        response.setMti("0210");
+        response.addField(11, request.getField(11));
+        response.addField(37, request.getField(37));
+        response.addField(38, String.format("%06d", handled.incrementAndGet()));
+        response.addField(39, "00");
+        return response;
+    };
+
+    private static Iso8583Message request(String mti, String stan, String rrn, String terminal) {
+        Iso8583Message message = new Iso8583Message();
+        message.setMti(mti);
+        message.addField(11, stan);
+        message.addField(37, rrn);
+        message.addField(41, terminal);
+        return message;
+    }
+
+    @Test
+    @DisplayName("Should replay the original response to a retransmission and its repeat MTI")
+    void shouldReplayOriginalResponse() {
+        DuplicateDetector detector = new DuplicateDetector(16, 60_000, () -> now);
+
+        Iso8583Message first = detector.process(request("0200", "000001", "000000000001", "TERM0001"), approve);
+        now += 5_000;
+        Iso8583Message retry = detector.process(request("0200", "000001", "000000000001", "TERM0001"), approve);
+        Iso8583Message repeat = detector.process(request("0201", "000001", "000000000001", "TERM0001"), approve);
+
+        assertEquals(1, handled.get());
+        assertEquals(first.toString(), retry.toString());
+        assertEquals(first.toString(), repeat.toString());
+        assertNotSame(first, retry, "Replays should be copies of the remembered response");
+        assertEquals(2, detector.getReplayedCount());
+    }
+
+    @Test
+    @DisplayName("Should treat a different STAN, terminal or MTI class as a new request")
+    void shouldKeyOnStanTerminalAndMti() {
+        DuplicateDetector detector = new DuplicateDetector(16, 60_000, () -> now);
+
+        detector.process(request("0200", "000001", "000000000001", "TERM0001"), approve);
+        detector.process(request("0200", "000002", "000000000001", "TERM0001"), approve);
+        detector.process(request("0200", "000001", "000000000001", "TERM0002"), approve);
+        detector.process(request("0400", "000001", "000000000001", "TERM0001"), approve);
+
+        assertEquals(4, handled.get());
+        assertEquals(0, detector.getReplayedCount());
+    }
+
+    @Test
+    @DisplayName("Should forget requests after the window and when the handler fails")
+    void shouldForgetExpiredAndFailedRequests() {
+        DuplicateDetector detector = new DuplicateDetector(16, 60_000, () -> now);
+
+        detector.process(request("0200", "000001", "000000000001", "TERM0001"), approve);
+        now += 60_001;
+        detector.process(request("0200", "000001", "000000000001", "TERM0001"), approve);
+        assertEquals(2, handled.get());
+
+        assertThrows(IllegalStateException.class, () -> detector.process(request("0100", "000009", "000000000009", "TERM0001"),
+                r -> {
+                    throw new IllegalStateException("ledger unavailable");
+                }));
+        detector.process(request("0100", "000009", "000000000009", "TERM0001"), approve);
+        assertEquals(3, handled.get());
+    }
+
+    @Test
+    @DisplayName("Should drop a duplicate whose original is still being processed")
+    void shouldDropInFlightDuplicate() {
+        DuplicateDetector detector = new DuplicateDetector(16, 60_000, () -> now);
+        Iso8583Message original = request("0200", "000001", "000000000001", "TERM0001");
+
+        Iso8583Message response = detector.process(original, request -> {
+            assertNull(detector.process(request("0200", "000001", "000000000001", "TERM0001"), approve));
+            return approve.apply(request);
+        });
+
+        assertNotNull(response);
+        assertEquals(1, handled.get());
+        assertEquals(1, detector.getInFlightCount());
+    }
+
+    @Test
+    @DisplayName("Should stay bounded and keep detecting duplicates from the previous generation")
+    void shouldStayBoundedAcrossGenerations() {
+        DuplicateDetector detector = new DuplicateDetector(4, 60_000, () -> now);
+
+        for (int i = 0; i < 6; i++) {
+            detector.process(request("0200", String.format("%06d", i), "000000000001", "TERM0001"), approve);
+        }
+        // 0-3 filled the first generation; 4 and 5 went to the second
+        detector.process(request("0200", "000002", "000000000001", "TERM0001"), approve);
+        detector.process(request("0200", "000005", "000000000001", "TERM0001"), approve);
+        assertEquals(6, handled.get());
+
+        for (int i = 6; i < 10; i++) {
+            detector.process(request("0200", String.format("%06d", i), "000000000001", "TERM0001"), approve);
+        }
+        detector.process(request("0200", "000000", "000000000001", "TERM0001"), approve);
+        assertEquals(11, handled.get(), "The oldest generation should have been recycled");
+    }
+
+    @Test
+    @DisplayName("Should always handle requests without an RRN or STAN")
+    void shouldSkipRequestsWithoutKey() {
+        DuplicateDetector detector = new DuplicateDetector(16, 60_000, () -> now);
+        Iso8583Message echo = new Iso8583Message();
+        echo.setMti("0800");
+        echo.addField(11, "000001");
+
+        detector.process(echo, approve);
+        detector.process(echo, approve);
+
+        assertEquals(2, handled.get());
+    }
+}
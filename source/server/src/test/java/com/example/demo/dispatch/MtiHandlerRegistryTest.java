@@ -0,0 +1,80 @@
+package com.example.server.dispatch;
+
+import com.example.common.dispatch.AuthorizationHandler;
+import com.example.common.dispatch.MtiHandlerRegistry;
+import com.example.common.dispatch.NetworkManagementHandler;
+import com.example.common.dispatch.ReversalHandler;
+import com.example.common.model.Iso8583Message;
+import com.example.common.rules.Iso8583Rules;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MtiHandlerRegistryTest {
+
+    private final MtiHandlerRegistry registry = new MtiHandlerRegistry(Iso8583Rules.getDefault(), 11, 37)
+            .register(new AuthorizationHandler(request -> "4000123456789012".equals(request.getField(2)) ? "51" : "00"))
+            .register(new ReversalHandler())
+            .register(new NetworkManagementHandler());
+
+    private static Iso8583Message request(String mti, String pan) {
+        Iso8583Message message = new Iso8583Message();
+        message.setMti(mti);
+        message.addField(2, pan);
+        message.addField(3, "000000");
+        message.addField(4, "000000001000");
+        message.addField(7, "0307090504");
+        message.addField(11, "000042");
+        message.addField(37, "123456789012");
+        message.addField(48, "not needed by any handler");
+        message.addField(90, "020000004203070905040000000000000000000000");
+        return message;
+    }
+
+    @Test
+    @DisplayName("Maps four-digit MTIs to array indexes and request MTIs to response MTIs")
+    void indexesMtis() {
+        assertEquals(200, MtiHandlerRegistry.index("0200"));
+        assertEquals(-1, MtiHandlerRegistry.index("02A0"));
+        assertEquals(-1, MtiHandlerRegistry.index("020"));
+        assertEquals("0430", MtiHandlerRegistry.responseMti("0420"));
+        assertNull(MtiHandlerRegistry.responseMti("0210"));
+    }
+
+    @Test
+    @DisplayName("Dispatches by MTI and leaves unregistered MTIs unhandled")
+    void dispatches() {
+        Iso8583Message approved = registry.handler("0200").handle(request("0200", "4111111111111111"));
+        assertEquals("0210", approved.getMti());
+        assertEquals("00", approved.getField(39));
+        assertTrue(approved.hasField(38));
+
+        Iso8583Message declined = registry.handler("0100").handle(request("0100", "4000123456789012"));
+        assertEquals("0110", declined.getMti());
+        assertEquals("51", declined.getField(39));
+        assertFalse(declined.hasField(38));
+
+        Iso8583Message reversed = registry.handler("0400").handle(request("0400", "4111111111111111"));
+        assertEquals("0410", reversed.getMti());
+        assertEquals("000042", reversed.getField(11));
+        assertNotNull(reversed.getField(90));
+
+        assertNull(registry.handler("0300"));
+        assertNull(registry.handler("bad"));
+    }
+
+    @Test
+    @DisplayName("Extracts the declared, required and always-read fields only")
+    void extractsNeededFields() {
+        int[] fields = registry.fields("0800");
+        assertArrayEquals(new int[]{7, 11, 37, 70}, fields);
+
+        Iso8583Message extracted = registry.extract(request("0400", "4111111111111111"));
+        assertEquals("0400", extracted.getMti());
+        assertTrue(extracted.hasField(90));
+        assertFalse(extracted.hasField(48));
+
+        assertArrayEquals(new int[]{11, 37}, registry.fields("0300"));
+    }
+}
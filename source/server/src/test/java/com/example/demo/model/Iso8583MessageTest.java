@@ -100,4 +100,34 @@ class Iso8583MessageTest {
 
         System.out.println("Complete message: " + result);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should render fields in ascending field order")
+    void shouldRenderFieldsInAscendingOrder() {
+        message.setMti("0200");
+        message.addField(70, "001");
+        message.addField(11, "123456");
+        message.addField(2, "4000123456789012");
+        message.addField(128, "0123456789ABCDEF");
+
+        assertEquals("0200|2=4000123456789012|11=123456|70=001|128=0123456789ABCDEF", message.toString());
+        assertArrayEquals(new Integer[] {2, 11, 70, 128}, message.getFields().keySet().toArray(new Integer[0]),
+                "Map view should iterate in ascending order");
+    }
+
+    @Test
+    @DisplayName("Should copy only the fields present in the source")
+    void shouldCopyPresentFields() {
+        message.addField(2, "4000123456789012");
+        message.addField(11, "123456");
+
+        Iso8583Message response = new Iso8583Message();
+        response.copyFields(message, 2, 3, 11);
+
+        assertEquals(2, response.getFieldCount());
+        assertFalse(response.hasField(3), "Missing source field should not be copied");
+        assertEquals("123456", response.removeField(11));
+        assertFalse(response.hasField(11), "Removed field should be gone");
+        assertThrows(IllegalArgumentException.class, () -> response.addField(129, "x"));
+    }
+}
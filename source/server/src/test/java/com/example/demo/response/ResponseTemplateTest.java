@@ -0,0 +1,60 @@
+package com.example.server.response;
+
+import com.example.common.model.Iso8583Message;
+import com.example.common.response.Digits;
+import com.example.common.response.IsoClock;
+import com.example.common.response.ResponseTemplate;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseTemplateTest {
+
+    // 2024-03-07 09:05:04 UTC
+    private static final IsoClock FIXED = new IsoClock(
+            Clock.fixed(Instant.parse("2024-03-07T09:05:04Z"), ZoneOffset.UTC));
+
+    @Test
+    @DisplayName("Echoes present request fields and fills fixed, clock and approval fields")
+    void respondsFromTemplate() {
+        ResponseTemplate template = ResponseTemplate.builder("0210")
+                .echo(2, 11, 37)
+                .transmissionDateTime()
+                .localDateTime()
+                .approvalCode()
+                .set(39, "00")
+                .clock(FIXED)
+                .build();
+
+        Iso8583Message request = new Iso8583Message();
+        request.setMti("0200");
+        request.addField(11, "000042");
+        request.addField(37, "123456789012");
+
+        Iso8583Message response = template.respond(request);
+
+        assertEquals("0210", response.getMti());
+        assertFalse(response.hasField(2));
+        assertEquals("000042", response.getField(11));
+        assertEquals("123456789012", response.getField(37));
+        assertEquals("0307090504", response.getField(7));
+        assertEquals("090504", response.getField(12));
+        assertEquals("0307", response.getField(13));
+        assertTrue(response.getField(38).matches("\\d{6}"));
+        assertEquals("00", response.getField(39));
+    }
+
+    @Test
+    @DisplayName("Zero-pads to the requested width")
+    void zeroPads() {
+        assertEquals("000042", Digits.zeroPad(42, 6));
+        assertEquals("000000000000", Digits.zeroPad(0, 12));
+        assertEquals("23456", Digits.zeroPad(123456, 5));
+        assertThrows(IllegalArgumentException.class, () -> Digits.zeroPad(-1, 4));
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.server.routing;
+
+import com.example.common.model.Iso8583Message;
+import com.example.common.routing.RoutingTable;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutingTableTest {
+
+    private final Set<String> down = new HashSet<>();
+    private final RoutingTable<String> routes = new RoutingTable<>(link -> !down.contains(link));
+
+    private static Iso8583Message message(String terminal, String acquirer, String pan, String rrn) {
+        Iso8583Message message = new Iso8583Message();
+        message.setMti("0200");
+        message.addField(2, pan);
+        message.addField(32, acquirer);
+        message.addField(37, rrn);
+        message.addField(41, terminal);
+        return message;
+    }
+
+    @Test
+    @DisplayName("Should route by the most specific learned key and fall back to broadcast")
+    void shouldRouteByMostSpecificKey() {
+        routes.learn(message("TERM0001", "123456", "4000001234567890", "000000000001"), "link-a");
+        routes.bind(RoutingTable.Key.BIN, "511111", "link-b");
+
+        assertEquals("link-a", routes.route(message("TERM0001  ", null, "5111110000000000", "000000000002")),
+                "Terminal id should win over BIN, ignoring padding");
+        assertEquals("link-a", routes.route(message(null, "123456", "5111110000000000", "000000000003")));
+        assertEquals("link-b", routes.route(message(null, null, "5111110000000000", "000000000004")));
+        assertNull(routes.route(message("OTHER001", "999", "6011000000000000", "000000000005")));
+        assertEquals(3, routes.getRoutedCount());
+        assertEquals(1, routes.getUnroutedCount());
+    }
+
+    @Test
+    @DisplayName("Should keep a transaction on one group member and skip links that are down")
+    void shouldPickStableGroupMember() {
+        routes.bind(RoutingTable.Key.TERMINAL, "TERM0001", "link-a");
+        routes.bind(RoutingTable.Key.TERMINAL, "TERM0001", "link-b");
+        routes.bind(RoutingTable.Key.TERMINAL, "TERM0001", "link-a");
+
+        Iso8583Message request = message("TERM0001", null, null, "000000000042");
+        String first = routes.route(request);
+        assertEquals(first, routes.route(request), "Same RRN should use the same link");
+
+        down.add(first);
+        String other = routes.route(request);
+        assertNotNull(other);
+        assertNotEquals(first, other);
+
+        routes.remove(other);
+        assertNull(routes.route(request), "Only a link that is down is left");
+        routes.remove(first);
+        assertEquals(0, routes.size(RoutingTable.Key.TERMINAL));
+    }
+}
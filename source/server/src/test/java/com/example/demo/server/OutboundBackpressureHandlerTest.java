@@ -0,0 +1,84 @@
+package com.example.server.server;
+
+import com.example.server.metrics.OutboundMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboundBackpressureHandlerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final OutboundMetrics metrics = new OutboundMetrics(registry);
+
+    private EmbeddedChannel channel(OutboundBackpressureHandler handler) {
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+        channel.config().setOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(8, 16));
+        return channel;
+    }
+
+    private static ByteBuf frame(int size) {
+        return Unpooled.buffer(size).writeZero(size);
+    }
+
+    private double count(String name) {
+        return registry.get(name).counter().count();
+    }
+
+    @Test
+    @DisplayName("Should park frames and pause reads until the client drains, then write them in order")
+    void shouldParkUntilWritable() {
+        OutboundBackpressureHandler handler = new OutboundBackpressureHandler(OutboundBackpressureHandler.Policy.PARK, 2, metrics);
+        EmbeddedChannel channel = channel(handler);
+
+        // Unflushed bytes above the high water mark make the channel unwritable
+        channel.write(frame(32));
+        assertFalse(channel.isWritable());
+
+        ByteBuf second = frame(1);
+        ByteBuf third = frame(2);
+        ChannelFuture secondWrite = channel.write(second);
+        channel.write(third);
+        ChannelFuture overflow = channel.write(frame(3));
+
+        assertEquals(2, handler.getParkedCount());
+        assertFalse(channel.config().isAutoRead(), "Reads should pause while the client is behind");
+        assertTrue(overflow.isDone() && !overflow.isSuccess(), "Frames beyond the queue limit are dropped");
+        assertEquals(2, count("iso8583.outbound.parked"));
+        assertEquals(1, count("iso8583.outbound.dropped"));
+
+        // Flushing drains the outbound buffer below the low mark
+        channel.flush();
+        assertTrue(secondWrite.isSuccess());
+        assertEquals(0, handler.getParkedCount());
+        assertTrue(channel.config().isAutoRead());
+
+        assertEquals(32, ((ByteBuf) channel.readOutbound()).readableBytes());
+        assertSame(second, channel.readOutbound());
+        assertSame(third, channel.readOutbound());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    @DisplayName("Should disconnect a client that falls behind under the DISCONNECT policy")
+    void shouldDisconnectSlowClient() {
+        EmbeddedChannel channel = channel(new OutboundBackpressureHandler(OutboundBackpressureHandler.Policy.DISCONNECT, 2, metrics));
+
+        channel.write(frame(32));
+        ByteBuf dropped = frame(1);
+        ChannelFuture write = channel.write(dropped);
+
+        assertFalse(write.isSuccess());
+        assertEquals(0, dropped.refCnt());
+        assertFalse(channel.isOpen());
+        assertEquals(1, count("iso8583.outbound.disconnects"));
+        channel.finishAndReleaseAll();
+    }
+}
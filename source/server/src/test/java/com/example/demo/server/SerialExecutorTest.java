@@ -0,0 +1,65 @@
+package com.example.server.server;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SerialExecutorTest {
+
+    @Test
+    @DisplayName("Should run each connection's tasks in order and never two at once")
+    void shouldKeepOrderPerConnection() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            int connections = 4;
+            int tasksPerConnection = 1000;
+            CountDownLatch done = new CountDownLatch(connections * tasksPerConnection);
+            List<List<Integer>> seen = new ArrayList<>();
+            List<AtomicInteger> running = new ArrayList<>();
+            AtomicInteger overlaps = new AtomicInteger();
+
+            List<SerialExecutor> executors = new ArrayList<>();
+            for (int c = 0; c < connections; c++) {
+                executors.add(new SerialExecutor(pool));
+                seen.add(Collections.synchronizedList(new ArrayList<>()));
+                running.add(new AtomicInteger());
+            }
+            for (int i = 0; i < tasksPerConnection; i++) {
+                for (int c = 0; c < connections; c++) {
+                    int connection = c;
+                    int sequence = i;
+                    executors.get(c).execute(() -> {
+                        if (running.get(connection).incrementAndGet() > 1) {
+                            overlaps.incrementAndGet();
+                        }
+                        seen.get(connection).add(sequence);
+                        running.get(connection).decrementAndGet();
+                        done.countDown();
+                    });
+                }
+            }
+
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(0, overlaps.get());
+            for (int c = 0; c < connections; c++) {
+                List<Integer> order = seen.get(c);
+                for (int i = 0; i < tasksPerConnection; i++) {
+                    assertEquals(i, order.get(i), "Connection " + c + " ran out of order");
+                }
+                assertEquals(0, executors.get(c).getPendingCount());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.server.service;
+
+import com.example.server.metrics.ResponseTimeMetrics;
+import com.example.server.metrics.TransactionMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionTimerTest {
+
+    private SimpleMeterRegistry registry;
+    private TransactionTimer timer;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        timer = new TransactionTimer(new TransactionMetrics(registry), new ResponseTimeMetrics(registry), 1, 2, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        timer.shutdown();
+    }
+
+    @Test
+    @DisplayName("A response should cancel the timeout and record the response time")
+    void responseShouldCancelTimeoutAndRecordLatency() throws InterruptedException {
+        timer.startTimer("000000000001");
+        timer.checkResponse("000000000001");
+        timer.checkResponse("000000000001");
+
+        assertEquals(0, timer.getPendingCount());
+        assertEquals(1, registry.get("iso8583.response.time").timer().count(), "Only the first response should be timed");
+        assertEquals(1.0, registry.get("iso8583.transactions.successful").counter().count());
+
+        Thread.sleep(1300);
+        assertEquals(0.0, registry.get("iso8583.transactions.failed").counter().count(), "Cancelled timeout must not fire");
+    }
+
+    @Test
+    @DisplayName("A missing response should be counted as a timeout")
+    void missingResponseShouldTimeOut() throws InterruptedException {
+        timer.startTimer("000000000002");
+        Thread.sleep(1300);
+
+        assertEquals(0, timer.getPendingCount());
+        assertEquals(1.0, registry.get("iso8583.transactions.failed").counter().count());
+        assertEquals(1.0, registry.get("iso8583.response.timeout").counter().count());
+
+        timer.checkResponse("000000000002");
+        assertEquals(0.0, registry.get("iso8583.transactions.successful").counter().count(), "Late response should be ignored");
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.server.service;
+
+import com.example.server.entity.Transaction;
+import com.example.server.entity.TransactionEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionWriteBehindTest {
+
+    private static final String CREATE_TRANSACTIONS = "CREATE TABLE transactions (id BIGINT PRIMARY KEY, "
+            + "source_number VARCHAR(20), target_number VARCHAR(20), status VARCHAR(10), amount DECIMAL(15,2), "
+            + "transaction_time TIMESTAMP, update_time TIMESTAMP, stan VARCHAR(6), mti VARCHAR(4))";
+    private static final String CREATE_EVENTS = "CREATE TABLE transaction_events (id BIGINT PRIMARY KEY, "
+            + "transaction_id BIGINT REFERENCES transactions(id), event_type VARCHAR(20), iso_message TEXT, event_time TIMESTAMP)";
+
+    @TempDir
+    Path tempDir;
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE SEQUENCE transactions_seq START WITH 1 INCREMENT BY 50");
+        jdbc.execute("CREATE SEQUENCE transaction_events_seq START WITH 1 INCREMENT BY 50");
+    }
+
+    private TransactionWriteBehind writer(Path spillFile) {
+        return new TransactionWriteBehind(jdbc, new DataSourceTransactionManager(dataSource),
+                100, 10, 20, 100, spillFile.toString());
+    }
+
+    private static void submit(TransactionWriteBehind writer, String stan) {
+        String message = "0200|4=000000001000|11=" + stan;
+        Transaction transaction = new Transaction("4000123456789012", "MERCHANT", "RECEIVED", new BigDecimal("10.00"), stan, "0200");
+        writer.submit(transaction, List.of(new TransactionEvent(null, "RECEIVED", message), new TransactionEvent(null, "BROADCAST", message)));
+    }
+
+    @Test
+    @DisplayName("Queued transactions should be inserted with events pointing at their generated ids")
+    void shouldWriteTransactionsAndEventsInBatches() {
+        jdbc.execute(CREATE_TRANSACTIONS);
+        jdbc.execute(CREATE_EVENTS);
+        TransactionWriteBehind writer = writer(tempDir.resolve("spill.jsonl"));
+        writer.start();
+        for (int i = 1; i <= 25; i++) {
+            submit(writer, String.format("%06d", i));
+        }
+        writer.stop();
+
+        assertEquals(25, jdbc.queryForObject("SELECT COUNT(*) FROM transactions", Integer.class));
+        assertEquals(50, jdbc.queryForObject("SELECT COUNT(*) FROM transaction_events e "
+                + "JOIN transactions t ON t.id = e.transaction_id", Integer.class), "Every event should reference its transaction");
+        assertFalse(Files.exists(tempDir.resolve("spill.jsonl")), "Nothing should be spilled");
+        assertEquals(1, jdbc.queryForObject("SELECT MIN(id) FROM transactions", Integer.class));
+        assertEquals(25, jdbc.queryForObject("SELECT MAX(id) FROM transactions", Integer.class),
+                "25 rows should come from one pooled-lo block");
+    }
+
+    @Test
+    @DisplayName("Failed batches should be spilled and replayed on the next start")
+    void shouldSpillAndReplayFailedBatches() throws Exception {
+        Path spill = tempDir.resolve("spill.jsonl");
+        TransactionWriteBehind failing = writer(spill);
+        failing.start();
+        submit(failing, "000001");
+        submit(failing, "000002");
+        failing.stop();
+
+        assertEquals(2, Files.readAllLines(spill).size(), "Both transactions should be in the spill file");
+
+        jdbc.execute(CREATE_TRANSACTIONS);
+        jdbc.execute(CREATE_EVENTS);
+        TransactionWriteBehind recovered = writer(spill);
+        recovered.start();
+        recovered.stop();
+
+        assertEquals(2, jdbc.queryForObject("SELECT COUNT(*) FROM transactions", Integer.class));
+        assertEquals(4, jdbc.queryForObject("SELECT COUNT(*) FROM transaction_events", Integer.class));
+        assertFalse(Files.exists(spill), "Replayed spill file should be removed");
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.server.tracing;
+
+import com.example.common.tracing.TransactionTrace;
+import com.example.common.tracing.TransactionTracer;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionTracerTest {
+
+    private final List<SpanData> ended = new CopyOnWriteArrayList<>();
+
+    private TransactionTracer tracer(TransactionTracer.Mode mode, double ratio, int maxPerSecond, int maxAttributes) {
+        SdkTracerProvider provider = SdkTracerProvider.builder()
+                .addSpanProcessor(new SpanProcessor() {
+                    @Override
+                    public void onStart(Context parentContext, ReadWriteSpan span) {
+                    }
+
+                    @Override
+                    public boolean isStartRequired() {
+                        return false;
+                    }
+
+                    @Override
+                    public void onEnd(ReadableSpan span) {
+                        ended.add(span.toSpanData());
+                    }
+
+                    @Override
+                    public boolean isEndRequired() {
+                        return true;
+                    }
+                })
+                .build();
+        return new TransactionTracer(provider.get("test"), mode, ratio, maxPerSecond, 10_000, maxAttributes);
+    }
+
+    @Test
+    @DisplayName("Samples by RRN hash, identically across tracer instances")
+    void samplesByRrn() {
+        TransactionTracer first = tracer(TransactionTracer.Mode.SAMPLED, 0.25, 0, 8);
+        TransactionTracer second = tracer(TransactionTracer.Mode.SAMPLED, 0.25, 0, 8);
+
+        int sampled = 0;
+        for (int i = 0; i < 10_000; i++) {
+            String rrn = String.format("%012d", i * 7919L);
+            assertEquals(first.isSampled(rrn), second.isSampled(rrn));
+            if (first.isSampled(rrn)) {
+                sampled++;
+            }
+        }
+        assertTrue(sampled > 2_000 && sampled < 3_000, "sampled " + sampled);
+    }
+
+    @Test
+    @DisplayName("Unsampled transactions only produce a span when they fail")
+    void tracesFailuresOfUnsampledTransactions() {
+        TransactionTracer tracer = tracer(TransactionTracer.Mode.SAMPLED, 0.0, 0, 8);
+
+        TransactionTrace ok = tracer.start("tx", "0200", "000001", "000000000001");
+        assertFalse(ok.isSampled());
+        ok.end();
+        assertTrue(ended.isEmpty());
+
+        TransactionTrace failed = tracer.start("tx", "0200", "000002", "000000000002");
+        failed.fail("declined by issuer").end();
+        assertEquals(1, ended.size());
+        SpanData span = ended.get(0);
+        assertEquals(StatusCode.ERROR, span.getStatus().getStatusCode());
+        assertEquals("error", span.getAttributes().get(AttributeKey.stringKey("iso8583.trace_reason")));
+        assertEquals("000000000002", span.getAttributes().get(AttributeKey.stringKey("iso8583.rrn")));
+    }
+
+    @Test
+    @DisplayName("Caps spans per second and attributes per span")
+    void appliesBudgets() {
+        TransactionTracer tracer = tracer(TransactionTracer.Mode.SAMPLED, 1.0, 2, 4);
+
+        int sampled = 0;
+        for (int i = 0; i < 10; i++) {
+            TransactionTrace trace = tracer.start("tx", "0200", "000001", "00000000000" + i);
+            if (trace.isSampled()) {
+                sampled++;
+            }
+            trace.attribute("a", "1").attribute("b", "2").end();
+        }
+        // Both the cap and the window may roll over once during the loop
+        assertTrue(sampled >= 2 && sampled <= 4, "sampled " + sampled);
+        SpanData span = ended.get(0);
+        assertEquals(4, span.getAttributes().size());
+        assertNull(span.getAttributes().get(AttributeKey.stringKey("b")));
+    }
+
+    @Test
+    @DisplayName("OFF mode never creates spans")
+    void offCreatesNothing() {
+        TransactionTracer tracer = tracer(TransactionTracer.Mode.OFF, 1.0, 0, 8);
+        tracer.start("tx", "0200", "000001", "000000000001").fail("boom").end();
+        assertTrue(ended.isEmpty());
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.server.validator;
+
+import com.example.common.model.Iso8583Message;
+import com.example.common.model.ValidationResult;
+import com.example.common.validator.Iso8583Validator;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Iso8583ValidatorTest {
+
+    private final Iso8583Validator validator = new Iso8583Validator();
+
+    private static Iso8583Message financialRequest() {
+        Iso8583Message message = new Iso8583Message();
+        message.setMti("0200");
+        message.addField(2, "4000123456789012");
+        message.addField(3, "000000");
+        message.addField(4, "000000001000");
+        message.addField(7, "1016120000");
+        message.addField(11, "123456");
+        message.addField(37, "123456789012");
+        return message;
+    }
+
+    @Test
+    @DisplayName("Valid messages should share one immutable result")
+    void validMessagesShouldShareResult() {
+        ValidationResult result = validator.validate(financialRequest());
+
+        assertTrue(result.isValid());
+        assertTrue(result.getErrors().isEmpty());
+        assertSame(ValidationResult.valid(), result, "Valid result should not be allocated per message");
+        assertThrows(UnsupportedOperationException.class, () -> result.addError("x"));
+    }
+
+    @Test
+    @DisplayName("Should collect every error unless fail-fast is requested")
+    void shouldCollectAllErrorsUnlessFailFast() {
+        Iso8583Message message = financialRequest();
+        message.removeField(37);
+        message.addField(3, "00A0");
+        message.addField(4, "");
+
+        ValidationResult all = validator.validate(message);
+        assertFalse(all.isValid());
+        assertEquals("Missing required field: 37", all.getErrors().get(0));
+        assertTrue(all.getErrors().contains("Field 3 must be numeric"));
+        assertTrue(all.getErrors().contains("Field 3 must be exactly 6 characters"));
+        assertTrue(all.getErrors().contains("Field 4 must be numeric"), "Empty value is not numeric");
+
+        ValidationResult first = validator.validate(message, true);
+        assertFalse(first.isValid());
+        assertEquals(1, first.getErrors().size(), "Fail-fast should stop at the first error");
+    }
+}
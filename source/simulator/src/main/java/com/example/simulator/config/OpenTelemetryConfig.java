@@ -1,8 +1,10 @@
 package com.example.simulator.config;
 
+import com.example.common.tracing.TransactionTracer;
 import io.opentelemetry.api.OpenTelemetry;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.api.metrics.Meter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -18,4 +20,19 @@ public class OpenTelemetryConfig {
     public Meter meter(OpenTelemetry openTelemetry) {
         return openTelemetry.getMeter("iso8583-simulator");
     }
-}
\ No newline at end of file
+
+    /**
+     * Per-transaction spans; see {@link TransactionTracer} for the modes.
+     */
+    @Bean
+    public TransactionTracer transactionTracer(Tracer tracer,
+                                               @Value("${iso8583.tracing.mode:SAMPLED}") TransactionTracer.Mode mode,
+                                               @Value("${iso8583.tracing.sample-ratio:0.01}") double sampleRatio,
+                                               @Value("${iso8583.tracing.max-per-second:100}") int maxPerSecond,
+                                               @Value("${iso8583.tracing.slow-threshold-ms:500}") long slowThresholdMs,
+                                               @Value("${iso8583.tracing.max-attributes:8}") int maxAttributes) {
+        System.out.println("🔧 Transaction tracing: " + mode + (mode == TransactionTracer.Mode.SAMPLED
+                ? " (ratio " + sampleRatio + ", max " + maxPerSecond + "/s, slow >= " + slowThresholdMs + " ms)" : ""));
+        return new TransactionTracer(tracer, mode, sampleRatio, maxPerSecond, slowThresholdMs, maxAttributes);
+    }
+}
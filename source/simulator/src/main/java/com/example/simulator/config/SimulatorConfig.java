@@ -9,9 +9,11 @@ public class SimulatorConfig {
     
     private boolean enabled = true;
     private Mode mode = Mode.SCHEDULED;
+    private Transport transport = Transport.UNARY;
     private Scheduled scheduled = new Scheduled();
     private LoadTest loadTest = new LoadTest();
     private Spike spike = new Spike();
+    private Stream stream = new Stream();
     
     public enum Mode {
         SCHEDULED,    // Regular interval
@@ -20,6 +22,11 @@ public class SimulatorConfig {
         MANUAL        // Manual only
     }
     
+    public enum Transport {
+        UNARY,        // One SendTransaction call per transaction
+        STREAM        // All transactions over one StreamTransactions call
+    }
+    
     public static class Scheduled {
         private long intervalMs = 15000;
         private int maxRetries = 3;
@@ -65,14 +72,28 @@ public class SimulatorConfig {
         public void setIntervalBetweenSpikesSeconds(int intervalBetweenSpikesSeconds) { this.intervalBetweenSpikesSeconds = intervalBetweenSpikesSeconds; }
     }
     
+    public static class Stream {
+        private int maxInFlight = 256;
+        private long responseTimeoutMs = 5000;
+        
+        public int getMaxInFlight() { return maxInFlight; }
+        public void setMaxInFlight(int maxInFlight) { this.maxInFlight = maxInFlight; }
+        public long getResponseTimeoutMs() { return responseTimeoutMs; }
+        public void setResponseTimeoutMs(long responseTimeoutMs) { this.responseTimeoutMs = responseTimeoutMs; }
+    }
+    
     public boolean isEnabled() { return enabled; }
     public void setEnabled(boolean enabled) { this.enabled = enabled; }
     public Mode getMode() { return mode; }
     public void setMode(Mode mode) { this.mode = mode; }
+    public Transport getTransport() { return transport; }
+    public void setTransport(Transport transport) { this.transport = transport; }
     public Scheduled getScheduled() { return scheduled; }
     public void setScheduled(Scheduled scheduled) { this.scheduled = scheduled; }
     public LoadTest getLoadTest() { return loadTest; }
     public void setLoadTest(LoadTest loadTest) { this.loadTest = loadTest; }
     public Spike getSpike() { return spike; }
     public void setSpike(Spike spike) { this.spike = spike; }
+    public Stream getStream() { return stream; }
+    public void setStream(Stream stream) { this.stream = stream; }
 }
\ No newline at end of file
@@ -1,13 +1,14 @@
 package com.example.simulator.service;
 
 import com.example.common.model.Iso8583Message;
+import com.example.common.response.Digits;
+import com.example.common.response.IsoClock;
+import com.example.common.tracing.TransactionTrace;
+import com.example.common.tracing.TransactionTracer;
 import com.example.simulator.config.SimulatorConfig;
 import com.example.simulator.grpc.Iso8583Proto;
 import com.example.simulator.grpc.Iso8583ServiceGrpc;
 import io.grpc.StatusRuntimeException;
-import io.opentelemetry.api.trace.Tracer;
-import io.opentelemetry.api.trace.Span;
-import io.opentelemetry.api.trace.StatusCode;
 import io.opentelemetry.context.Scope;
 import net.devh.boot.grpc.client.inject.GrpcClient;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,9 +18,6 @@ import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Random;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -34,9 +32,12 @@ public class TransactionSimulatorService {
     private SimulatorConfig config;
     
     @Autowired
-    private Tracer tracer;
+    private TransactionTracer tracer;
+    
+    @Autowired
+    private TransactionStream transactionStream;
 
-    private final Random random = new Random();
+    private final IsoClock clock = IsoClock.system();
     private final AtomicInteger stanCounter = new AtomicInteger(1);
     private final AtomicLong totalTransactions = new AtomicLong(0);
     private final AtomicLong successfulTransactions = new AtomicLong(0);
@@ -86,7 +87,7 @@ public class TransactionSimulatorService {
             }
             
             for (int i = 0; i < loadConfig.getThreadsPerSecond(); i++) {
-                executorService.submit(this::sendTransaction);
+                dispatchTransaction();
             }
         }, 0, 1, TimeUnit.SECONDS);
     }
@@ -100,7 +101,7 @@ public class TransactionSimulatorService {
         scheduler.scheduleAtFixedRate(() -> {
             if (!spikeActive) {
                 for (int i = 0; i < spikeConfig.getNormalTps(); i++) {
-                    executorService.submit(this::sendTransaction);
+                    dispatchTransaction();
                 }
             }
         }, 0, 1, TimeUnit.SECONDS);
@@ -112,7 +113,7 @@ public class TransactionSimulatorService {
             
             ScheduledFuture<?> spikeTask = scheduler.scheduleAtFixedRate(() -> {
                 for (int i = 0; i < spikeConfig.getSpikeTps(); i++) {
-                    executorService.submit(this::sendTransaction);
+                    dispatchTransaction();
                 }
             }, 0, 1, TimeUnit.SECONDS);
             
@@ -125,26 +126,37 @@ public class TransactionSimulatorService {
         }, spikeConfig.getIntervalBetweenSpikesSeconds(), spikeConfig.getIntervalBetweenSpikesSeconds(), TimeUnit.SECONDS);
     }
     
+    /**
+     * Starts one generated transaction. Over the stream this only blocks while the stream is at
+     * its in-flight limit, so no worker thread is needed per transaction.
+     */
+    private void dispatchTransaction() {
+        if (config.getTransport() == SimulatorConfig.Transport.STREAM) {
+            sendTransaction();
+        } else {
+            executorService.submit(this::sendTransaction);
+        }
+    }
+    
     public void sendTransaction() {
+        if (config.getTransport() == SimulatorConfig.Transport.STREAM) {
+            streamTransaction();
+            return;
+        }
         Iso8583Message transaction = createRandomTransaction();
-        String stan = transaction.getField(11);
         
-        Span span = tracer.spanBuilder("iso8583.simulator.send_transaction")
-                .setAttribute("iso8583.stan", stan)
-                .setAttribute("iso8583.correlation_id", stan)
-                .startSpan();
+        TransactionTrace trace = tracer.start("iso8583.simulator.send_transaction", transaction)
+                .attribute("transaction.amount", transaction.getField(4));
         
-        try (Scope scope = span.makeCurrent()) {
+        try (Scope scope = trace.makeCurrent()) {
             totalTransactions.incrementAndGet();
             
             for (int attempt = 1; attempt <= config.getScheduled().getMaxRetries(); attempt++) {
                 try {
                     String message = transaction.toString();
-                    
-                    span.setAttribute("transaction.mti", transaction.getMti())
-                        .setAttribute("transaction.stan", stan)
-                        .setAttribute("transaction.amount", transaction.getField(4))
-                        .setAttribute("attempt", attempt);
+                    if (attempt > 1) {
+                        trace.attribute("attempt", attempt);
+                    }
                 
                 Iso8583Proto.TransactionRequest request = Iso8583Proto.TransactionRequest.newBuilder()
                         .setMessage(message)
@@ -157,21 +169,21 @@ public class TransactionSimulatorService {
                 
                     if (response.getSuccess()) {
                         successfulTransactions.incrementAndGet();
-                        span.setStatus(StatusCode.OK);
                         if (config.getMode() == SimulatorConfig.Mode.SCHEDULED) {
                             System.out.println("✅ Transaction sent successfully");
                         }
                     } else {
                         failedTransactions.incrementAndGet();
-                        span.setStatus(StatusCode.ERROR, "Transaction failed: " + response.getMessage());
+                        trace.fail("Transaction failed: " + response.getMessage());
                         System.err.println("❌ Transaction failed: " + response.getMessage());
                     }
                     return;
                 
                 } catch (Exception e) {
                     failedTransactions.incrementAndGet();
-                    span.setStatus(StatusCode.ERROR, "Exception: " + e.getMessage());
-                    if (attempt < config.getScheduled().getMaxRetries()) {
+                    if (attempt == config.getScheduled().getMaxRetries()) {
+                        trace.fail("Exception: " + e.getMessage());
+                    } else {
                         try {
                             Thread.sleep(config.getScheduled().getRetryDelayMs());
                         } catch (InterruptedException ie) {
@@ -182,13 +194,40 @@ public class TransactionSimulatorService {
                 }
             }
         } catch (Exception e) {
-            span.setStatus(StatusCode.ERROR, e.getMessage());
+            trace.fail(e);
             throw e;
         } finally {
-            span.end();
+            trace.end();
         }
     }
     
+    private void streamTransaction() {
+        Iso8583Message transaction = createRandomTransaction();
+        
+        TransactionTrace trace = tracer.start("iso8583.simulator.send_transaction", transaction)
+                .attribute("transaction.amount", transaction.getField(4))
+                .attribute("transport", "stream");
+        totalTransactions.incrementAndGet();
+        
+        transactionStream.send(transaction.toString(), "simulator-" + System.currentTimeMillis())
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        failedTransactions.incrementAndGet();
+                        trace.fail("Exception: " + error.getMessage());
+                    } else if (response.getSuccess()) {
+                        successfulTransactions.incrementAndGet();
+                        if (config.getMode() == SimulatorConfig.Mode.SCHEDULED) {
+                            System.out.println("✅ Transaction sent successfully");
+                        }
+                    } else {
+                        failedTransactions.incrementAndGet();
+                        trace.fail("Transaction failed: " + response.getMessage());
+                        System.err.println("❌ Transaction failed: " + response.getMessage());
+                    }
+                    trace.end();
+                });
+    }
+    
     @Scheduled(fixedRate = 30000)
     public void printStats() {
         if (config.getMode() != SimulatorConfig.Mode.SCHEDULED) {
@@ -203,20 +242,21 @@ public class TransactionSimulatorService {
     }
 
     private Iso8583Message createRandomTransaction() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
         Iso8583Message msg = new Iso8583Message();
         msg.setMti("0200");
         
-        msg.addField(2, generatePan());
+        msg.addField(2, generatePan(random));
         msg.addField(3, "000000");
-        msg.addField(4, String.format("%012d", random.nextInt(100000) + 1000));
-        msg.addField(7, LocalDateTime.now().format(DateTimeFormatter.ofPattern("MMddHHmmss")));
-        msg.addField(11, String.format("%06d", stanCounter.getAndIncrement()));
-        msg.addField(12, LocalDateTime.now().format(DateTimeFormatter.ofPattern("HHmmss")));
-        msg.addField(13, LocalDateTime.now().format(DateTimeFormatter.ofPattern("MMdd")));
+        msg.addField(4, Digits.zeroPad(random.nextInt(100000) + 1000, 12));
+        msg.addField(7, clock.transmissionDateTime());
+        msg.addField(11, Digits.zeroPad(stanCounter.getAndIncrement(), 6));
+        msg.addField(12, clock.localTime());
+        msg.addField(13, clock.localDate());
         msg.addField(18, "5999");
         msg.addField(22, "012");
         msg.addField(25, "00");
-        msg.addField(37, String.format("%012d", random.nextInt(999999999)));
+        msg.addField(37, Digits.zeroPad(random.nextInt(999999999), 12));
         msg.addField(41, "SIM001  ");
         msg.addField(42, "SIMULATOR000001");
         msg.addField(49, "840");
@@ -224,7 +264,7 @@ public class TransactionSimulatorService {
         return msg;
     }
 
-    private String generatePan() {
-        return "4000" + String.format("%012d", random.nextInt(1000000000));
+    private String generatePan(ThreadLocalRandom random) {
+        return "4000" + Digits.zeroPad(random.nextInt(1000000000), 12);
     }
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+package com.example.simulator.service;
+
+import com.example.simulator.config.SimulatorConfig;
+import com.example.simulator.grpc.Iso8583Proto;
+import com.example.simulator.grpc.Iso8583ServiceGrpc;
+import io.grpc.stub.StreamObserver;
+import jakarta.annotation.PreDestroy;
+import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One long-lived StreamTransactions call shared by all senders.
+ * <p>
+ * Each request carries a correlation id that the server echoes back, so responses can arrive
+ * in any order. At most {@code simulator.stream.max-in-flight} requests are outstanding;
+ * senders block until a response frees a slot, which keeps the simulator from outrunning the
+ * server. The call is opened on first use and reopened after it fails.
+ */
+@Component
+public class TransactionStream {
+
+    @GrpcClient("iso8583-server")
+    private Iso8583ServiceGrpc.Iso8583ServiceStub iso8583AsyncStub;
+
+    private final Map<String, CompletableFuture<Iso8583Proto.TransactionResponse>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong correlationIds = new AtomicLong();
+    private final Semaphore inFlight;
+    private final long responseTimeoutMs;
+
+    // Guarded by this: StreamObserver.onNext must not be called concurrently
+    private StreamObserver<Iso8583Proto.TransactionRequest> requests;
+
+    public TransactionStream(SimulatorConfig config) {
+        this.inFlight = new Semaphore(config.getStream().getMaxInFlight());
+        this.responseTimeoutMs = config.getStream().getResponseTimeoutMs();
+    }
+
+    /**
+     * Sends a transaction over the shared stream.
+     *
+     * @return completes with the server's response, or exceptionally if no slot frees up,
+     *         the stream fails, or no response arrives within the response timeout
+     */
+    public CompletableFuture<Iso8583Proto.TransactionResponse> send(String message, String clientId) {
+        try {
+            if (!inFlight.tryAcquire(responseTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return CompletableFuture.failedFuture(new TimeoutException("Stream has no free in-flight slot"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        String correlationId = Long.toString(correlationIds.incrementAndGet());
+        CompletableFuture<Iso8583Proto.TransactionResponse> future = new CompletableFuture<>();
+        pending.put(correlationId, future);
+        future.orTimeout(responseTimeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((response, error) -> {
+                    pending.remove(correlationId);
+                    inFlight.release();
+                });
+
+        Iso8583Proto.TransactionRequest request = Iso8583Proto.TransactionRequest.newBuilder()
+                .setMessage(message)
+                .setClientId(clientId)
+                .setCorrelationId(correlationId)
+                .build();
+        try {
+            synchronized (this) {
+                stream().onNext(request);
+            }
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public int getInFlightCount() {
+        return pending.size();
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (requests != null) {
+            requests.onCompleted();
+            requests = null;
+        }
+    }
+
+    private StreamObserver<Iso8583Proto.TransactionRequest> stream() {
+        if (requests == null) {
+            ResponseObserver observer = new ResponseObserver();
+            requests = iso8583AsyncStub.streamTransactions(observer);
+            observer.owner = requests;
+            System.out.println("🔀 Opened transaction stream to server");
+        }
+        return requests;
+    }
+
+    private synchronized void reset(ResponseObserver observer, Throwable cause) {
+        if (observer.owner != requests) {
+            return;
+        }
+        requests = null;
+        pending.values().forEach(future -> future.completeExceptionally(cause));
+    }
+
+    private final class ResponseObserver implements StreamObserver<Iso8583Proto.TransactionResponse> {
+        // The request side of this call, so a late failure of an old call leaves a newer one alone
+        private StreamObserver<Iso8583Proto.TransactionRequest> owner;
+
+        @Override
+        public void onNext(Iso8583Proto.TransactionResponse response) {
+            CompletableFuture<Iso8583Proto.TransactionResponse> future = pending.get(response.getCorrelationId());
+            if (future != null) {
+                future.complete(response);
+            } else {
+                System.err.println("⚠️ Response for unknown correlation id " + response.getCorrelationId());
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            System.err.println("❌ Transaction stream failed: " + t.getMessage());
+            reset(this, t);
+        }
+
+        @Override
+        public void onCompleted() {
+            reset(this, new IllegalStateException("Transaction stream closed by server"));
+        }
+    }
+}